@@ -0,0 +1,431 @@
+package project2;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    The CachingFakebookOracle class wraps another FakebookOracle and remembers the results
+    of the parameterized queries (Query 4, Query 5, Query 6, and Query 8) per set of
+    arguments, so that asking the same question again does not go back to the database.
+    The other queries, whose results can hold every user, are passed straight through.
+
+    Each cached result expires <ttlMillis> after it was loaded, the cache holds at most
+    <maxEntries> results (the oldest are evicted first), and invalidate() drops every
+    result that was computed from a given table. Concurrent callers asking for the same
+    uncached result wait for a single call to the wrapped oracle instead of each making
+    their own; callers asking for different results never block one another.
+
+    Cached results are shared between callers and must not be modified. The wrapped
+    oracle must be safe to call from every thread that calls this one. A
+    StudentFakebookOracle is not: it runs on a single connection and keeps its prepared
+    statements in an unsynchronized FakebookStatementRegistry, so one wrapped around it
+    may only be used by one thread at a time. FakebookQueryService.setResultCache() wraps
+    a delegate that runs each call on one of the service's idle workers instead.
+*/
+public final class CachingFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: 0 < <maxEntries>, 0 < <ttlMillis>; <delegate> is thread-safe, or this
+    //           cache is only used by one thread at a time
+    // EFFECTS:  creates an empty cache in front of <delegate>
+    public CachingFakebookOracle(FakebookOracle delegate, int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("invalid cache bounds");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        return delegate.findMonthOfBirthInfo();
+    }
+
+    @Override
+    public FirstNameInfo findNameInfo() throws SQLException {
+        return delegate.findNameInfo();
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return delegate.lonelyUsers();
+    }
+
+    @Override
+    public <E extends Exception> long lonelyUsers(FakebookConsumer<? super UserInfo, E> consumer)
+            throws SQLException, E {
+        return delegate.lonelyUsers(consumer);
+    }
+
+    @Override
+    public long countLonelyUsers() throws SQLException {
+        return delegate.countLonelyUsers();
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        return delegate.liveAwayFromHome();
+    }
+
+    @Override
+    public <E extends Exception> long liveAwayFromHome(FakebookConsumer<? super UserInfo, E> consumer)
+            throws SQLException, E {
+        return delegate.liveAwayFromHome(consumer);
+    }
+
+    @Override
+    public long countLiveAwayFromHome() throws SQLException {
+        return delegate.countLiveAwayFromHome();
+    }
+
+    @Override
+    // Query 4
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        return get(new Key(4, num, 0), PhotoTables, () -> delegate.findPhotosWithMostTags(num));
+    }
+
+    @Override
+    // Query 5
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        return get(new Key(5, num, yearDiff), MatchTables, () -> delegate.matchMaker(num, yearDiff));
+    }
+
+    @Override
+    // Query 6
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        return get(new Key(6, num, 0), FriendTables, () -> delegate.suggestFriends(num));
+    }
+
+    @Override
+    public EventStateInfo findEventStates() throws SQLException {
+        return delegate.findEventStates();
+    }
+
+    @Override
+    // Query 8
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        return get(new Key(8, userID, 0), FriendTables, () -> delegate.findAgeInfo(userID));
+    }
+
+    @Override
+    // Bulk Query 8
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: answers the cached users from the cache and the rest with one bulk call to
+    //          the wrapped oracle, whose results are then cached; each user missing from
+    //          the cache counts as one miss and is charged an equal share of the bulk
+    //          call's time, so loadTimeNanos() / misses() stays the time per miss
+    public Map<Long, AgeInfo> findAgeInfo(Collection<Long> userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new HashMap<Long, AgeInfo>();
+        Set<Long> missing = new LinkedHashSet<Long>();
+        for (Long userID : userIDs) {
+            long id = requireUserID(userID);
+            if (results.containsKey(id) || missing.contains(id)) {
+                continue;
+            }
+            AgeInfo cached = (AgeInfo) peek(new Key(8, id, 0));
+            if (cached != null) {
+                results.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return results;
+        }
+
+        long begin = System.nanoTime();
+        Map<Long, AgeInfo> loaded = delegate.findAgeInfo(missing);
+        long end = System.nanoTime();
+        long share = (end - begin) / missing.size();
+        for (int idx = 0; idx < missing.size(); idx++) {
+            misses.increment();
+            loadNanos.add(idx == 0 ? end - begin - share * (missing.size() - 1) : share);
+        }
+        for (Map.Entry<Long, AgeInfo> result : loaded.entrySet()) {
+            Entry entry = new Entry(new Key(8, result.getKey(), 0), FriendTables);
+            entry.value.complete(result.getValue());
+            entry.loadedAt = end;
+            store(entry);
+            results.put(result.getKey(), result.getValue());
+        }
+        return results;
+    }
+
+    @Override
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return delegate.findPotentialSiblings();
+    }
+
+    @Override
+    public <E extends Exception> long findPotentialSiblings(FakebookConsumer<? super SiblingInfo, E> consumer)
+            throws SQLException, E {
+        return delegate.findPotentialSiblings(consumer);
+    }
+
+    @Override
+    public long countPotentialSiblings() throws SQLException {
+        return delegate.countPotentialSiblings();
+    }
+
+    // [Invalidate Functions]
+    // MODIFIES: this
+    // EFFECTS:  drop every cached result computed from <table> (a FakebookOracleConstants
+    //           table name), or every cached result; results being loaded while this runs
+    //           are still handed to the callers already waiting for them, but not kept
+    public void invalidate(String table) {
+        for (Map.Entry<Key, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().tables.contains(table) && entries.remove(entry.getKey(), entry.getValue())) {
+                invalidations.increment();
+                stale.incrementAndGet();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        invalidations.add(entries.size());
+        entries.clear();
+        order.clear();
+        stale.set(0);
+    }
+
+    // [Statistics Functions]
+    // EFFECTS: return the number of calls answered from the cache, the number that had to
+    //          call the wrapped oracle, the total time spent in the wrapped oracle, the
+    //          number of results evicted for space, expired, and invalidated, and the
+    //          number of results cached
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long loadTimeNanos() {
+        return loadNanos.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long expirations() {
+        return expirations.sum();
+    }
+
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // [Cache-to-String Converter]
+    // EFFECTS: returns a string representation of the cache's statistics
+    public String toString() {
+        long hit = hits();
+        long miss = misses();
+        return String.format("%d result(s) cached, %d hit(s), %d miss(es) (%.1f%% hits), %.3f ms per miss, "
+                + "%d eviction(s), %d expiration(s), %d invalidation(s)",
+                size(), hit, miss, hit + miss == 0 ? 0.0 : 100.0 * hit / (hit + miss),
+                miss == 0 ? 0.0 : loadTimeNanos() / 1e6 / miss, evictions(), expirations(), invalidations());
+    }
+
+    // [Get Function]
+    // EFFECTS: returns the cached result for <key>, calling <loader> first if there is
+    //          none; a caller that finds the result being loaded waits for it, and a
+    //          failed load (whatever it throws) is not cached and fails its waiters too
+    @SuppressWarnings("unchecked")
+    private <T> T get(Key key, Set<String> tables, Loader<T> loader) throws SQLException {
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry != null && expired(entry)) {
+                if (entries.remove(key, entry)) {
+                    expirations.increment();
+                    stale.incrementAndGet();
+                }
+                continue;
+            }
+            if (entry != null) {
+                hits.increment();
+                return (T) await(entry);
+            }
+
+            Entry loading = new Entry(key, tables);
+            if (entries.putIfAbsent(key, loading) != null) {
+                continue; // another caller started loading first; wait for theirs
+            }
+            order.add(loading);
+            evict();
+
+            misses.increment();
+            long begin = System.nanoTime();
+            try {
+                T value = loader.load();
+                loading.loadedAt = System.nanoTime();
+                loading.value.complete(value);
+                return value;
+            } catch (Throwable e) {
+                if (entries.remove(key, loading)) {
+                    stale.incrementAndGet();
+                }
+                loading.value.completeExceptionally(e);
+                throw e; // rethrown as the SQLException or unchecked exception it is
+            } finally {
+                loadNanos.add(System.nanoTime() - begin);
+            }
+        }
+    }
+
+    // returns the cached, loaded, unexpired result for <key>, or null
+    private Object peek(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.value.isDone() || entry.value.isCompletedExceptionally() || expired(entry)) {
+            return null;
+        }
+        hits.increment();
+        return entry.value.getNow(null);
+    }
+
+    private void store(Entry entry) {
+        if (entries.put(entry.key, entry) != null) {
+            stale.incrementAndGet();
+        }
+        order.add(entry);
+        evict();
+    }
+
+    // drops the oldest entries until at most <maxEntries> remain. Entries that were
+    // already removed (expired, invalidated, or replaced) stay in <order> until they reach
+    // the head, or until there are more of them than live entries and they are swept out.
+    private void evict() {
+        while (entries.size() > maxEntries) {
+            Entry oldest = order.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (entries.remove(oldest.key, oldest)) {
+                evictions.increment();
+            } else {
+                stale.decrementAndGet();
+            }
+        }
+        if (stale.get() > maxEntries) {
+            stale.set(0);
+            order.removeIf(entry -> entries.get(entry.key) != entry);
+        }
+    }
+
+    private boolean expired(Entry entry) {
+        return entry.value.isDone() && System.nanoTime() - entry.loadedAt > ttlNanos;
+    }
+
+    private static Object await(Entry entry) throws SQLException {
+        try {
+            return entry.value.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a cached result", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    // A call to the wrapped oracle
+    @FunctionalInterface
+    private interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    /*
+        The Key class identifies a cached result by its query number and arguments.
+    */
+    private static final class Key {
+        Key(int query, long first, long second) {
+            this.query = query;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return query == key.query && first == key.first && second == key.second;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(first * 31 + second) * 31 + query;
+        }
+
+        final int query;
+        final long first;
+        final long second;
+    }
+
+    /*
+        The Entry class is one cached result (or one being loaded) together with its key,
+        the tables it was computed from, and the time it finished loading.
+    */
+    private static final class Entry {
+        Entry(Key key, Set<String> tables) {
+            this.key = key;
+            this.tables = tables;
+        }
+
+        final Key key;
+        final Set<String> tables;
+        final CompletableFuture<Object> value = new CompletableFuture<Object>();
+        volatile long loadedAt;
+    }
+
+    // Member Variables
+    // the tables each query reads, for invalidate()
+    private static final Set<String> PhotoTables = tables(FakebookOracleConstants.PhotosTable,
+            FakebookOracleConstants.TagsTable, FakebookOracleConstants.AlbumsTable, FakebookOracleConstants.UsersTable);
+    private static final Set<String> MatchTables = tables(FakebookOracleConstants.UsersTable,
+            FakebookOracleConstants.FriendsTable, FakebookOracleConstants.TagsTable,
+            FakebookOracleConstants.PhotosTable, FakebookOracleConstants.AlbumsTable);
+    private static final Set<String> FriendTables = tables(FakebookOracleConstants.UsersTable,
+            FakebookOracleConstants.FriendsTable);
+
+    private static Set<String> tables(String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    private final FakebookOracle delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<Entry>(); // insertion order
+    private final AtomicInteger stale = new AtomicInteger(); // entries in <order> no longer cached
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+}
@@ -0,0 +1,332 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/*
+    The FakebookAggregates class keeps the aggregates behind Queries 0, 1, and 7 in
+    memory: users by birth month, distinct first names by length and by number of users,
+    and events by state. They are computed with one scan of the Users, Cities, and Events
+    tables and from then on kept current by applying the changes appended to a
+    FakebookChangeLog, so a query costs the changes made since the previous one plus the
+    size of its answer, however large the tables are.
+
+    The answers match those of StudentFakebookOracle, except that the states tied for the
+    most events (which the SQL leaves unordered) are listed in name order. As in the SQL,
+    events in a city missing from the Cities table are not counted for any state, and a
+    user whose FIRST_NAME is NULL counts for Query 0 but not for Query 1. The functions
+    are synchronized, so the aggregates may be shared by several threads.
+*/
+final class FakebookAggregates {
+    // [Constructor]
+    // EFFECTS: creates empty aggregates that apply the changes in <log> after <sequence>
+    private FakebookAggregates(FakebookChangeLog log, long sequence) {
+        this.log = log;
+        this.sequence = sequence;
+    }
+
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection; every change made to the Users,
+    //           Events, and Cities tables so far has been appended to <log>, and none is
+    //           made until this function returns
+    // EFFECTS:  scans the three tables once and returns aggregates that are kept current
+    //           from the changes appended to <log> from now on
+    static FakebookAggregates load(Connection connection, FakebookChangeLog log) throws SQLException {
+        FakebookAggregates aggregates = new FakebookAggregates(log, log.lastSequence());
+        synchronized (aggregates) {
+            try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly,
+                    FakebookOracleConstants.ReadOnly)) {
+                stmt.setFetchSize(1000);
+                try (ResultSet rst = stmt.executeQuery("SELECT USER_ID, FIRST_NAME, LAST_NAME, MONTH_OF_BIRTH " +
+                        "FROM " + FakebookOracleConstants.UsersTable)) {
+                    while (rst.next()) {
+                        int month = rst.getInt(4);
+                        aggregates.putUser(rst.getLong(1), rst.getString(2), rst.getString(3),
+                                rst.wasNull() ? null : month);
+                    }
+                }
+                try (ResultSet rst = stmt.executeQuery("SELECT CITY_ID, STATE_NAME " +
+                        "FROM " + FakebookOracleConstants.CitiesTable)) {
+                    while (rst.next()) {
+                        aggregates.putCity(rst.getLong(1), rst.getString(2));
+                    }
+                }
+                try (ResultSet rst = stmt.executeQuery("SELECT EVENT_ID, EVENT_CITY_ID " +
+                        "FROM " + FakebookOracleConstants.EventsTable)) {
+                    while (rst.next()) {
+                        aggregates.putEvent(rst.getLong(1), rst.getLong(2));
+                    }
+                }
+            }
+        }
+        return aggregates;
+    }
+
+    // [Sequence Accessor]
+    // EFFECTS: returns the sequence number of the last change applied from the log
+    synchronized long sequence() {
+        return sequence;
+    }
+
+    // [Refresh Function]
+    // MODIFIES: this
+    // EFFECTS:  applies the changes appended to the log since the last refresh and
+    //           returns how many there were
+    synchronized int refresh() {
+        int applied = 0;
+        for (FakebookChangeLog.Change change : log.since(sequence)) {
+            apply(change);
+            sequence++;
+            applied++;
+        }
+        return applied;
+    }
+
+    // Query 0
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the same BirthMonthInfo as StudentFakebookOracle, as of the latest
+    //          change in the log
+    synchronized BirthMonthInfo findMonthOfBirthInfo() {
+        refresh();
+
+        // Most users first, ties to the earlier month; the least popular month is the one
+        // the SQL reads last, so ties there go to the later month
+        int mostMonth = 0;
+        int leastMonth = 0;
+        int total = 0;
+        for (Map.Entry<Integer, TreeMap<Long, UserInfo>> entry : usersByMonth.entrySet()) {
+            int born = entry.getValue().size();
+            if (mostMonth == 0 || born > usersByMonth.get(mostMonth).size()) {
+                mostMonth = entry.getKey();
+            }
+            if (leastMonth == 0 || born <= usersByMonth.get(leastMonth).size()) {
+                leastMonth = entry.getKey();
+            }
+            total += born;
+        }
+
+        BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
+        if (total > 0) {
+            for (UserInfo user : usersByMonth.get(mostMonth).values()) {
+                info.addMostPopularBirthMonthUser(user);
+            }
+            for (UserInfo user : usersByMonth.get(leastMonth).values()) {
+                info.addLeastPopularBirthMonthUser(user);
+            }
+        }
+        return info;
+    }
+
+    // Query 1
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the same FirstNameInfo as StudentFakebookOracle, as of the latest
+    //          change in the log
+    synchronized FirstNameInfo findNameInfo() {
+        refresh();
+
+        FirstNameInfo info = new FirstNameInfo();
+        if (namesByLength.isEmpty()) {
+            return info;
+        }
+        for (String name : namesByLength.lastEntry().getValue()) {
+            info.addLongName(name);
+        }
+        for (String name : namesByLength.firstEntry().getValue()) {
+            info.addShortName(name);
+        }
+        for (String name : firstNames.top()) {
+            info.addCommonName(name);
+        }
+        info.setCommonNameCount(firstNames.topCount());
+        return info;
+    }
+
+    // Query 7
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the same EventStateInfo as StudentFakebookOracle (with the states
+    //          in name order), as of the latest change in the log
+    synchronized EventStateInfo findEventStates() {
+        refresh();
+
+        if (states.topCount() == 0) {
+            return new EventStateInfo(-1);
+        }
+        EventStateInfo info = new EventStateInfo(states.topCount());
+        for (String state : states.top()) {
+            info.addState(state);
+        }
+        return info;
+    }
+
+    private void apply(FakebookChangeLog.Change change) {
+        boolean delete = change.operation == FakebookChangeLog.Operation.Delete;
+        switch (change.table) {
+            case Users:
+                removeUser(change.key);
+                if (!delete) {
+                    putUser(change.key, change.firstName, change.lastName, change.birthMonth);
+                }
+                break;
+            case Events:
+                removeEvent(change.key);
+                if (!delete) {
+                    putEvent(change.key, change.cityId);
+                }
+                break;
+            case Cities:
+                removeCity(change.key);
+                if (!delete) {
+                    putCity(change.key, change.stateName);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown table: " + change.table);
+        }
+    }
+
+    private void putUser(long userId, String firstName, String lastName, Integer birthMonth) {
+        UserRow row = new UserRow(new UserInfo(userId, firstName, lastName), firstName, birthMonth);
+        users.put(userId, row);
+        if (birthMonth != null) {
+            usersByMonth.computeIfAbsent(birthMonth, month -> new TreeMap<Long, UserInfo>()).put(userId, row.info);
+        }
+        if (firstName != null && firstNames.add(firstName, 1) == 1) {
+            namesByLength.computeIfAbsent(length(firstName), length -> new TreeSet<String>()).add(firstName);
+        }
+    }
+
+    private void removeUser(long userId) {
+        UserRow row = users.remove(userId);
+        if (row == null) {
+            return;
+        }
+        if (row.birthMonth != null) {
+            TreeMap<Long, UserInfo> born = usersByMonth.get(row.birthMonth);
+            born.remove(userId);
+            if (born.isEmpty()) {
+                usersByMonth.remove(row.birthMonth);
+            }
+        }
+        if (row.firstName != null && firstNames.add(row.firstName, -1) == 0) {
+            TreeSet<String> names = namesByLength.get(length(row.firstName));
+            names.remove(row.firstName);
+            if (names.isEmpty()) {
+                namesByLength.remove(length(row.firstName));
+            }
+        }
+    }
+
+    // the length of <name> as LENGTH() counts it, in characters rather than UTF-16 units
+    private static int length(String name) {
+        return name.codePointCount(0, name.length());
+    }
+
+    private void putCity(long cityId, String stateName) {
+        cityStates.put(cityId, stateName);
+        states.add(stateName, cityEvents.get(cityId));
+    }
+
+    private void removeCity(long cityId) {
+        String stateName = cityStates.remove(cityId);
+        if (stateName != null) {
+            states.add(stateName, -cityEvents.get(cityId));
+        }
+    }
+
+    private void putEvent(long eventId, long cityId) {
+        eventCities.put(eventId, cityId);
+        cityEvents.add(cityId, 1);
+        String stateName = cityStates.get(cityId);
+        if (stateName != null) {
+            states.add(stateName, 1);
+        }
+    }
+
+    private void removeEvent(long eventId) {
+        Long cityId = eventCities.remove(eventId);
+        if (cityId == null) {
+            return;
+        }
+        cityEvents.add(cityId, -1);
+        String stateName = cityStates.get(cityId);
+        if (stateName != null) {
+            states.add(stateName, -1);
+        }
+    }
+
+    /*
+        The UserRow class holds what is needed to undo a user's contribution to the
+        aggregates when the user is updated or deleted.
+    */
+    private static final class UserRow {
+        UserRow(UserInfo info, String firstName, Integer birthMonth) {
+            this.info = info;
+            this.firstName = firstName;
+            this.birthMonth = birthMonth;
+        }
+
+        final UserInfo info;
+        final String firstName;
+        final Integer birthMonth;
+    }
+
+    /*
+        The Ranking class counts occurrences of strings and keeps them grouped by count,
+        so the strings with the highest count are found without a scan.
+    */
+    private static final class Ranking {
+        // adds <delta> to the count of <key> and returns the new count
+        long add(String key, long delta) {
+            if (delta == 0) {
+                return counts.getOrDefault(key, 0L);
+            }
+            long before = counts.getOrDefault(key, 0L);
+            long after = before + delta;
+            if (before > 0) {
+                TreeSet<String> keys = byCount.get(before);
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    byCount.remove(before);
+                }
+            }
+            if (after > 0) {
+                counts.put(key, after);
+                byCount.computeIfAbsent(after, count -> new TreeSet<String>()).add(key);
+            } else {
+                counts.remove(key);
+            }
+            return after;
+        }
+
+        // the highest count, or 0 if nothing is counted
+        long topCount() {
+            return byCount.isEmpty() ? 0L : byCount.lastKey();
+        }
+
+        // the strings with the highest count, in order
+        TreeSet<String> top() {
+            return byCount.isEmpty() ? new TreeSet<String>() : byCount.lastEntry().getValue();
+        }
+
+        private final HashMap<String, Long> counts = new HashMap<String, Long>();
+        private final TreeMap<Long, TreeSet<String>> byCount = new TreeMap<Long, TreeSet<String>>();
+    }
+
+    // Member Variables
+    private final FakebookChangeLog log;
+    private long sequence; // the last change applied
+    private final HashMap<Long, UserRow> users = new HashMap<Long, UserRow>();
+    private final TreeMap<Integer, TreeMap<Long, UserInfo>> usersByMonth = new TreeMap<Integer, TreeMap<Long, UserInfo>>();
+    private final Ranking firstNames = new Ranking(); // first name -> users
+    private final TreeMap<Integer, TreeSet<String>> namesByLength = new TreeMap<Integer, TreeSet<String>>();
+    private final HashMap<Long, Long> eventCities = new HashMap<Long, Long>(); // event ID -> city ID
+    private final LongIntMap cityEvents = new LongIntMap(1024); // city ID -> events
+    private final HashMap<Long, String> cityStates = new HashMap<Long, String>(); // city ID -> state
+    private final Ranking states = new Ranking(); // state -> events in its cities
+}
@@ -0,0 +1,120 @@
+package project2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    The FakebookChangeLog class is an append-only record of the row changes made to the
+    Users, Events, and Cities tables, for components that keep derived state up to date
+    (see FakebookAggregates) instead of rescanning the tables. Whoever writes to those
+    tables appends one change per row written, after the write commits; each change gets
+    the next sequence number (starting at 1), and readers ask for the changes after the
+    last sequence number they applied. Only the columns the readers need are recorded.
+
+    Changes that every reader has applied may be discarded to bound memory; sequence
+    numbers are never reused. The functions are synchronized, so writers and readers may
+    be on different threads.
+*/
+final class FakebookChangeLog {
+    // The kind of write a change records
+    enum Operation {
+        Insert, Update, Delete
+    }
+
+    // The table a change was made to
+    enum Table {
+        Users, Events, Cities
+    }
+
+    // [User Change Function]
+    // REQUIRES: <firstName>, <lastName>, and <birthMonth> are NULL when the row's column
+    //           is (and may be for Delete)
+    // MODIFIES: this
+    // EFFECTS:  records a change to the Users row of user <userId> and returns its
+    //           sequence number; the names and birth month are the row's new values
+    long appendUser(Operation operation, long userId, String firstName, String lastName, Integer birthMonth) {
+        return append(new Change(Table.Users, operation, userId, firstName, lastName, birthMonth, 0L, null));
+    }
+
+    // [Event Change Function]
+    // MODIFIES: this
+    // EFFECTS:  records a change to the Events row of event <eventId>, whose new
+    //           EVENT_CITY_ID is <cityId> (ignored for Delete), and returns its sequence
+    //           number
+    long appendEvent(Operation operation, long eventId, long cityId) {
+        return append(new Change(Table.Events, operation, eventId, null, null, null, cityId, null));
+    }
+
+    // [City Change Function]
+    // REQUIRES: <stateName> is not NULL unless <operation> is Delete
+    // MODIFIES: this
+    // EFFECTS:  records a change to the Cities row of city <cityId>, whose new STATE_NAME
+    //           is <stateName>, and returns its sequence number
+    long appendCity(Operation operation, long cityId, String stateName) {
+        return append(new Change(Table.Cities, operation, cityId, null, null, null, 0L, stateName));
+    }
+
+    // [Last Sequence Function]
+    // EFFECTS: returns the sequence number of the latest change (0 if there are none)
+    synchronized long lastSequence() {
+        return discarded + changes.size();
+    }
+
+    // [Changes Since Function]
+    // REQUIRES: no change after <sequence> has been discarded
+    // EFFECTS:  returns the changes with sequence numbers greater than <sequence>, oldest
+    //           first
+    synchronized List<Change> since(long sequence) {
+        if (sequence < discarded) {
+            throw new IllegalStateException("changes after " + sequence + " were discarded");
+        }
+        return new ArrayList<Change>(changes.subList((int) Math.min(sequence - discarded, changes.size()),
+                changes.size()));
+    }
+
+    // [Discard Function]
+    // MODIFIES: this
+    // EFFECTS:  forgets the changes with sequence numbers up to and including <sequence>
+    synchronized void discardThrough(long sequence) {
+        int count = (int) Math.min(Math.max(0L, sequence - discarded), changes.size());
+        changes.subList(0, count).clear();
+        discarded += count;
+    }
+
+    private synchronized long append(Change change) {
+        changes.add(change);
+        return discarded + changes.size();
+    }
+
+    /*
+        The Change class is one entry of the log. Which fields are set depends on the
+        table: Users changes carry the names and birth month, Events changes the city,
+        and Cities changes the state; Delete changes carry only the key.
+    */
+    static final class Change {
+        Change(Table table, Operation operation, long key, String firstName, String lastName,
+                Integer birthMonth, long cityId, String stateName) {
+            this.table = table;
+            this.operation = operation;
+            this.key = key;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.birthMonth = birthMonth;
+            this.cityId = cityId;
+            this.stateName = stateName;
+        }
+
+        final Table table;
+        final Operation operation;
+        final long key; // USER_ID, EVENT_ID, or CITY_ID
+        final String firstName;
+        final String lastName;
+        final Integer birthMonth;
+        final long cityId;
+        final String stateName;
+    }
+
+    // Member Variables
+    private final ArrayList<Change> changes = new ArrayList<Change>();
+    private long discarded; // the number of changes discarded from the front
+}
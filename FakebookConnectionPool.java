@@ -0,0 +1,374 @@
+package project2;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+    The FakebookConnectionPool class keeps a set of open JDBC connections to one database
+    so that callers can borrow a connection without paying the cost of connecting each
+    time. The pool opens <minSize> connections up front, never holds more than <maxSize>
+    at once, and a background thread closes connections that have sat idle for longer
+    than the idle timeout (down to <minSize>). Idle connections are validated before they
+    are handed out, and broken ones are replaced.
+
+    Connections handed out by borrow() are wrappers: calling close() on one returns the
+    underlying connection to the pool and closes every statement created through it.
+    The pool is safe to use from several threads at once; each borrowed connection must
+    only be used by one thread at a time.
+*/
+public final class FakebookConnectionPool implements AutoCloseable {
+    // [Constructor]
+    // REQUIRES: 0 <= <minSize> <= <maxSize>, 0 < <maxSize>, 0 < <idleTimeoutMillis>
+    // EFFECTS:  opens <minSize> connections to <url> and starts the idle eviction thread
+    public FakebookConnectionPool(String url, String username, String password, int minSize, int maxSize,
+            long idleTimeoutMillis) throws SQLException {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize || idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("invalid pool bounds");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+
+        // Pre-warm: the first borrowers should not have to wait for a connection
+        try {
+            for (int idx = 0; idx < minSize; idx++) {
+                idle.push(new Idle(open(), System.currentTimeMillis()));
+                openCount++;
+            }
+        } catch (SQLException e) {
+            closeIdle();
+            throw e;
+        }
+
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fakebook-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // [Borrow Function]
+    // EFFECTS: returns a connection from the pool, waiting up to BorrowTimeoutMillis for
+    //          one to be returned if <maxSize> connections are already in use
+    public Connection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + BorrowTimeoutMillis;
+        while (true) {
+            Connection connection = null;
+            boolean create = false;
+            synchronized (this) {
+                while (!closed && idle.isEmpty() && openCount == maxSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new SQLException("Timed out waiting for a pooled connection");
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a pooled connection", e);
+                    }
+                }
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                if (!idle.isEmpty()) {
+                    connection = idle.pop().connection; // most recently used first
+                } else {
+                    openCount++; // reserve the slot before connecting outside the lock
+                    create = true;
+                }
+            }
+
+            if (create) {
+                try {
+                    connection = open();
+                } catch (SQLException e) {
+                    release();
+                    throw e;
+                }
+            } else if (!isValid(connection)) {
+                discard(connection);
+                continue; // try the next idle connection, or open a new one
+            }
+
+            synchronized (this) {
+                borrowed++;
+            }
+            return wrap(connection);
+        }
+    }
+
+    // [Statistics Functions]
+    // EFFECTS: return the number of connections currently open (idle or borrowed), the
+    //          number currently idle, and the number of successful borrows so far
+    public synchronized int openConnections() {
+        return openCount;
+    }
+
+    public synchronized int idleConnections() {
+        return idle.size();
+    }
+
+    public synchronized long borrows() {
+        return borrowed;
+    }
+
+    // [Close Function]
+    // EFFECTS: stops the eviction thread and closes every idle connection; connections
+    //          still borrowed are closed when they are returned
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        closeIdle();
+    }
+
+    // [Pool-to-String Converter]
+    // EFFECTS: returns a string representation of the pool's state
+    public synchronized String toString() {
+        return String.format("%d open connection(s), %d idle, %d borrow(s)", openCount, idle.size(), borrowed);
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(ValidationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // [Give Back Function]
+    // EFFECTS: puts <connection> back in the pool, or closes it if it is unusable or the
+    //          pool has been closed
+    private void giveBack(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback(); // do not hand an open transaction to the next borrower
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(connection);
+            return;
+        }
+
+        synchronized (this) {
+            if (!closed) {
+                idle.push(new Idle(connection, System.currentTimeMillis()));
+                notify();
+                return;
+            }
+        }
+        discard(connection);
+    }
+
+    private void discard(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // the connection is unusable anyway
+        }
+        release();
+    }
+
+    private synchronized void release() {
+        openCount--;
+        notify();
+    }
+
+    private void closeIdle() {
+        List<Connection> toClose = new ArrayList<Connection>();
+        synchronized (this) {
+            while (!idle.isEmpty()) {
+                toClose.add(idle.pop().connection);
+            }
+        }
+        for (Connection connection : toClose) {
+            discard(connection);
+        }
+    }
+
+    // [Evict Function]
+    // EFFECTS: closes connections idle for longer than the idle timeout, keeping at least
+    //          <minSize> open, then opens connections until <minSize> are open again
+    private void evict() {
+        List<Connection> expired = new ArrayList<Connection>();
+        synchronized (this) {
+            long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+            // the least recently used connections sit at the bottom of the stack
+            while (!idle.isEmpty() && openCount - expired.size() > minSize && idle.peekLast().lastUsed < cutoff) {
+                expired.add(idle.removeLast().connection);
+            }
+        }
+        for (Connection connection : expired) {
+            discard(connection);
+        }
+
+        while (true) {
+            synchronized (this) {
+                if (closed || openCount >= minSize) {
+                    return;
+                }
+                openCount++;
+            }
+            try {
+                Connection connection = open();
+                synchronized (this) {
+                    // the newest entry goes on top, keeping the stack ordered by last use
+                    // so that the scan above stops at the first unexpired connection
+                    if (!closed) {
+                        idle.push(new Idle(connection, System.currentTimeMillis()));
+                        notify();
+                        continue;
+                    }
+                }
+                // the pool was closed while the connection was being opened, after its
+                // idle connections were closed
+                discard(connection);
+                return;
+            } catch (SQLException e) {
+                release();
+                return; // the database is unreachable; try again on the next run
+            }
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Borrowed(connection));
+    }
+
+    /*
+        The Borrowed class intercepts the calls made on a borrowed connection: close()
+        gives the connection back to the pool instead of closing it, and any other call
+        made after that fails as it would on a closed connection.
+    */
+    private final class Borrowed implements InvocationHandler {
+        Borrowed(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        closeStatements();
+                        giveBack(connection);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + connection;
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+
+            try {
+                Object result = method.invoke(connection, args);
+                if (result instanceof Statement) {
+                    if (statements.size() >= PruneThreshold) {
+                        pruneStatements();
+                    }
+                    statements.add((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // forgets the statements the borrower already closed itself
+        private void pruneStatements() {
+            Iterator<Statement> iterator = statements.iterator();
+            while (iterator.hasNext()) {
+                try {
+                    if (iterator.next().isClosed()) {
+                        iterator.remove();
+                    }
+                } catch (SQLException e) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void closeStatements() {
+            for (Statement stmt : statements) {
+                try {
+                    stmt.close();
+                } catch (SQLException e) {
+                    // closing the statement is best effort
+                }
+            }
+            statements.clear();
+        }
+
+        private final Connection connection;
+        private final List<Statement> statements = new ArrayList<Statement>();
+        private boolean returned;
+    }
+
+    /*
+        The Idle class is a pooled connection together with the time it was last returned.
+    */
+    private static final class Idle {
+        Idle(Connection connection, long lastUsed) {
+            this.connection = connection;
+            this.lastUsed = lastUsed;
+        }
+
+        final Connection connection;
+        final long lastUsed;
+    }
+
+    // Member Variables
+    private static final long BorrowTimeoutMillis = 30000L;
+    private static final int ValidationTimeoutSeconds = 2;
+    private static final int PruneThreshold = 64; // statements tracked per borrow before closed ones are dropped
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final ScheduledExecutorService evictor;
+    private final Deque<Idle> idle = new ArrayDeque<Idle>(); // top = most recently returned
+    private int openCount;
+    private long borrowed;
+    private boolean closed;
+}
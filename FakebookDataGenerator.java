@@ -0,0 +1,567 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+    The FakebookDataGenerator class produces a synthetic dataset shaped like the eleven
+    Public_ tables and bulk-loads it into a stand-in database. Every table is split into
+    fixed-size chunks of rows; each chunk is generated from its own seeded random stream
+    (so the output does not depend on the number of loader threads) and inserted through
+    a PreparedStatement with addBatch/executeBatch on one of <loaderThreads> connections.
+
+    Friendships follow a power law: every user gets a weight proportional to
+    rank^(-friendSkew), where ranks are a fixed permutation of the user IDs, and both the
+    number of friendships a user starts and the partners it picks are drawn by weight.
+    A friendship (U1, U2) with U1 < U2 is only ever emitted by U1, so parallel chunks
+    never produce duplicate rows. Tag subjects, first names, last names, and event
+    cities are skewed the same way by <tagSkew> and <nameSkew>. A skew of 0 is uniform;
+    values approaching 1 concentrate more of the mass on fewer users.
+*/
+public final class FakebookDataGenerator {
+    // [Constructor]
+    // REQUIRES: <users> is positive
+    public FakebookDataGenerator(int users, long seed) {
+        this.users = users;
+        this.seed = seed;
+        cities = Math.max(10, users / 100);
+        programs = Math.max(10, users / 1000);
+        events = Math.max(1, users / 10);
+        albums = Math.max(1, users / 2);
+        firstNames = Math.max(10, users / 20);
+        lastNames = Math.max(10, users / 10);
+        // a multiplier coprime to <users> turns rank -> user ID into a bijection
+        long multiplier = 1_000_003L;
+        while (gcd(multiplier, users) != 1) {
+            multiplier += 2;
+        }
+        rankMultiplier = multiplier;
+        rankInverse = modInverse(multiplier % users, users);
+    }
+
+    // [Setters]
+    // REQUIRES: skews are in [0, 1); counts and sizes are positive
+    public void setAverageFriends(int averageFriends) {
+        this.averageFriends = averageFriends;
+    }
+
+    public void setFriendSkew(double friendSkew) {
+        this.friendSkew = friendSkew;
+    }
+
+    public void setTagSkew(double tagSkew) {
+        this.tagSkew = tagSkew;
+    }
+
+    public void setNameSkew(double nameSkew) {
+        this.nameSkew = nameSkew;
+    }
+
+    public void setPhotosPerAlbum(int photosPerAlbum) {
+        this.photosPerAlbum = photosPerAlbum;
+    }
+
+    public void setMaxTagsPerPhoto(int maxTagsPerPhoto) {
+        this.maxTagsPerPhoto = maxTagsPerPhoto;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public void setLoaderThreads(int loaderThreads) {
+        this.loaderThreads = loaderThreads;
+    }
+
+    // [Load Function]
+    // REQUIRES: the Public_ tables exist in the database at <url> and are empty
+    // EFFECTS:  generates the dataset and inserts it using <loaderThreads> connections
+    //           opened with <username>/<password>; returns the number of rows inserted.
+    //           Each chunk commits on its own, so if the load fails the tables are
+    //           emptied again before the failure is thrown
+    public long load(String url, String username, String password) throws SQLException {
+        try {
+            return insert(url, username, password);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                clear(url, username, password);
+            } catch (SQLException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+    }
+
+    // inserts every chunk of every table and returns the number of rows inserted
+    private long insert(String url, String username, String password) throws SQLException {
+        BlockingQueue<Connection> connections = new ArrayBlockingQueue<Connection>(loaderThreads);
+        ExecutorService loaders = Executors.newFixedThreadPool(loaderThreads);
+        try {
+            for (int idx = 0; idx < loaderThreads; idx++) {
+                Connection connection = DriverManager.getConnection(url, username, password);
+                connection.setAutoCommit(false);
+                connections.add(connection);
+            }
+
+            List<Future<Long>> chunks = new ArrayList<Future<Long>>();
+            for (Table table : Table.values()) {
+                long rows = ownerCount(table);
+                for (long first = 1; first <= rows; first += chunkSize) {
+                    final long from = first;
+                    final long to = Math.min(rows, first + chunkSize - 1);
+                    chunks.add(loaders.submit(() -> {
+                        Connection connection = connections.take();
+                        try {
+                            long inserted = loadChunk(connection, table, from, to);
+                            connection.commit();
+                            return inserted;
+                        } finally {
+                            connections.put(connection);
+                        }
+                    }));
+                }
+            }
+
+            long total = 0;
+            for (Future<Long> chunk : chunks) {
+                total += chunk.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Loader failed", e.getCause());
+        } finally {
+            // Chunks that are still running hold connections; wait for them to stop
+            // before closing the connections underneath them
+            loaders.shutdownNow();
+            boolean interrupted = Thread.interrupted();
+            while (!loaders.isTerminated()) {
+                try {
+                    loaders.awaitTermination(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    // [Clear Function]
+    // EFFECTS: deletes every row of the generated tables, children before parents; a
+    //          table that cannot be emptied does not stop the others from being emptied,
+    //          and its failure is thrown at the end
+    private static void clear(String url, String username, String password) throws SQLException {
+        SQLException failure = null;
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+                Statement stmt = connection.createStatement()) {
+            Table[] tables = Table.values();
+            for (int idx = tables.length - 1; idx >= 0; idx--) {
+                try {
+                    stmt.executeUpdate("DELETE FROM " + tables[idx].table);
+                } catch (SQLException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // [Owner Count Function]
+    // EFFECTS: returns the number of "owner" rows a table is generated from; the chunks
+    //          of a table partition the range [1, ownerCount]
+    private long ownerCount(Table table) {
+        switch (table) {
+            case CITIES:
+                return cities;
+            case PROGRAMS:
+                return programs;
+            case EVENTS:
+                return events;
+            case ALBUMS:
+            case PHOTOS:
+                return albums;
+            case TAGS:
+                return (long) albums * photosPerAlbum;
+            default:
+                return users;
+        }
+    }
+
+    // [Load Chunk Function]
+    // EFFECTS: generates and inserts the rows of <table> owned by IDs <from>..<to>
+    private long loadChunk(Connection connection, Table table, long from, long to) throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed * 31 + table.ordinal() * 1_000_003L + from);
+        try (PreparedStatement stmt = connection.prepareStatement(table.insert)) {
+            Batch batch = new Batch(stmt);
+            for (long id = from; id <= to; id++) {
+                switch (table) {
+                    case USERS:
+                        stmt.setLong(1, id);
+                        stmt.setString(2, name(skewed(random, firstNames, nameSkew)));
+                        stmt.setString(3, name(lastNames + skewed(random, lastNames, nameSkew)));
+                        stmt.setInt(4, 1940 + random.nextInt(66));
+                        stmt.setInt(5, 1 + random.nextInt(12));
+                        stmt.setInt(6, 1 + random.nextInt(28));
+                        stmt.setString(7, random.nextBoolean() ? "female" : "male");
+                        batch.add();
+                        break;
+                    case FRIENDS:
+                        for (long partner : partners(random, id)) {
+                            stmt.setLong(1, id);
+                            stmt.setLong(2, partner);
+                            batch.add();
+                        }
+                        break;
+                    case CITIES:
+                        stmt.setLong(1, id);
+                        stmt.setString(2, name(2 * users + id));
+                        stmt.setString(3, States[(int) ((id * 7) % States.length)]);
+                        stmt.setString(4, "United States");
+                        batch.add();
+                        break;
+                    case CURRENT_CITIES:
+                    case HOMETOWN_CITIES:
+                        // both tables are generated from the same stream so that most users
+                        // live in their hometown and the rest have moved away
+                        SplittableRandom home = new SplittableRandom(seed * 17 + id);
+                        long hometown = 1 + skewed(home, cities, nameSkew);
+                        long current = home.nextInt(10) < 6 ? hometown : 1 + home.nextInt(cities);
+                        stmt.setLong(1, id);
+                        stmt.setLong(2, table == Table.CURRENT_CITIES ? current : hometown);
+                        batch.add();
+                        break;
+                    case PROGRAMS:
+                        stmt.setLong(1, id);
+                        stmt.setString(2, "University of " + name(3 * users + id));
+                        stmt.setString(3, name(4 * users + id % 40));
+                        stmt.setString(4, Degrees[(int) (id % Degrees.length)]);
+                        batch.add();
+                        break;
+                    case EDUCATION:
+                        int degrees = random.nextInt(3);
+                        long program = 1 + random.nextInt(programs);
+                        for (int idx = 0; idx < degrees; idx++) {
+                            stmt.setLong(1, id);
+                            stmt.setLong(2, 1 + (program + idx) % programs);
+                            stmt.setInt(3, 1990 + random.nextInt(35));
+                            batch.add();
+                        }
+                        break;
+                    case EVENTS:
+                        stmt.setLong(1, id);
+                        stmt.setLong(2, 1 + random.nextInt(users));
+                        stmt.setString(3, "Event " + id);
+                        stmt.setLong(4, 1 + skewed(random, cities, nameSkew));
+                        stmt.setTimestamp(5, timestamp(random));
+                        batch.add();
+                        break;
+                    case ALBUMS:
+                        Timestamp created = timestamp(random);
+                        stmt.setLong(1, id);
+                        stmt.setLong(2, 1 + random.nextInt(users));
+                        stmt.setString(3, "Album " + id);
+                        stmt.setTimestamp(4, created);
+                        stmt.setTimestamp(5, created);
+                        stmt.setString(6, "http://www.fakebook.com/album/" + id);
+                        stmt.setString(7, Visibilities[random.nextInt(Visibilities.length)]);
+                        stmt.setLong(8, (id - 1) * photosPerAlbum + 1);
+                        batch.add();
+                        break;
+                    case PHOTOS:
+                        for (int idx = 0; idx < photosPerAlbum; idx++) {
+                            long photo = (id - 1) * photosPerAlbum + idx + 1;
+                            Timestamp taken = timestamp(random);
+                            stmt.setLong(1, photo);
+                            stmt.setLong(2, id);
+                            stmt.setString(3, null);
+                            stmt.setTimestamp(4, taken);
+                            stmt.setTimestamp(5, taken);
+                            stmt.setString(6, "http://www.fakebook.com/photo/" + photo);
+                            batch.add();
+                        }
+                        break;
+                    case TAGS:
+                        int tags = (int) skewed(random, maxTagsPerPhoto + 1, tagSkew);
+                        long[] subjects = new long[tags];
+                        for (int idx = 0; idx < tags; idx++) {
+                            subjects[idx] = user(skewed(random, users, tagSkew));
+                        }
+                        Arrays.sort(subjects);
+                        for (int idx = 0; idx < tags; idx++) {
+                            if (idx > 0 && subjects[idx] == subjects[idx - 1]) {
+                                continue;
+                            }
+                            stmt.setLong(1, id);
+                            stmt.setLong(2, subjects[idx]);
+                            stmt.setTimestamp(3, timestamp(random));
+                            stmt.setInt(4, random.nextInt(100));
+                            stmt.setInt(5, random.nextInt(100));
+                            batch.add();
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return batch.flush();
+        }
+    }
+
+    // [Partners Function]
+    // EFFECTS: returns the sorted, distinct friends (all greater than <owner>) of the
+    //          friendships that <owner> emits
+    private long[] partners(SplittableRandom random, long owner) {
+        // expected attempts are proportional to the owner's weight; about half of the
+        // attempts land on a larger ID, which keeps the mean degree at <averageFriends>
+        double rank = rank(owner);
+        double expected = averageFriends * (1.0 - friendSkew) * Math.pow(rank / users, -friendSkew);
+        int attempts = (int) Math.min(users - 1, Math.floor(expected + random.nextDouble()));
+
+        long[] picked = new long[attempts];
+        int count = 0;
+        for (int idx = 0; idx < attempts; idx++) {
+            long partner = user(skewed(random, users, friendSkew));
+            if (partner > owner) {
+                picked[count++] = partner;
+            }
+        }
+        Arrays.sort(picked, 0, count);
+
+        int distinct = 0;
+        for (int idx = 0; idx < count; idx++) {
+            if (distinct == 0 || picked[idx] != picked[distinct - 1]) {
+                picked[distinct++] = picked[idx];
+            }
+        }
+        return Arrays.copyOf(picked, distinct);
+    }
+
+    // [Skewed Sample Function]
+    // EFFECTS: returns a value in [0, <n>) where value v has probability roughly
+    //          proportional to (v + 1)^(-<skew>)
+    private static long skewed(SplittableRandom random, long n, double skew) {
+        double u = random.nextDouble();
+        long value = (long) (n * Math.pow(u, 1.0 / (1.0 - skew)));
+        return Math.min(n - 1, value);
+    }
+
+    // [Rank/User Mapping Functions]
+    // EFFECTS: user() maps a 0-based rank to a user ID; rank() is its 1-based inverse
+    private long user(long rank) {
+        return (rank * rankMultiplier) % users + 1;
+    }
+
+    private double rank(long user) {
+        return ((user - 1) * rankInverse) % users + 1;
+    }
+
+    // [Name Function]
+    // EFFECTS: returns a pronounceable, capitalized name for <key>; different keys give
+    //          different names and names vary in length
+    private static String name(long key) {
+        StringBuilder name = new StringBuilder();
+        long rest = key;
+        do {
+            name.append(Syllables[(int) (rest % Syllables.length)]);
+            rest /= Syllables.length;
+        } while (rest > 0);
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    // [Timestamp Function]
+    // EFFECTS: returns a random timestamp between 2005 and 2025
+    private static Timestamp timestamp(SplittableRandom random) {
+        return new Timestamp(1_104_537_600_000L + (long) (random.nextDouble() * 631_152_000_000L));
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static long modInverse(long a, long m) {
+        if (m == 1) {
+            return 0;
+        }
+        long t = 0;
+        long newT = 1;
+        long r = m;
+        long newR = a;
+        while (newR != 0) {
+            long q = r / newR;
+            long tmp = t - q * newT;
+            t = newT;
+            newT = tmp;
+            tmp = r - q * newR;
+            r = newR;
+            newR = tmp;
+        }
+        return t < 0 ? t + m : t;
+    }
+
+    // [Main Function]
+    // Expected Command Line Arguments (given as key=value):
+    //  url=<jdbc url>       stand-in database whose Public_ tables should be filled
+    //  username=, password= credentials for <url> (default: empty)
+    //  users=<n>            number of users (default: 10000)
+    //  create=true          create the schema before loading
+    //  and optionally seed=, friends=, friendSkew=, tagSkew=, nameSkew=, batch=, chunk=,
+    //  threads=
+    public static void main(String[] args) throws SQLException {
+        Map<String, String> options = FakebookOracleBenchmark.parseOptions(args);
+        String url = options.get("url");
+        String username = options.getOrDefault("username", "");
+        String password = options.getOrDefault("password", "");
+        FakebookDataGenerator generator = configure(options);
+
+        if (Boolean.parseBoolean(options.getOrDefault("create", "false"))) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                FakebookSchema.create(connection);
+            }
+        }
+
+        long begin = System.nanoTime();
+        long rows = generator.load(url, username, password);
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("Loaded %d rows for %d users in %.3f s (%.0f rows/s)%n",
+                rows, generator.users, seconds, rows / seconds);
+    }
+
+    // [Configure Function]
+    // EFFECTS: returns a generator configured from the key=value <options>
+    static FakebookDataGenerator configure(Map<String, String> options) {
+        FakebookDataGenerator generator = new FakebookDataGenerator(
+                Integer.parseInt(options.getOrDefault("users", "10000")),
+                Long.parseLong(options.getOrDefault("seed", "484")));
+        generator.setAverageFriends(Integer.parseInt(options.getOrDefault("friends", "10")));
+        generator.setFriendSkew(Double.parseDouble(options.getOrDefault("friendSkew", "0.6")));
+        generator.setTagSkew(Double.parseDouble(options.getOrDefault("tagSkew", "0.5")));
+        generator.setNameSkew(Double.parseDouble(options.getOrDefault("nameSkew", "0.5")));
+        generator.setBatchSize(Integer.parseInt(options.getOrDefault("batch", "1000")));
+        generator.setChunkSize(Integer.parseInt(options.getOrDefault("chunk", "50000")));
+        generator.setLoaderThreads(Integer.parseInt(options.getOrDefault("threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors()))));
+        return generator;
+    }
+
+    /*
+        The Batch class counts the rows added to a PreparedStatement batch and executes
+        the batch every <batchSize> rows.
+    */
+    private final class Batch {
+        Batch(PreparedStatement stmt) {
+            this.stmt = stmt;
+        }
+
+        void add() throws SQLException {
+            stmt.addBatch();
+            pending++;
+            if (pending == batchSize) {
+                flush();
+            }
+        }
+
+        long flush() throws SQLException {
+            if (pending > 0) {
+                stmt.executeBatch();
+                inserted += pending;
+                pending = 0;
+            }
+            return inserted;
+        }
+
+        private final PreparedStatement stmt;
+        private int pending;
+        private long inserted;
+    }
+
+    /*
+        The Table enum lists the generated tables along with their INSERT statements.
+    */
+    private enum Table {
+        USERS(FakebookOracleConstants.UsersTable, "?, ?, ?, ?, ?, ?, ?"),
+        FRIENDS(FakebookOracleConstants.FriendsTable, "?, ?"),
+        CITIES(FakebookOracleConstants.CitiesTable, "?, ?, ?, ?"),
+        CURRENT_CITIES(FakebookOracleConstants.CurrentCitiesTable, "?, ?"),
+        HOMETOWN_CITIES(FakebookOracleConstants.HometownCitiesTable, "?, ?"),
+        PROGRAMS(FakebookOracleConstants.ProgramsTable, "?, ?, ?, ?"),
+        EDUCATION(FakebookOracleConstants.EducationTable, "?, ?, ?"),
+        EVENTS(FakebookOracleConstants.EventsTable + " (EVENT_ID, EVENT_CREATOR_ID, EVENT_NAME, " +
+                "EVENT_CITY_ID, EVENT_START_TIME)", "?, ?, ?, ?, ?"),
+        ALBUMS(FakebookOracleConstants.AlbumsTable, "?, ?, ?, ?, ?, ?, ?, ?"),
+        PHOTOS(FakebookOracleConstants.PhotosTable, "?, ?, ?, ?, ?, ?"),
+        TAGS(FakebookOracleConstants.TagsTable, "?, ?, ?, ?, ?");
+
+        Table(String table, String values) {
+            this.table = table.split(" ")[0];
+            insert = "INSERT INTO " + table + " VALUES (" + values + ")";
+        }
+
+        final String table;
+        final String insert;
+    }
+
+    // Member Variables
+    private static final String[] Syllables = {
+        "ka", "lo", "mi", "ra", "te", "su", "na", "vi", "do", "el", "an", "jo", "bri", "chel", "ste", "wen"
+    };
+    private static final String[] States = {
+        "Alabama", "Alaska", "Arizona", "California", "Colorado", "Florida", "Georgia", "Hawaii",
+        "Illinois", "Kentucky", "Michigan", "Minnesota", "Nevada", "New Hampshire", "New York",
+        "Ohio", "Oregon", "Texas", "Utah", "Washington"
+    };
+    private static final String[] Degrees = { "BS", "BA", "MS", "MA", "PhD" };
+    private static final String[] Visibilities = { "EVERYONE", "FRIENDS", "FRIENDS_OF_FRIENDS", "MYSELF" };
+
+    private final int users;
+    private final long seed;
+    private final int cities;
+    private final int programs;
+    private final int events;
+    private final int albums;
+    private final int firstNames;
+    private final int lastNames;
+    private final long rankMultiplier;
+    private final long rankInverse;
+    private int averageFriends = 10;
+    private double friendSkew = 0.6;
+    private double tagSkew = 0.5;
+    private double nameSkew = 0.5;
+    private int photosPerAlbum = 4;
+    private int maxTagsPerPhoto = 8;
+    private int batchSize = 1000;
+    private int chunkSize = 50_000;
+    private int loaderThreads = 4;
+}
@@ -0,0 +1,254 @@
+package project2;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    The FakebookJdbcProfiler class measures where the time of each query goes. A
+    connection passed through wrap() hands out statements and result sets that count,
+    for the query running on the calling thread (see enter()):
+      - statements created (prepared or not) and executed, and rows fetched
+      - round trips: one per execution, plus one each time next() moves past a full
+        fetch of <fetchSize> rows (an estimate: the driver may prefetch differently)
+      - time spent in execute calls (server execution and the first fetch), in next()
+        (row transfer), and everything else in the query (Java-side assembly of the
+        result objects), which is the query's wall time minus the other two and minus
+        the time spent writing through Scope.output()
+    Work done outside of enter() is attributed to "other". Counters are LongAdders, so
+    queries may run on several threads at once; the cost per JDBC call is one proxy
+    dispatch and two System.nanoTime() reads.
+*/
+final class FakebookJdbcProfiler {
+    // [Constructor]
+    // EFFECTS: creates a profiler with every counter at zero
+    FakebookJdbcProfiler() {
+        for (int idx = 0; idx < Slots; idx++) {
+            counters[idx] = new Counters();
+        }
+    }
+
+    // [Wrap Function]
+    // EFFECTS: returns a connection that behaves like <connection> but records the
+    //          statements and result sets it creates in this profiler
+    Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Handler(connection, Connection.class, 0));
+    }
+
+    // [Enter Function]
+    // REQUIRES: 0 <= <query> <= 9
+    // EFFECTS:  attributes the JDBC work done by this thread to Query <query> until the
+    //           returned scope is closed, and times the query
+    Scope enter(int query) {
+        return new Scope(query);
+    }
+
+    // [Print Summary Function]
+    // EFFECTS: writes one line per query that did any work: calls, statements created
+    //          and executed, estimated round trips, rows, and time in ms split into
+    //          execute, fetch, and build
+    void printSummary(Writer writer) throws IOException {
+        writer.write(String.format("%-6s %6s %8s %8s %8s %10s %12s %12s %12s %12s%n", "Query", "Calls",
+                "Created", "Executed", "Trips", "Rows", "Execute(ms)", "Fetch(ms)", "Build(ms)", "Total(ms)"));
+        for (int query = 0; query < Slots; query++) {
+            Counters totals = counters[query];
+            if (totals.calls.sum() == 0 && totals.executed.sum() == 0 && totals.created.sum() == 0) {
+                continue;
+            }
+            long execute = totals.executeNanos.sum();
+            long fetch = totals.fetchNanos.sum();
+            long total = totals.wallNanos.sum();
+            boolean timed = query < Other;
+            writer.write(String.format("%-6s %6d %8d %8d %8d %10d %12.3f %12.3f %12s %12s%n",
+                    timed ? "Q" + query : "other", totals.calls.sum(), totals.created.sum(),
+                    totals.executed.sum(), totals.roundTrips.sum(), totals.rows.sum(), execute / 1e6,
+                    fetch / 1e6, timed ? String.format("%.3f", Math.max(0, total - execute - fetch) / 1e6) : "-",
+                    timed ? String.format("%.3f", total / 1e6) : "-"));
+        }
+        writer.flush();
+    }
+
+    /*
+        The Scope class marks the span of one query on one thread.
+    */
+    final class Scope implements AutoCloseable {
+        Scope(int query) {
+            this.query = query;
+            previous = current.get();
+            current.set(query);
+            begin = System.nanoTime();
+        }
+
+        // [Output Function]
+        // EFFECTS: returns a writer that passes everything on to <writer>, but whose
+        //          calls are left out of the query's time, so that a query that writes
+        //          its results as it reads them is not charged for the output
+        Writer output(Writer writer) {
+            return new FilterWriter(writer) {
+                @Override
+                public void write(int c) throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        out.write(c);
+                    } finally {
+                        excluded += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public void write(char[] chars, int offset, int length) throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        out.write(chars, offset, length);
+                    } finally {
+                        excluded += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public void write(String text, int offset, int length) throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        out.write(text, offset, length);
+                    } finally {
+                        excluded += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        out.flush();
+                    } finally {
+                        excluded += System.nanoTime() - start;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            Counters totals = counters[query];
+            totals.wallNanos.add(System.nanoTime() - begin - excluded);
+            totals.calls.increment();
+            current.set(previous);
+        }
+
+        private final int query;
+        private final int previous;
+        private final long begin;
+        private long excluded; // nanoseconds spent in output(); used by this thread only
+    }
+
+    private Counters counters() {
+        return counters[current.get()];
+    }
+
+    /*
+        The Handler class intercepts the calls made on one wrapped connection, statement,
+        or result set: it wraps the statements and result sets they return, and records
+        executions and rows.
+    */
+    private final class Handler implements InvocationHandler {
+        Handler(Object target, Class<?> type, int fetchSize) {
+            this.target = target;
+            this.type = type;
+            this.fetchSize = fetchSize > 0 ? fetchSize : DefaultFetchSize;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Profiled " + target;
+                default:
+                    break;
+            }
+
+            boolean execute = type != ResultSet.class && name.startsWith("execute");
+            boolean next = type == ResultSet.class && name.equals("next");
+            long begin = execute || next ? System.nanoTime() : 0L;
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (execute) {
+                Counters counters = counters();
+                counters.executeNanos.add(System.nanoTime() - begin);
+                counters.executed.increment();
+                counters.roundTrips.increment();
+            } else if (next) {
+                Counters counters = counters();
+                counters.fetchNanos.add(System.nanoTime() - begin);
+                if ((Boolean) result) {
+                    rows++;
+                    counters.rows.increment();
+                    if (rows > 1 && (rows - 1) % fetchSize == 0) {
+                        counters.roundTrips.increment();
+                    }
+                }
+            } else if (type == Connection.class && Statement.class.isAssignableFrom(method.getReturnType())) {
+                counters().created.increment();
+            }
+
+            Class<?> returned = method.getReturnType();
+            if (result instanceof ResultSet && returned == ResultSet.class) {
+                return wrapped(result, ResultSet.class, ((ResultSet) result).getFetchSize());
+            }
+            if (result instanceof Statement && returned.isInterface() && Statement.class.isAssignableFrom(returned)) {
+                return wrapped(result, returned, 0);
+            }
+            return result;
+        }
+
+        private Object wrapped(Object result, Class<?> returned, int fetchSize) {
+            return Proxy.newProxyInstance(returned.getClassLoader(), new Class<?>[] { returned },
+                    new Handler(result, returned, fetchSize));
+        }
+
+        private final Object target;
+        private final Class<?> type;
+        private final int fetchSize;
+        private long rows; // rows fetched so far, for result sets
+    }
+
+    /*
+        The Counters class holds the totals for one query.
+    */
+    private static final class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder created = new LongAdder();
+        final LongAdder executed = new LongAdder();
+        final LongAdder roundTrips = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder executeNanos = new LongAdder();
+        final LongAdder fetchNanos = new LongAdder();
+        final LongAdder wallNanos = new LongAdder();
+    }
+
+    // Member Variables
+    private static final int Other = 10; // the slot for work done outside of enter()
+    private static final int Slots = Other + 1;
+    private static final int DefaultFetchSize = 10; // the Oracle driver's default
+
+    private final Counters[] counters = new Counters[Slots];
+    private final ThreadLocal<Integer> current = ThreadLocal.withInitial(() -> Other);
+}
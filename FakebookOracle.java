@@ -3,8 +3,12 @@ package project2;
 import java.sql.SQLException;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongFunction;
 
-public abstract class FakebookOracle {
+public abstract class FakebookOracle implements AutoCloseable {
     // Abstract Query Functions to be Implemented
     public abstract BirthMonthInfo findMonthOfBirthInfo() throws SQLException;
 
@@ -26,80 +30,232 @@ public abstract class FakebookOracle {
 
     public abstract FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException;
 
+    // Bulk Query Functions
+    // [Bulk Query 8]
+    // REQUIRES: <userIDs> contains no null
+    // EFFECTS:  returns findAgeInfo(id) for every id in <userIDs>, keyed by user ID;
+    //           implementations should override this to answer all of the users in a few
+    //           round trips instead of one query per user
+    public Map<Long, AgeInfo> findAgeInfo(Collection<Long> userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new HashMap<Long, AgeInfo>();
+        for (Long userID : userIDs) {
+            long id = requireUserID(userID);
+            results.put(id, findAgeInfo(id));
+        }
+        return results;
+    }
+
+    // [Require User ID Function]
+    // EFFECTS: returns <userID> unboxed, or throws IllegalArgumentException if it is null,
+    //          for the bulk functions that take their user IDs as a Collection
+    protected static long requireUserID(Long userID) {
+        if (userID == null) {
+            throw new IllegalArgumentException("null user ID");
+        }
+        return userID;
+    }
+
+    // [Close Function]
+    // EFFECTS: releases what the oracle keeps between queries, but not the connection it
+    //          was given; does nothing unless overridden
+    @Override
+    public void close() throws SQLException {
+    }
+
+    // Streaming Query Functions
+    // [Streaming Queries 2, 3, and 9]
+    // EFFECTS: pass the number of results of lonelyUsers(), liveAwayFromHome(), or
+    //          findPotentialSiblings() to <consumer>.begin(), then each result to
+    //          <consumer> in order, and return the number of results; implementations
+    //          should override these to hand over each row as soon as it is read instead
+    //          of building the whole list first
+    public <E extends Exception> long lonelyUsers(FakebookConsumer<? super UserInfo, E> consumer)
+            throws SQLException, E {
+        return forEach(lonelyUsers(), consumer);
+    }
+
+    public <E extends Exception> long liveAwayFromHome(FakebookConsumer<? super UserInfo, E> consumer)
+            throws SQLException, E {
+        return forEach(liveAwayFromHome(), consumer);
+    }
+
+    public <E extends Exception> long findPotentialSiblings(FakebookConsumer<? super SiblingInfo, E> consumer)
+            throws SQLException, E {
+        return forEach(findPotentialSiblings(), consumer);
+    }
+
+    // [Counting Queries 2, 3, and 9]
+    // EFFECTS: return the number of results of lonelyUsers(), liveAwayFromHome(), or
+    //          findPotentialSiblings(); implementations should override these to count on
+    //          the server
+    public long countLonelyUsers() throws SQLException {
+        return lonelyUsers().size();
+    }
+
+    public long countLiveAwayFromHome() throws SQLException {
+        return liveAwayFromHome().size();
+    }
+
+    public long countPotentialSiblings() throws SQLException {
+        return findPotentialSiblings().size();
+    }
+
+    private static <T, E extends Exception> long forEach(FakebookArrayList<? extends T> results,
+            FakebookConsumer<? super T, E> consumer) throws E {
+        consumer.begin(results.size());
+        for (T item : results) {
+            consumer.accept(item);
+        }
+        return results.size();
+    }
+
     // Query Result Printing Functions
+    // Each function writes its results straight into <writer> rather than formatting the
+    // whole output into one String first; the text is the same either way
     public void printQuery0(Writer writer, BirthMonthInfo results) throws IOException {
-        String output = String.format("%sQuery 0%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeading(writer, 0);
+        FakebookRendering.append(writer, results);
+        printEnd(writer);
     }
 
     public void printQuery1(Writer writer, FirstNameInfo results) throws IOException {
-        String output = String.format("%sQuery 1%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeading(writer, 1);
+        FakebookRendering.append(writer, results);
+        printEnd(writer);
     }
 
     public void printQuery2(Writer writer, FakebookArrayList<UserInfo> results) throws IOException {
-        String output = String.format("%sQuery 2%s%nNumber of lonely users: %d%nLonely users are: %s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
-        writer.flush();
+        printHeading(writer, 2);
+        writer.append("Number of lonely users: ").append(Integer.toString(results.size()))
+                .append(FakebookRendering.NewLine).append("Lonely users are: ");
+        results.appendTo(writer);
+        printEnd(writer);
     }
 
     public void printQuery3(Writer writer, FakebookArrayList<UserInfo> results) throws IOException {
-        String output = String.format(
-                "%sQuery 3%s%nNumber of users who live away from home: %d%nThose users are: %s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
-        writer.flush();
+        printHeading(writer, 3);
+        writer.append("Number of users who live away from home: ").append(Integer.toString(results.size()))
+                .append(FakebookRendering.NewLine).append("Those users are: ");
+        results.appendTo(writer);
+        printEnd(writer);
     }
 
     public void printQuery4(Writer writer, FakebookArrayList<TaggedPhotoInfo> results) throws IOException {
-        String output = String.format("%sQuery 4%s%nThe following are the top %d photo(s) with the most tags:%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
-        writer.flush();
+        printHeading(writer, 4);
+        writer.append("The following are the top ").append(Integer.toString(results.size()))
+                .append(" photo(s) with the most tags:").append(FakebookRendering.NewLine);
+        results.appendTo(writer);
+        printEnd(writer);
     }
 
     public void printQuery5(Writer writer, FakebookArrayList<MatchPair> results) throws IOException {
-        String output = String.format("%sQuery 5%s%nTop %d match(es):%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
-        writer.flush();
+        printHeading(writer, 5);
+        writer.append("Top ").append(Integer.toString(results.size())).append(" match(es):")
+                .append(FakebookRendering.NewLine);
+        results.appendTo(writer);
+        printEnd(writer);
     }
 
     public void printQuery6(Writer writer, FakebookArrayList<UsersPair> results) throws IOException {
-        String output = String.format("%sQuery 6%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeading(writer, 6);
+        FakebookRendering.append(writer, results);
+        printEnd(writer);
     }
 
     public void printQuery7(Writer writer, EventStateInfo results) throws IOException {
-        String output = String.format("%sQuery 7%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeading(writer, 7);
+        FakebookRendering.append(writer, results);
+        printEnd(writer);
     }
 
     public void printQuery8(Writer writer, AgeInfo results) throws IOException {
-        String output = String.format("%sQuery 8%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeading(writer, 8);
+        FakebookRendering.append(writer, results);
+        printEnd(writer);
     }
 
     public void printQuery9(Writer writer, FakebookArrayList<SiblingInfo> results) throws IOException {
-        String output = String.format("%sQuery 9%s%n%d pair(s) of potential siblings:%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
+        printHeading(writer, 9);
+        writer.append(Integer.toString(results.size())).append(" pair(s) of potential siblings:")
+                .append(FakebookRendering.NewLine);
+        results.appendTo(writer);
+        printEnd(writer);
+    }
+
+    // writes the decorated "Query <query>" line that starts every query's output
+    private static void printHeading(Writer writer, int query) throws IOException {
+        writer.append(FakebookOracleConstants.PrintDecoration).append("Query ").append(Integer.toString(query))
+                .append(FakebookOracleConstants.PrintDecoration).append(FakebookRendering.NewLine);
+    }
+
+    // ends every query's output with a blank line
+    private static void printEnd(Writer writer) throws IOException {
+        writer.append(FakebookRendering.NewLine).append(FakebookRendering.NewLine);
         writer.flush();
     }
+
+    // Streaming Query Result Printing Functions
+    // [Stream Queries 2, 3, and 9]
+    // EFFECTS: print exactly what printQuery2/3/9 print for the corresponding query, but
+    //          write each result as soon as it is read, so the full list is never held in
+    //          memory; the count in the heading is the one the streaming query passes to
+    //          begin() before the first result, read from the same cursor
+    public void streamQuery2(Writer writer) throws SQLException, IOException {
+        printHeading(writer, 2);
+        finishStream(writer, lonelyUsers(new Delimited(writer, ", ",
+                total -> "Number of lonely users: " + total + FakebookRendering.NewLine + "Lonely users are: ")));
+    }
+
+    public void streamQuery3(Writer writer) throws SQLException, IOException {
+        printHeading(writer, 3);
+        finishStream(writer, liveAwayFromHome(new Delimited(writer, ", ",
+                total -> "Number of users who live away from home: " + total + FakebookRendering.NewLine
+                        + "Those users are: ")));
+    }
+
+    public void streamQuery9(Writer writer) throws SQLException, IOException {
+        printHeading(writer, 9);
+        finishStream(writer, findPotentialSiblings(new Delimited(writer, "\n",
+                total -> total + " pair(s) of potential siblings:" + FakebookRendering.NewLine)));
+    }
+
+    // an empty list prints as FakebookArrayList.toString() prints it
+    private static void finishStream(Writer writer, long written) throws IOException {
+        if (written == 0) {
+            writer.write("[]");
+        }
+        printEnd(writer);
+    }
+
+    /*
+        The Delimited class writes the heading that <heading> makes from the number of
+        results, then the results it receives, separated by the same delimiter the
+        corresponding FakebookArrayList would use.
+    */
+    private static final class Delimited implements FakebookConsumer<Object, IOException> {
+        Delimited(Writer writer, String delimiter, LongFunction<String> heading) {
+            this.writer = writer;
+            this.delimiter = delimiter;
+            this.heading = heading;
+        }
+
+        @Override
+        public void begin(long total) throws IOException {
+            writer.write(heading.apply(total));
+        }
+
+        @Override
+        public void accept(Object item) throws IOException {
+            if (!first) {
+                writer.write(delimiter);
+            }
+            FakebookRendering.append(writer, item);
+            first = false;
+        }
+
+        private final Writer writer;
+        private final String delimiter;
+        private final LongFunction<String> heading;
+        private boolean first = true;
+    }
 }
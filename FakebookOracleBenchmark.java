@@ -0,0 +1,263 @@
+package project2;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The FakebookOracleBenchmark class is a benchmark harness that runs each of the ten
+    StudentFakebookOracle queries against a local stand-in database loaded with the
+    Public_ schema, so that per-query latency and throughput can be tracked without the
+    network noise of the course database. It follows the JMH model: every (dataset size,
+    query) combination is run for a number of unmeasured warmup iterations followed by
+    measured iterations, and the whole run is repeated in separate forked JVMs so that
+    JIT and cursor-cache state from one fork does not leak into the next.
+*/
+public final class FakebookOracleBenchmark {
+    // [Main Function]
+    // Expected Command Line Arguments (all optional, given as key=value):
+    //  url=<jdbc url>       stand-in database; the JDBC driver must be on the classpath
+    //                       (default: in-memory H2 in Oracle compatibility mode)
+    //  sizes=<n,n,...>      numbers of users to generate, one dataset per size
+    //  threads=, batch=, chunk=, friends=, friendSkew=, tagSkew=, nameSkew=, seed=
+    //                       passed to FakebookDataGenerator when loading each dataset
+    //  queries=<q,q,...>    queries to run, each a digit 0-9 (default: all ten)
+    //  warmup=<n>           unmeasured iterations per query before measuring
+    //  iterations=<n>       measured iterations per query
+    //  forks=<n>            separate JVMs per dataset size (0 runs in this JVM)
+    //  user=<id>            the user ID passed to Query 8
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String url = options.getOrDefault("url", DefaultUrl);
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "10"));
+        int forks = Integer.parseInt(options.getOrDefault("forks", "2"));
+        long user = Long.parseLong(options.getOrDefault("user", "215"));
+        int[] sizes = parseList(options.getOrDefault("sizes", "1000,10000"));
+        int[] queries = parseList(options.getOrDefault("queries", "0,1,2,3,4,5,6,7,8,9"));
+
+        if (options.containsKey("child")) {
+            // Forked JVM: run one dataset size and report raw samples to the parent
+            int size = Integer.parseInt(options.get("child"));
+            long[][] samples = run(url, size, options, queries, warmup, iterations, user);
+            for (int idx = 0; idx < queries.length; idx++) {
+                for (long sample : samples[idx]) {
+                    System.out.println(SamplePrefix + " " + queries[idx] + " " + sample);
+                }
+            }
+            return;
+        }
+
+        System.out.printf("# Warmup: %d iterations, Measurement: %d iterations, Forks: %d%n",
+                warmup, iterations, forks);
+        System.out.printf("%-8s %-10s %12s %12s %12s %12s %14s%n",
+                "Query", "Users", "Mean(ms)", "Error(ms)", "Min(ms)", "Max(ms)", "Throughput/s");
+
+        for (int size : sizes) {
+            List<List<Long>> collected = new ArrayList<List<Long>>();
+            for (int idx = 0; idx < queries.length; idx++) {
+                collected.add(new ArrayList<Long>());
+            }
+
+            if (forks == 0) {
+                long[][] samples = run(url, size, options, queries, warmup, iterations, user);
+                for (int idx = 0; idx < queries.length; idx++) {
+                    for (long sample : samples[idx]) {
+                        collected.get(idx).add(sample);
+                    }
+                }
+            } else {
+                for (int fork = 0; fork < forks; fork++) {
+                    fork(args, size, queries, collected);
+                }
+            }
+
+            for (int idx = 0; idx < queries.length; idx++) {
+                report(queries[idx], size, collected.get(idx));
+            }
+        }
+    }
+
+    // [Run Function]
+    // EFFECTS: creates a stand-in database and loads it with <size> users using the
+    //          generator settings in <options>, then runs each query in <queries> for
+    //          <warmup> + <iterations> iterations, returning the measured latencies in
+    //          nanoseconds (one row per query); throws the SQLException of the first
+    //          query that fails
+    private static long[][] run(String url, int size, Map<String, String> options, int[] queries, int warmup,
+            int iterations, long user) throws SQLException {
+        long[][] samples = new long[queries.length][iterations];
+
+        try (Connection connection = DriverManager.getConnection(url, "", "")) {
+            FakebookSchema.create(connection);
+            Map<String, String> settings = new HashMap<String, String>(options);
+            settings.put("users", Integer.toString(size));
+            FakebookDataGenerator.configure(settings).load(url, "", "");
+
+            // A query that fails throws instead of returning a placeholder, which would
+            // otherwise be timed like a real answer; the run (and its fork) is aborted
+            try (StudentFakebookOracle db = new StudentFakebookOracle(connection)) {
+                db.setPropagateErrors(true);
+                for (int idx = 0; idx < queries.length; idx++) {
+                    for (int iter = 0; iter < warmup; iter++) {
+                        runQuery(db, queries[idx], user);
+                    }
+                    for (int iter = 0; iter < iterations; iter++) {
+                        long begin = System.nanoTime();
+                        runQuery(db, queries[idx], user);
+                        samples[idx][iter] = System.nanoTime() - begin;
+                    }
+                }
+            }
+
+            FakebookSchema.drop(connection);
+        }
+
+        return samples;
+    }
+
+    // [Run Query Function]
+    // EFFECTS: runs query <query> once, keeping its result reachable so that the work
+    //          cannot be optimized away
+    private static void runQuery(FakebookOracle db, int query, long user) throws SQLException {
+        switch (query) {
+            case 0:
+                sink = db.findMonthOfBirthInfo();
+                break;
+            case 1:
+                sink = db.findNameInfo();
+                break;
+            case 2:
+                sink = db.lonelyUsers();
+                break;
+            case 3:
+                sink = db.liveAwayFromHome();
+                break;
+            case 4:
+                sink = db.findPhotosWithMostTags(5);
+                break;
+            case 5:
+                sink = db.matchMaker(5, 2);
+                break;
+            case 6:
+                sink = db.suggestFriends(5);
+                break;
+            case 7:
+                sink = db.findEventStates();
+                break;
+            case 8:
+                sink = db.findAgeInfo(user);
+                break;
+            case 9:
+                sink = db.findPotentialSiblings();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown query: " + query);
+        }
+    }
+
+    // [Fork Function]
+    // MODIFIES: <collected>
+    // EFFECTS:  runs one dataset size in a new JVM with the same classpath and appends the
+    //           samples it reports to <collected>
+    private static void fork(String[] args, int size, int[] queries, List<List<Long>> collected)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(FakebookOracleBenchmark.class.getName());
+        command.addAll(Arrays.asList(args));
+        command.add("child=" + size);
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith(SamplePrefix)) {
+                    System.out.println(line);
+                    continue;
+                }
+                String[] fields = line.split(" ");
+                int query = Integer.parseInt(fields[1]);
+                for (int idx = 0; idx < queries.length; idx++) {
+                    if (queries[idx] == query) {
+                        collected.get(idx).add(Long.parseLong(fields[2]));
+                    }
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Benchmark fork exited with status " + process.exitValue());
+        }
+    }
+
+    // [Report Function]
+    // EFFECTS: prints the mean, 99.9% confidence error, extremes, and throughput of
+    //          <samples> (in nanoseconds) as one row of the results table
+    private static void report(int query, int size, List<Long> samples) {
+        int count = samples.size();
+        if (count == 0) {
+            return;
+        }
+
+        double sum = 0.0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long sample : samples) {
+            sum += sample;
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+        }
+        double mean = sum / count;
+
+        double squares = 0.0;
+        for (long sample : samples) {
+            squares += (sample - mean) * (sample - mean);
+        }
+        double stddev = count > 1 ? Math.sqrt(squares / (count - 1)) : 0.0;
+        double error = 3.291 * stddev / Math.sqrt(count); // z-score of a two-sided 99.9% interval
+
+        System.out.printf("%-8s %-10d %12.3f %12.3f %12.3f %12.3f %14.2f%n",
+                "Q" + query, size, mean / 1e6, error / 1e6, min / 1e6, max / 1e6, 1e9 / mean);
+    }
+
+    // [Parse Options Function]
+    // EFFECTS: returns the key=value pairs in <args> as a map
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    // [Parse List Function]
+    // EFFECTS: returns the comma-separated integers in <list>
+    private static int[] parseList(String list) {
+        String[] items = list.split(",");
+        int[] values = new int[items.length];
+        for (int idx = 0; idx < items.length; idx++) {
+            values[idx] = Integer.parseInt(items[idx].trim());
+        }
+        return values;
+    }
+
+    // Member Variables
+    private static final String DefaultUrl = "jdbc:h2:mem:fakebook;MODE=Oracle;DB_CLOSE_DELAY=-1";
+    private static final String SamplePrefix = "#SAMPLE";
+    private static volatile Object sink;
+}
@@ -1,12 +1,14 @@
 package project2;
 
+import java.io.IOException;
+
 /*
     The UserInfo class stores a subset of the information about Fakebook users;
     specifically, it stores user IDs, first names, and last names. Query 0,
     Query 2, Query 3, Query 4, Query 5, Query 6, Query 8, and Query 9 will use this data
     structure.
 */
-final class UserInfo {
+final class UserInfo implements FakebookRenderable {
     // [Constructor]
     public UserInfo(long userID, String firstName, String lastName) {
         this.userID = userID;
@@ -17,7 +19,13 @@ final class UserInfo {
     // [UserInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this UserInfo instance
     public String toString() {
-        return String.format("%s %s (%d)", firstName, lastName, userID);
+        return FakebookRendering.toString(this);
+    }
+
+    // [UserInfo Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append(firstName).append(' ').append(lastName).append(" (").append(Long.toString(userID)).append(')');
     }
 
     // Member Variables
@@ -32,7 +40,7 @@ final class UserInfo {
     latter two of which refer to the album that contains the photo in question).
     Query 4 and Query 5 will use this data structure.
 */
-final class PhotoInfo {
+final class PhotoInfo implements FakebookRenderable {
     // [Constructor]
     public PhotoInfo(long photoID, long albumID, String link, String albumName) {
         this.photoID = photoID;
@@ -44,8 +52,14 @@ final class PhotoInfo {
     // [PhotoInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this PhotoInfo instance
     public String toString() {
-        return String.format("(Photo #%d) from Album #%d (%s) at url '%s'",
-                photoID, albumID, albumName, link);
+        return FakebookRendering.toString(this);
+    }
+
+    // [PhotoInfo Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("(Photo #").append(Long.toString(photoID)).append(") from Album #").append(Long.toString(albumID))
+                .append(" (").append(albumName).append(") at url '").append(link).append('\'');
     }
 
     // Member Variables
@@ -61,7 +75,7 @@ final class PhotoInfo {
     photo and a list of UserInfo instances identifying the users tagged in that
     photo. Query 4 will use this data structure.
 */
-final class TaggedPhotoInfo {
+final class TaggedPhotoInfo implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: <photo> is not NULL
     public TaggedPhotoInfo(PhotoInfo photo) {
@@ -80,7 +94,16 @@ final class TaggedPhotoInfo {
     // [TaggedPhotoInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this TaggedPhotoInfo instance
     public String toString() {
-        return String.format("%s%n%d Tags%n%s", photo, usersTagged.size(), usersTagged);
+        return FakebookRendering.toString(this);
+    }
+
+    // [TaggedPhotoInfo Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        FakebookRendering.append(out, photo);
+        out.append(FakebookRendering.NewLine).append(Integer.toString(usersTagged.size())).append(" Tags")
+                .append(FakebookRendering.NewLine);
+        FakebookRendering.append(out, usersTagged);
     }
 
     // Member Variables
@@ -94,7 +117,7 @@ final class TaggedPhotoInfo {
     user (plus each user's birth year) and a list of PhotoInfo instances identifying
     the photos in which they are both tagged. Query 5 will use this data structure.
 */
-final class MatchPair {
+final class MatchPair implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> is NULL
     public MatchPair(UserInfo user1, long user1Year, UserInfo user2, long user2Year) {
@@ -116,9 +139,19 @@ final class MatchPair {
     // [MatchPair-to-String Converter]
     // EFFECTS:  returns a string representation of this MatchPair instance
     public String toString() {
-        return String.format("%s born in %d / %s born in %d%n" +
-                "They are not Fakebook friends and are tagged in %d common photo(s)%n%s",
-                user1, user1Year, user2, user2Year, sharedPhotos.size(), sharedPhotos);
+        return FakebookRendering.toString(this);
+    }
+
+    // [MatchPair Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        FakebookRendering.append(out, user1);
+        out.append(" born in ").append(Long.toString(user1Year)).append(" / ");
+        FakebookRendering.append(out, user2);
+        out.append(" born in ").append(Long.toString(user2Year)).append(FakebookRendering.NewLine)
+                .append("They are not Fakebook friends and are tagged in ").append(Integer.toString(sharedPhotos.size()))
+                .append(" common photo(s)").append(FakebookRendering.NewLine);
+        FakebookRendering.append(out, sharedPhotos);
     }
 
     // Member Variables
@@ -135,7 +168,7 @@ final class MatchPair {
     users and a list of UserInfo instances identifying the two users' common
     friends. Query 6 will use this data structure.
 */
-final class UsersPair {
+final class UsersPair implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> is NULL
     public UsersPair(UserInfo user1, UserInfo user2) {
@@ -155,8 +188,18 @@ final class UsersPair {
     // [UserPair-to-String Converter]
     // EFFECTS:  returns a string representation of this UsersPair instance
     public String toString() {
-        return String.format("%s and %s are not Fakebook friends but share %d common friends:%n%s",
-                user1, user2, sharedFriends.size(), sharedFriends);
+        return FakebookRendering.toString(this);
+    }
+
+    // [UsersPair Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        FakebookRendering.append(out, user1);
+        out.append(" and ");
+        FakebookRendering.append(out, user2);
+        out.append(" are not Fakebook friends but share ").append(Integer.toString(sharedFriends.size()))
+                .append(" common friends:").append(FakebookRendering.NewLine);
+        FakebookRendering.append(out, sharedFriends);
     }
 
     // Member Variables
@@ -170,7 +213,7 @@ final class UsersPair {
     siblings; specifically, it stores one UserInfo instance for each of th two
     users. Query 9 will use this data structure.
 */
-final class SiblingInfo {
+final class SiblingInfo implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> are NULL
     public SiblingInfo(UserInfo user1, UserInfo user2) {
@@ -181,7 +224,15 @@ final class SiblingInfo {
     // [SiblingInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this SiblingInfo instance
     public String toString() {
-        return String.format("%s and %s", user1.toString(), user2.toString());
+        return FakebookRendering.toString(this);
+    }
+
+    // [SiblingInfo Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        FakebookRendering.append(out, user1);
+        out.append(" and ");
+        FakebookRendering.append(out, user2);
     }
 
     // Member Variables
@@ -196,7 +247,7 @@ final class SiblingInfo {
     are, and the month in which the fewest (but at least 1) users were born
     and who those users are. Query 0 will use this data structure.
 */
-final class BirthMonthInfo {
+final class BirthMonthInfo implements FakebookRenderable {
     // [Constructor]
     public BirthMonthInfo(long totalUsers, int mostPopularMonth, int leastPopularMonth) {
         this.totalUsers = totalUsers;
@@ -225,12 +276,22 @@ final class BirthMonthInfo {
     // [BirthMonthInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this BirthMonthInfo instance
     public String toString() {
-        return String.format("Users with birth month info: %d%n" +
-                "The most common birth month is %d (%d users)%nUsers: %s%n" +
-                "The least common birth month is %d (%d users)%nUsers: %s",
-                totalUsers,
-                mostPopularMonth, usersBornInMostPopularMonth.size(), usersBornInMostPopularMonth,
-                leastPopularMonth, usersBornInLeastPopularMonth.size(), usersBornInLeastPopularMonth);
+        return FakebookRendering.toString(this);
+    }
+
+    // [BirthMonthInfo Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Users with birth month info: ").append(Long.toString(totalUsers)).append(FakebookRendering.NewLine)
+                .append("The most common birth month is ").append(Integer.toString(mostPopularMonth))
+                .append(" (").append(Integer.toString(usersBornInMostPopularMonth.size())).append(" users)")
+                .append(FakebookRendering.NewLine).append("Users: ");
+        FakebookRendering.append(out, usersBornInMostPopularMonth);
+        out.append(FakebookRendering.NewLine)
+                .append("The least common birth month is ").append(Integer.toString(leastPopularMonth))
+                .append(" (").append(Integer.toString(usersBornInLeastPopularMonth.size())).append(" users)")
+                .append(FakebookRendering.NewLine).append("Users: ");
+        FakebookRendering.append(out, usersBornInLeastPopularMonth);
     }
 
     // Member Variables
@@ -247,7 +308,7 @@ final class BirthMonthInfo {
     names with the fewest letters, and a list of the most commonly-held first names and
     how many users have that first name. Query 1 will use this data structure.
 */
-final class FirstNameInfo {
+final class FirstNameInfo implements FakebookRenderable {
     // [Constructor]
     public FirstNameInfo() {
         commonCount = 0;
@@ -279,10 +340,19 @@ final class FirstNameInfo {
     // [FirstNameInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this FirstNameInfo instance
     public String toString() {
-        return String.format("The longest first name(s) is (are) %s%n" +
-                "The shortest first name(s) is (are) %s%n" +
-                "The most common first name(s) is (are) %s - having %d users having each one",
-                longestFirstNames, shortestFirstNames, mostCommonFirstNames, commonCount);
+        return FakebookRendering.toString(this);
+    }
+
+    // [FirstNameInfo Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("The longest first name(s) is (are) ");
+        FakebookRendering.append(out, longestFirstNames);
+        out.append(FakebookRendering.NewLine).append("The shortest first name(s) is (are) ");
+        FakebookRendering.append(out, shortestFirstNames);
+        out.append(FakebookRendering.NewLine).append("The most common first name(s) is (are) ");
+        FakebookRendering.append(out, mostCommonFirstNames);
+        out.append(" - having ").append(Long.toString(commonCount)).append(" users having each one");
     }
 
     // Member Variables
@@ -297,7 +367,7 @@ final class FirstNameInfo {
     held; specifically, it stores a list of the states in which the most events are
     held and the number of events therein held. Query 7 will use this data structure.
 */
-final class EventStateInfo {
+final class EventStateInfo implements FakebookRenderable {
     // [Constructor]
     public EventStateInfo(long eventCount) {
         this.eventCount = eventCount;
@@ -312,9 +382,16 @@ final class EventStateInfo {
     // [EventStateInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this EventStateInfo instance
     public String toString() {
-        return String.format("State(s) with the most events: %s%n" +
-                "Number of events in that (those) state(s): %d",
-                popularStates, eventCount);
+        return FakebookRendering.toString(this);
+    }
+
+    // [EventStateInfo Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("State(s) with the most events: ");
+        FakebookRendering.append(out, popularStates);
+        out.append(FakebookRendering.NewLine).append("Number of events in that (those) state(s): ")
+                .append(Long.toString(eventCount));
     }
 
     // Member Variables
@@ -327,7 +404,7 @@ final class EventStateInfo {
     though it does not store information about who that particular user is. Query 8 will
     use this data structure.
 */
-final class AgeInfo {
+final class AgeInfo implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: neither <oldest> nor <youngest> is NULL
     public AgeInfo(UserInfo oldestFriend, UserInfo youngestFriend) {
@@ -338,8 +415,16 @@ final class AgeInfo {
     // [AgeInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this AgeInfo instance
     public String toString() {
-        return String.format("Oldest friend: %s%nYoungest friend: %s",
-                oldestFriend, youngestFriend);
+        return FakebookRendering.toString(this);
+    }
+
+    // [AgeInfo Appender]
+    // EFFECTS:  appends the same text as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Oldest friend: ");
+        FakebookRendering.append(out, oldestFriend);
+        out.append(FakebookRendering.NewLine).append("Youngest friend: ");
+        FakebookRendering.append(out, youngestFriend);
     }
 
     // Member Variabls
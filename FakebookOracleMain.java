@@ -2,20 +2,64 @@ package project2;
 
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public final class FakebookOracleMain {
     // Member Variables
     private static String username = "vedangp"; // replace with your uniqname
     private static String password = "eecsclass"; // replace with your Oracle password (default: eecsclass)
+    private static final String url = "jdbc:oracle:thin:@forktail.dsc.umich.edu:1521:COURSEDB";
+    private static final int minPoolSize = 1; // connections opened at startup
+    private static final int maxPoolSize = 10; // enough for every query to have its own in parallel mode
+    private static final long poolIdleTimeout = 60000L; // milliseconds before an idle connection is closed
+    private static FakebookConnectionPool pool;
+    private static String oracleType = "sql"; // see createOracle()
+    private static FakebookSnapshotFile snapshotFile; // null unless snapshot= was given
+    private static InMemoryFakebookOracle.Tables memoryTables; // read once if oracle=memory
+    private static TopTaggedPhotoIndex tagIndex; // null unless tagIndex= was given
+    private static FakebookAggregates aggregates; // null unless aggregates=on was given
+    private static final FakebookJdbcProfiler profiler = new FakebookJdbcProfiler(); // summary printed to stderr
 
     // [Main Function]
     // Expected Command Line Arguments:
     //  [0] either "all" or a digit 0-9, representing what query to run
-    //  [1] either "p" or "t", indicating "print results" and "time queries" respectively
+    //  [1] "p", "t", or "l", indicating "print results", "time queries", and "measure
+    //      latency" respectively
+    //  [2...] optionally "parallel", to run the queries concurrently, each on its own
+    //      connection ("p" and "t" only); oracle=sql|memory, to answer the queries with
+    //      StudentFakebookOracle (the default) or InMemoryFakebookOracle; for "memory",
+    //      snapshot=<file>, to build it from a FakebookSnapshotFile instead of the
+    //      tables; tagIndex=<n>, to answer Query 4 for up to <n> photos from a
+    //      TopTaggedPhotoIndex loaded at startup; aggregates=on, to answer Queries 0, 1,
+    //      and 7 from FakebookAggregates loaded at startup; and for "l", any of
+    //      warmup=<n> (default 5), iterations=<n> (default 20), and format=text|csv|json
+    //      (default text)
+    // Or, to keep running and answer queries over HTTP (see FakebookQueryService):
+    //  [0] "serve"
+    //  [1...] optionally port=<n> (default 8080), workers=<n>, the number of queries
+    //      run at once (default: the maximum pool size, which grows to fit more
+    //      workers), tagIndex=<n> and aggregates=on as above, and cache=<n>, to keep up
+    //      to <n> results of Queries 4, 5, 6, and 8 in a CachingFakebookOracle for
+    //      cacheTtl=<ms> each (default 60000)
     public static void main(String[] args) {
+        if (args[0].equals("serve")) {
+            serve(FakebookOracleBenchmark.parseOptions(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+
         int start = 0; // inclusive
         int stop = 10; // exclusive
         if (!(args[0].equals("all"))) {
@@ -24,56 +68,113 @@ public final class FakebookOracleMain {
         }
 
         boolean print = args[1].equals("p");
-        if (print) {
-            query(start, stop);
-        } else {
-            time(start, stop);
+        boolean latency = args[1].equals("l");
+        boolean parallel = false;
+        List<String> settings = new ArrayList<String>();
+        for (int idx = 2; idx < args.length; idx++) {
+            if (args[idx].equals("parallel")) {
+                parallel = true;
+            } else {
+                settings.add(args[idx]);
+            }
+        }
+        Map<String, String> options = FakebookOracleBenchmark.parseOptions(settings.toArray(new String[0]));
+        if (latency && parallel) {
+            throw new IllegalArgumentException("\"parallel\" applies to \"p\" and \"t\" only");
+        }
+        oracleType = options.getOrDefault("oracle", "sql");
+        if (!oracleType.equals("sql") && !oracleType.equals("memory")) {
+            throw new IllegalArgumentException("Unknown oracle: " + oracleType);
+        }
+        if (options.containsKey("snapshot")) {
+            if (!oracleType.equals("memory")) {
+                throw new IllegalArgumentException("snapshot= requires oracle=memory");
+            }
+            try {
+                snapshotFile = FakebookSnapshotFile.open(Paths.get(options.get("snapshot")));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+
+        try (FakebookConnectionPool connections = createPool(maxPoolSize)) {
+            pool = connections;
+            loadIndexes(options);
+            if (latency) {
+                latency(start, stop, options);
+            } else if (parallel) {
+                parallel(start, stop, print);
+            } else if (print) {
+                query(start, stop);
+            } else {
+                time(start, stop);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        printProfile();
+    }
+
+    // Prints the profiler's summary to stderr, so that the results on stdout are unchanged
+    private static void printProfile() {
+        try {
+            profiler.printSummary(new OutputStreamWriter(System.err));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Answers queries over HTTP until the JVM is stopped, then prints the profiler's
+    // summary of the requests that were answered
+    private static void serve(Map<String, String> options) {
+        int port = Integer.parseInt(options.getOrDefault("port", "8080"));
+        int workers = Integer.parseInt(options.getOrDefault("workers", Integer.toString(maxPoolSize)));
+
+        // the service keeps one connection per worker open for as long as it runs
+        try (FakebookConnectionPool connections = createPool(Math.max(maxPoolSize, workers))) {
+            pool = connections;
+            loadIndexes(options);
+            FakebookQueryService service = new FakebookQueryService(FakebookOracleMain::getConnection, workers, port,
+                    profiler);
+            service.setTagIndex(tagIndex);
+            service.setAggregates(aggregates);
+            if (options.containsKey("cache")) {
+                service.setResultCache(Integer.parseInt(options.get("cache")),
+                        Long.parseLong(options.getOrDefault("cacheTtl", "60000")));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                service.close();
+                printProfile();
+            }));
+            service.start();
+            System.out.println(String.format("Serving on http://localhost:%d/ with %d worker(s) on %s threads",
+                    service.port(), workers, service.virtualThreads() ? "virtual" : "platform"));
+            service.await();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     private static void query(int start, int stop) {
-        try (Connection oracleConnection = getConnection()) {
-            FakebookOracle db = new StudentFakebookOracle(oracleConnection);
+        try (Connection oracleConnection = getConnection();
+                FakebookOracle db = createOracle(oracleConnection, false)) {
             OutputStreamWriter out = new OutputStreamWriter(System.out);
 
             for (int query = start; query < stop; query++) {
-                switch (query) {
-                    case 0:
-                        db.printQuery0(out, db.findMonthOfBirthInfo());
-                        break;
-                    case 1:
-                        db.printQuery1(out, db.findNameInfo());
-                        break;
-                    case 2:
-                        db.printQuery2(out, db.lonelyUsers());
-                        break;
-                    case 3:
-                        db.printQuery3(out, db.liveAwayFromHome());
-                        break;
-                    case 4:
-                        db.printQuery4(out, db.findPhotosWithMostTags(5));
-                        break;
-                    case 5:
-                        db.printQuery5(out, db.matchMaker(5, 2));
-                        break;
-                    case 6:
-                        db.printQuery6(out, db.suggestFriends(5));
-                        break;
-                    case 7:
-                        db.printQuery7(out, db.findEventStates());
-                        break;
-                    case 8:
-                        db.printQuery8(out, db.findAgeInfo(215L));
-                        break;
-                    case 9:
-                        db.printQuery9(out, db.findPotentialSiblings());
-                        break;
-                    default:
-                        break;
+                // the queries that can return every user are written out as they are read
+                if (query == 2 || query == 3 || query == 9) {
+                    streamQuery(db, query, out);
+                } else {
+                    runQuery(db, query).print(out);
                 }
             }
-
-            oracleConnection.close();
+            printStatistics("Oracle", db);
         } catch (SQLException e) {
             e.printStackTrace();
         } catch (IOException e) {
@@ -85,61 +186,318 @@ public final class FakebookOracleMain {
         long beginTime = 0L;
         long endTime = 0L;
 
-        try (Connection oracleConnection = getConnection()) {
-            FakebookOracle db = new StudentFakebookOracle(oracleConnection);
+        try (Connection oracleConnection = getConnection();
+                FakebookOracle db = createOracle(oracleConnection, false)) {
             OutputStreamWriter out = new OutputStreamWriter(System.out);
 
             for (int query = start; query < stop; query++) {
-                beginTime = System.currentTimeMillis();
-                switch (query) {
-                    case 0:
-                        db.findMonthOfBirthInfo();
-                        break;
-                    case 1:
-                        db.findNameInfo();
-                        break;
-                    case 2:
-                        db.lonelyUsers();
-                        break;
-                    case 3:
-                        db.liveAwayFromHome();
-                        break;
-                    case 4:
-                        db.findPhotosWithMostTags(5);
-                        break;
-                    case 5:
-                        db.matchMaker(5, 2);
-                        break;
-                    case 6:
-                        db.suggestFriends(5);
-                        break;
-                    case 7:
-                        db.findEventStates();
-                        break;
-                    case 8:
-                        db.findAgeInfo(215L);
+                beginTime = System.nanoTime();
+                runQuery(db, query);
+                endTime = System.nanoTime();
+
+                out.write(String.format("Query %d Time: %.3f%n", query, (endTime - beginTime) / 1e9));
+                out.flush();
+            }
+            printStatistics("Oracle", db);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Runs each query once on an oracle of its own (the first iteration, before the
+    // oracle has prepared any statement or cached any user; only the first query also
+    // runs before the JIT has warmed up), <warmup> more times unmeasured, and
+    // <iterations> times measured, then reports the first-iteration latency and the
+    // percentiles of the warm ones. A query that fails is reported on stderr and left
+    // out instead of being timed.
+    private static void latency(int start, int stop, Map<String, String> options) {
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "20"));
+        String format = options.getOrDefault("format", "text");
+        String run = Instant.now().toString(); // identifies the run when results are charted over time
+
+        try {
+            OutputStreamWriter out = new OutputStreamWriter(System.out);
+
+            switch (format) {
+                case "csv":
+                    out.write(String.format("time,query,warmup,iterations,first_ms,p50_ms,p90_ms,p99_ms,max_ms,mean_ms%n"));
+                    break;
+                case "json":
+                    out.write(String.format("{\"time\": \"%s\", \"warmup\": %d, \"iterations\": %d, \"queries\": [%n",
+                            run, warmup, iterations));
+                    break;
+                default:
+                    out.write(String.format("# Warmup: %d iterations, Measurement: %d iterations%n", warmup, iterations));
+                    out.write(String.format("%-8s %10s %10s %10s %10s %10s %10s%n",
+                            "Query", "First(ms)", "p50(ms)", "p90(ms)", "p99(ms)", "Max(ms)", "Mean(ms)"));
+                    break;
+            }
+            out.flush();
+
+            boolean firstEntry = true;
+            for (int query = start; query < stop; query++) {
+                double[] millis;
+                try (Connection oracleConnection = getConnection();
+                        FakebookOracle db = createOracle(oracleConnection, true)) {
+                    long begin = System.nanoTime();
+                    runQuery(db, query);
+                    long first = System.nanoTime() - begin;
+
+                    for (int iter = 0; iter < warmup; iter++) {
+                        runQuery(db, query);
+                    }
+                    LatencyHistogram warm = new LatencyHistogram();
+                    for (int iter = 0; iter < iterations; iter++) {
+                        begin = System.nanoTime();
+                        runQuery(db, query);
+                        warm.record(System.nanoTime() - begin);
+                    }
+
+                    millis = new double[] { first / 1e6, warm.percentile(50) / 1e6, warm.percentile(90) / 1e6,
+                            warm.percentile(99) / 1e6, warm.max() / 1e6, warm.mean() / 1e6 };
+                    printStatistics("Q" + query, db);
+                } catch (SQLException e) {
+                    // the oracle has already printed the failure's message
+                    System.err.println(String.format("Query %d failed and was not measured", query));
+                    continue;
+                }
+
+                switch (format) {
+                    case "csv":
+                        out.write(String.format(Locale.ROOT, "%s,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                                run, query, warmup, iterations, millis[0], millis[1], millis[2], millis[3],
+                                millis[4], millis[5]));
                         break;
-                    case 9:
-                        db.findPotentialSiblings();
+                    case "json":
+                        out.write(String.format(Locale.ROOT, "%s  {\"query\": %d, \"first_ms\": %.3f, \"p50_ms\": %.3f, "
+                                + "\"p90_ms\": %.3f, \"p99_ms\": %.3f, \"max_ms\": %.3f, \"mean_ms\": %.3f}",
+                                firstEntry ? "" : String.format(",%n"), query, millis[0], millis[1], millis[2],
+                                millis[3], millis[4], millis[5]));
                         break;
                     default:
+                        out.write(String.format("%-8s %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                                "Q" + query, millis[0], millis[1], millis[2], millis[3], millis[4], millis[5]));
                         break;
                 }
-                endTime = System.currentTimeMillis();
-
-                out.write(String.format("Query %d Time: %.3f%n", query, (endTime - beginTime) / 1000.0));
+                firstEntry = false;
                 out.flush();
             }
 
-            oracleConnection.close();
-        } catch (SQLException e) {
+            if (format.equals("json")) {
+                out.write(String.format(firstEntry ? "]}%n" : "%n]}%n"));
+                out.flush();
+            }
+        } catch (IOException e) {
             e.printStackTrace();
+        }
+    }
+
+    // Runs every query at once on a worker pool, each on a connection of its own, then
+    // prints the results (or the times) in query order
+    private static void parallel(int start, int stop, boolean print) {
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(maxPoolSize, stop - start));
+        long beginTime = System.currentTimeMillis();
+
+        try {
+            List<Future<Timed>> futures = new ArrayList<Future<Timed>>();
+            for (int query = start; query < stop; query++) {
+                final int number = query;
+                futures.add(workers.submit(() -> {
+                    try (Connection oracleConnection = getConnection();
+                            FakebookOracle db = createOracle(oracleConnection, false)) {
+                        long queryBegin = System.currentTimeMillis();
+                        QueryResult result = runQuery(db, number);
+                        long millis = System.currentTimeMillis() - queryBegin;
+                        printStatistics("Query " + number, db);
+                        return new Timed(result, millis);
+                    }
+                }));
+            }
+
+            OutputStreamWriter out = new OutputStreamWriter(System.out);
+            for (int query = start; query < stop; query++) {
+                Timed timed = futures.get(query - start).get();
+                if (print) {
+                    timed.result.print(out);
+                } else {
+                    out.write(String.format("Query %d Time: %.3f%n", query, timed.millis / 1000.0));
+                    out.flush();
+                }
+            }
+            if (!print) {
+                long endTime = System.currentTimeMillis();
+                out.write(String.format("Total Time: %.3f%n", (endTime - beginTime) / 1000.0));
+                out.flush();
+            }
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // Runs query <query> on <db> with the parameters used by every mode; the result is
+    // printed later through <db>'s matching printQueryN function, which does not query
+    private static QueryResult runQuery(FakebookOracle db, int query) throws SQLException {
+        FakebookJdbcProfiler.Scope scope = profiler.enter(query);
+        try {
+            return answer(db, query);
+        } finally {
+            scope.close();
         }
     }
 
+    // Runs and prints query 2, 3, or 9 on <db> through its streaming printer; the time
+    // spent writing to <out> is not counted as the query's
+    private static void streamQuery(FakebookOracle db, int query, OutputStreamWriter out)
+            throws SQLException, IOException {
+        FakebookJdbcProfiler.Scope scope = profiler.enter(query);
+        try {
+            Writer writer = scope.output(out);
+            switch (query) {
+                case 2:
+                    db.streamQuery2(writer);
+                    break;
+                case 3:
+                    db.streamQuery3(writer);
+                    break;
+                default:
+                    db.streamQuery9(writer);
+                    break;
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    private static QueryResult answer(FakebookOracle db, int query) throws SQLException {
+        switch (query) {
+            case 0: {
+                BirthMonthInfo results = db.findMonthOfBirthInfo();
+                return out -> db.printQuery0(out, results);
+            }
+            case 1: {
+                FirstNameInfo results = db.findNameInfo();
+                return out -> db.printQuery1(out, results);
+            }
+            case 2: {
+                FakebookArrayList<UserInfo> results = db.lonelyUsers();
+                return out -> db.printQuery2(out, results);
+            }
+            case 3: {
+                FakebookArrayList<UserInfo> results = db.liveAwayFromHome();
+                return out -> db.printQuery3(out, results);
+            }
+            case 4: {
+                FakebookArrayList<TaggedPhotoInfo> results = db.findPhotosWithMostTags(5);
+                return out -> db.printQuery4(out, results);
+            }
+            case 5: {
+                FakebookArrayList<MatchPair> results = db.matchMaker(5, 2);
+                return out -> db.printQuery5(out, results);
+            }
+            case 6: {
+                FakebookArrayList<UsersPair> results = db.suggestFriends(5);
+                return out -> db.printQuery6(out, results);
+            }
+            case 7: {
+                EventStateInfo results = db.findEventStates();
+                return out -> db.printQuery7(out, results);
+            }
+            case 8: {
+                AgeInfo results = db.findAgeInfo(215L);
+                return out -> db.printQuery8(out, results);
+            }
+            case 9: {
+                FakebookArrayList<SiblingInfo> results = db.findPotentialSiblings();
+                return out -> db.printQuery9(out, results);
+            }
+            default:
+                return out -> { };
+        }
+    }
+
+    // The result of one query, waiting to be printed
+    private interface QueryResult {
+        void print(OutputStreamWriter out) throws IOException;
+    }
+
+    // A query result together with how long the query took
+    private static final class Timed {
+        Timed(QueryResult result, long millis) {
+            this.result = result;
+            this.millis = millis;
+        }
+
+        final QueryResult result;
+        final long millis;
+    }
+
+    // Loads the in-memory indexes asked for in <options>, and the tables of oracle=memory,
+    // once for every oracle; the runs only read the tables, so the indexes stay current
+    // without any events
+    private static void loadIndexes(Map<String, String> options) throws SQLException {
+        if (snapshotFile != null) {
+            memoryTables = InMemoryFakebookOracle.Tables.read(snapshotFile);
+        } else if (oracleType.equals("memory")) {
+            try (Connection connection = getConnection()) {
+                memoryTables = InMemoryFakebookOracle.Tables.read(connection);
+            }
+        }
+        if (options.containsKey("tagIndex")) {
+            try (Connection connection = getConnection()) {
+                tagIndex = TopTaggedPhotoIndex.load(connection, Integer.parseInt(options.get("tagIndex")));
+            }
+        }
+        if (options.getOrDefault("aggregates", "off").equals("on")) {
+            try (Connection connection = getConnection()) {
+                aggregates = FakebookAggregates.load(connection, new FakebookChangeLog());
+            }
+        }
+    }
+
+    // Creates the oracle chosen by the oracle= option on <connection>, over the tables
+    // loadIndexes() read for oracle=memory; if <propagate>, its queries throw when they
+    // fail instead of printing the error and going on
+    private static FakebookOracle createOracle(Connection connection, boolean propagate) throws SQLException {
+        StudentFakebookOracle sql = new StudentFakebookOracle(connection);
+        sql.setPropagateErrors(propagate);
+        sql.setTagIndex(tagIndex);
+        sql.setAggregates(aggregates);
+        if (memoryTables != null) {
+            return new InMemoryFakebookOracle(memoryTables, sql);
+        }
+        return sql;
+    }
+
+    // Prints the prepared statement and user cache statistics of <db> (or of the
+    // StudentFakebookOracle it wraps) to stderr, labeled <label>, so that the results on
+    // stdout are unchanged
+    private static void printStatistics(String label, FakebookOracle db) {
+        if (db instanceof InMemoryFakebookOracle) {
+            db = ((InMemoryFakebookOracle) db).delegate();
+        }
+        if (db instanceof StudentFakebookOracle) {
+            StudentFakebookOracle student = (StudentFakebookOracle) db;
+            System.err.println(label + " statements: " + student.statements());
+            System.err.println(label + " user cache: " + student.users());
+        }
+    }
+
+    // Borrows a connection from the pool; closing it returns the connection to the pool
     private static Connection getConnection() throws SQLException {
+        return profiler.wrap(pool.borrow());
+    }
+
+    // Opens a pool of up to <maxSize> connections
+    private static FakebookConnectionPool createPool(int maxSize) throws SQLException {
         try {
             Class.forName("oracle.jdbc.driver.OracleDriver").newInstance();
         } catch (InstantiationException e) {
@@ -150,7 +508,6 @@ public final class FakebookOracleMain {
             e.printStackTrace();
         }
 
-        return DriverManager.getConnection("jdbc:oracle:thin:@forktail.dsc.umich.edu:1521:COURSEDB", username,
-                password);
+        return new FakebookConnectionPool(url, username, password, minPoolSize, maxSize, poolIdleTimeout);
     }
 }
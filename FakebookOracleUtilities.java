@@ -1,5 +1,6 @@
 package project2;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 /*
@@ -7,7 +8,7 @@ import java.util.ArrayList;
     function, specifically the inter-item delimiter and the removal of leading/trailing
     brackets.
 */
-final class FakebookArrayList<T> extends ArrayList<T> {
+final class FakebookArrayList<T> extends ArrayList<T> implements FakebookRenderable {
     // [Constructor]
     public FakebookArrayList(String delim) {
         super();
@@ -19,22 +20,97 @@ final class FakebookArrayList<T> extends ArrayList<T> {
     // EFFECTS: constructs a string representation of the elements contained in this
     // FakebookArrayList instance, each one delimited by <delimiter>
     public String toString() {
-        String result = "";
+        return FakebookRendering.toString(this);
+    }
 
+    // [FakebookArrayList Appender]
+    // EFFECTS: appends the same text as toString() to <out>, one element at a time
+    public void appendTo(Appendable out) throws IOException {
         int num = size();
+        if (num == 0) {
+            out.append("[]");
+            return;
+        }
+        if (num == 1 && !(get(0) instanceof FakebookRenderable)) {
+            String only = String.valueOf(get(0));
+            out.append(only.isEmpty() ? "[]" : only); // a lone empty element prints like an empty list
+            return;
+        }
+
         for (int idx = 0; idx < num; idx++) {
             if (idx != 0) {
-                result += delimiter;
+                out.append(delimiter);
             }
-            result += get(idx);
+            FakebookRendering.append(out, get(idx));
         }
-
-        if (result.equals("")) {
-            return "[]";
-        }
-        return result;
     }
 
     // Member Variables
     private String delimiter;
 }
+
+/*
+    The FakebookRenderable interface is implemented by the result data structures that can
+    write their string representation straight into an Appendable (such as a Writer or a
+    StringBuilder), piece by piece, instead of building it up as intermediate Strings.
+*/
+interface FakebookRenderable {
+    // EFFECTS: appends exactly the text that toString() returns to <out>
+    void appendTo(Appendable out) throws IOException;
+}
+
+/*
+    The FakebookRendering class holds the helpers shared by the FakebookRenderable
+    implementations. This class cannot be instantiated directly.
+*/
+final class FakebookRendering {
+    // The line separator that String.format writes for %n
+    static final String NewLine = System.lineSeparator();
+
+    // [Append Function]
+    // EFFECTS: appends the string representation of <item> to <out>, rendering it in
+    //          place if it is a FakebookRenderable
+    static void append(Appendable out, Object item) throws IOException {
+        if (item instanceof FakebookRenderable) {
+            ((FakebookRenderable) item).appendTo(out);
+        } else {
+            out.append(String.valueOf(item));
+        }
+    }
+
+    // [To-String Function]
+    // EFFECTS: returns the text that <item> appends, built in a single StringBuilder
+    static String toString(FakebookRenderable item) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            item.appendTo(builder);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder never throws
+        }
+        return builder.toString();
+    }
+
+    // [Constructor]
+    // EFFECTS: throws an AssertionError
+    private FakebookRendering() {
+        throw new AssertionError();
+    }
+}
+
+/*
+    The FakebookConsumer interface receives the results of a streaming query one at a time,
+    in the order in which the corresponding list-returning query would have stored them,
+    after being told how many there are. The type parameter <E> is the checked exception
+    the consumer may throw (e.g. IOException when writing each result out), which the
+    streaming query passes on.
+*/
+@FunctionalInterface
+interface FakebookConsumer<T, E extends Exception> {
+    // EFFECTS: handles the next result <item>
+    void accept(T item) throws E;
+
+    // EFFECTS: called once with the number of results, before the first one is handed
+    //          over; does nothing unless overridden
+    default void begin(long total) throws E {
+    }
+}
@@ -0,0 +1,571 @@
+package project2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    The FakebookQueryService class answers queries over HTTP on the loopback interface,
+    keeping its database connections and prepared statements alive between requests
+    instead of paying for a JVM launch and a new connection per query. Each query has an
+    endpoint, named in Endpoints by query number, that returns the same text as the
+    matching printQueryN function:
+        GET /monthOfBirth            GET /photos?num=5               GET /eventStates
+        GET /names                   GET /matchMaker?num=5&yearDiff=2 GET /ageInfo?user=215
+        GET /lonelyUsers             GET /suggestFriends?num=5       GET /siblings
+        GET /liveAwayFromHome        GET /stats (request counts, latency percentiles, and
+                                     the user cache's hit rate and size)
+    The workers share one UserInfoCache, which assumes the users' names do not change;
+    after modifying the Users table, POST /invalidate to empty it. If setResultCache() is
+    called, the results of Queries 4, 5, 6, and 8 are also kept in a CachingFakebookOracle
+    shared by every request, so that concurrent requests for the same result wait for one
+    query; POST /invalidate?table=<table> drops the results computed from <table>, and
+    POST /invalidate drops them all.
+
+    Requests are handled on virtual threads when the JVM has them (Java 21+, found by
+    reflection so that this class still compiles and runs on Java 17, where a bounded
+    pool of platform threads is used instead). Database work is capped at <workers>
+    concurrent queries: the service owns one StudentFakebookOracle per worker, each on
+    its own connection, and a request waits for a free one (answering 503 if none frees
+    up in time). Every result is rendered before the oracle is handed back, so a slow
+    client never holds a worker or a connection; Queries 2, 3, and 9 are rendered
+    through their streaming printers, so the rows are turned into text as they are read
+    rather than held as objects first.
+*/
+public final class FakebookQueryService implements AutoCloseable {
+    // The endpoint of each query, indexed by query number
+    public static final String[] Endpoints = {
+        "monthOfBirth", "names", "lonelyUsers", "liveAwayFromHome", "photos",
+        "matchMaker", "suggestFriends", "eventStates", "ageInfo", "siblings"
+    };
+
+    // A source of database connections, such as a connection pool
+    @FunctionalInterface
+    interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    // [Constructor]
+    // REQUIRES: 0 < <workers>; <connections> can supply <workers> connections at once
+    // EFFECTS:  opens <workers> connections and binds the service to <port> on the
+    //           loopback interface (0 picks a free port); requests are served once start()
+    //           is called
+    public FakebookQueryService(ConnectionSource connections, int workers, int port)
+            throws SQLException, IOException {
+        this(connections, workers, port, null);
+    }
+
+    // [Profiled Constructor]
+    // REQUIRES: as above; <connections> hands out connections wrapped by <profiler>
+    // EFFECTS:  as above, but each query request runs in its own <profiler> scope, so that
+    //           its JDBC work is attributed to its query (a null <profiler> opens none)
+    FakebookQueryService(ConnectionSource connections, int workers, int port, FakebookJdbcProfiler profiler)
+            throws SQLException, IOException {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("invalid number of workers");
+        }
+        this.profiler = profiler;
+        oracles = new ArrayBlockingQueue<FakebookOracle>(workers);
+        users = new UserInfoCache(StudentFakebookOracle.DefaultUserCacheSize);
+        try {
+            for (int idx = 0; idx < workers; idx++) {
+                Connection connection = connections.get();
+                this.connections.add(connection);
+                StudentFakebookOracle oracle = new StudentFakebookOracle(connection, users);
+                oracle.setPropagateErrors(true); // a failed query answers 500, not a partial result
+                workerOracles.add(oracle);
+                oracles.add(oracle);
+            }
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), Backlog);
+        } catch (SQLException | IOException e) {
+            closeConnections();
+            throw e;
+        }
+
+        for (int idx = 0; idx < Endpoints.length + 2; idx++) {
+            latencies[idx] = new LatencyHistogram();
+            errors[idx] = new LongAdder();
+        }
+        executor = requestExecutor(workers);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    // [Start Function]
+    // EFFECTS: starts accepting requests in the background
+    public void start() {
+        server.start();
+    }
+
+    // [Accessor Functions]
+    // EFFECTS: return the port the service listens on, and whether requests run on
+    //          virtual threads
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean virtualThreads() {
+        return virtualThreads;
+    }
+
+    // [Await Function]
+    // EFFECTS: blocks until the service is closed
+    public void await() throws InterruptedException {
+        stopped.await();
+    }
+
+    // [Close Function]
+    // EFFECTS: stops accepting requests, waits up to ShutdownDelaySeconds for the ones in
+    //          progress, and closes the service's oracles and connections
+    @Override
+    public void close() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+        server.stop(ShutdownDelaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(ShutdownDelaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeConnections();
+        stopped.countDown();
+    }
+
+    // [Tag Index Function]
+    // REQUIRES: start() has not been called; see StudentFakebookOracle.setTagIndex()
+    // MODIFIES: this
+    // EFFECTS:  makes every worker answer Query 4 from <index> (shared by all of them)
+    //           when <num> is within its capacity, or stops if <index> is null
+    public void setTagIndex(TopTaggedPhotoIndex index) {
+        for (StudentFakebookOracle oracle : workerOracles) {
+            oracle.setTagIndex(index);
+        }
+    }
+
+    // [Aggregates Function]
+    // REQUIRES: start() has not been called; see StudentFakebookOracle.setAggregates()
+    // MODIFIES: this
+    // EFFECTS:  makes every worker answer Queries 0, 1, and 7 from <aggregates> (shared
+    //           by all of them), or stops if <aggregates> is null
+    public void setAggregates(FakebookAggregates aggregates) {
+        for (StudentFakebookOracle oracle : workerOracles) {
+            oracle.setAggregates(aggregates);
+        }
+    }
+
+    // [Result Cache Function]
+    // REQUIRES: start() has not been called; 0 < <maxEntries>, 0 < <ttlMillis>
+    // MODIFIES: this
+    // EFFECTS:  answers Queries 4, 5, 6, and 8 through a CachingFakebookOracle holding up
+    //           to <maxEntries> results for <ttlMillis> each; on a miss, the cache borrows
+    //           a worker only for as long as the query runs
+    public void setResultCache(int maxEntries, long ttlMillis) {
+        results = new CachingFakebookOracle(new Workers(), maxEntries, ttlMillis);
+    }
+
+    // [Invalidate Functions]
+    // MODIFIES: this
+    // EFFECTS:  forget every user cached by the workers and every cached result, so that
+    //           the next queries read them from the database again; or, given a <table>
+    //           (a FakebookOracleConstants table name), only what was read from <table>
+    public void invalidate() {
+        users.clear();
+        if (results != null) {
+            results.invalidateAll();
+        }
+    }
+
+    public void invalidate(String table) {
+        if (table.equals(FakebookOracleConstants.UsersTable)) {
+            users.clear();
+        }
+        if (results != null) {
+            results.invalidate(table);
+        }
+    }
+
+    // [Handle Function]
+    // EFFECTS: answers one request: 404 for an unknown path, 405 for anything but GET (or
+    //          POST for /invalidate), 400 for a missing, malformed, or out-of-range
+    //          argument, 500 if the query fails, 503 if no worker frees up in time
+    private void handle(HttpExchange exchange) throws IOException {
+        long begin = System.nanoTime();
+        String path = exchange.getRequestURI().getPath().substring(1);
+        int endpoint = path.equals("stats") ? Stats : path.equals("invalidate") ? Invalidate : indexOf(path);
+        try {
+            if (endpoint < 0) {
+                send(exchange, 404, "Unknown endpoint: /" + path + NewLine);
+                return;
+            }
+            String method = endpoint == Invalidate ? "POST" : "GET";
+            if (!exchange.getRequestMethod().equals(method)) {
+                send(exchange, 405, "Only " + method + " is supported" + NewLine);
+                return;
+            }
+            if (endpoint == Stats) {
+                send(exchange, 200, stats());
+                return;
+            }
+            Map<String, String> params = parameters(exchange.getRequestURI().getRawQuery());
+            if (endpoint == Invalidate) {
+                String table = params.get("table");
+                if (table == null) {
+                    invalidate();
+                    send(exchange, 200, "Caches cleared" + NewLine);
+                } else {
+                    invalidate(table);
+                    send(exchange, 200, "Cached results of " + table + " cleared" + NewLine);
+                }
+                return;
+            }
+
+            if (results != null && (endpoint == 4 || endpoint == 5 || endpoint == 6 || endpoint == 8)) {
+                // the cache borrows a worker itself, and only if the result is not cached
+                String body;
+                FakebookJdbcProfiler.Scope scope = profiler == null ? null : profiler.enter(endpoint);
+                try {
+                    body = answer(results, endpoint, params);
+                } finally {
+                    if (scope != null) {
+                        scope.close();
+                    }
+                }
+                send(exchange, 200, body);
+                return;
+            }
+
+            FakebookOracle db = oracles.poll(AcquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (db == null) {
+                errors[endpoint].increment();
+                send(exchange, 503, "All workers are busy" + NewLine);
+                return;
+            }
+            String body;
+            FakebookJdbcProfiler.Scope scope = profiler == null ? null : profiler.enter(endpoint);
+            try {
+                body = answer(db, endpoint, params);
+            } finally {
+                if (scope != null) {
+                    scope.close();
+                }
+                oracles.add(db);
+            }
+            send(exchange, 200, body);
+        } catch (IllegalArgumentException e) {
+            errors[endpoint].increment();
+            send(exchange, 400, e.getMessage() + NewLine);
+        } catch (SQLTransientConnectionException e) {
+            errors[endpoint].increment(); // no worker freed up for a cache miss
+            send(exchange, 503, e.getMessage() + NewLine);
+        } catch (SQLException e) {
+            errors[endpoint].increment(); // the oracle has already printed the message
+            send(exchange, 500, "Query failed" + NewLine);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, "Interrupted" + NewLine);
+        } finally {
+            if (endpoint >= 0) {
+                latencies[endpoint].record(System.nanoTime() - begin);
+            }
+            exchange.close();
+        }
+    }
+
+    // runs query <query> on <db> and returns its printed result; Queries 2, 3, and 9 are
+    // written out as their rows are read
+    private static String answer(FakebookOracle db, int query, Map<String, String> params)
+            throws SQLException, IOException {
+        StringWriter out = new StringWriter();
+        switch (query) {
+            case 0:
+                db.printQuery0(out, db.findMonthOfBirthInfo());
+                break;
+            case 1:
+                db.printQuery1(out, db.findNameInfo());
+                break;
+            case 2:
+                db.streamQuery2(out);
+                break;
+            case 3:
+                db.streamQuery3(out);
+                break;
+            case 4:
+                db.printQuery4(out, db.findPhotosWithMostTags(intParameter(params, "num", 5)));
+                break;
+            case 5:
+                db.printQuery5(out, db.matchMaker(intParameter(params, "num", 5),
+                        intParameter(params, "yearDiff", 2)));
+                break;
+            case 6:
+                db.printQuery6(out, db.suggestFriends(intParameter(params, "num", 5)));
+                break;
+            case 7:
+                db.printQuery7(out, db.findEventStates());
+                break;
+            case 8:
+                db.printQuery8(out, db.findAgeInfo(parameter(params, "user", -1L)));
+                break;
+            default:
+                db.streamQuery9(out);
+                break;
+        }
+        return out.toString();
+    }
+
+    // returns the request counts and latency percentiles of every endpoint that was used
+    private String stats() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d worker(s) on %s threads%n", connections.size(),
+                virtualThreads ? "virtual" : "platform"));
+        out.append(String.format("%-18s %10s %8s %10s %10s %10s %10s%n",
+                "Endpoint", "Requests", "Errors", "p50(ms)", "p90(ms)", "p99(ms)", "Max(ms)"));
+        for (int idx = 0; idx < Endpoints.length; idx++) {
+            LatencyHistogram latency = latencies[idx];
+            if (latency.count() == 0) {
+                continue;
+            }
+            out.append(String.format("%-18s %10d %8d %10.3f %10.3f %10.3f %10.3f%n", Endpoints[idx],
+                    latency.count(), errors[idx].sum(), latency.percentile(50) / 1e6,
+                    latency.percentile(90) / 1e6, latency.percentile(99) / 1e6, latency.max() / 1e6));
+        }
+        out.append(String.format("User cache: %s%n", users));
+        if (results != null) {
+            out.append(String.format("Result cache: %s%n", results));
+        }
+        return out.toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", ContentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static int indexOf(String endpoint) {
+        for (int idx = 0; idx < Endpoints.length; idx++) {
+            if (Endpoints[idx].equals(endpoint)) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    // returns the arguments of the query string <query>
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> params = new HashMap<String, String>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    // returns argument <name> as a number, or <fallback> if it is absent; an argument
+    // without a fallback (-1) is required
+    private static long parameter(Map<String, String> params, String name, long fallback) {
+        String value = params.get(name);
+        if (value == null) {
+            if (fallback < 0) {
+                throw new IllegalArgumentException("Missing argument: " + name);
+            }
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number for " + name + " but got: " + value);
+        }
+    }
+
+    // returns argument <name> as a count from 0 to Integer.MAX_VALUE, or <fallback> if it
+    // is absent
+    private static int intParameter(Map<String, String> params, String name, int fallback) {
+        long value = parameter(params, name, fallback);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Out of range for " + name + ": " + value);
+        }
+        return (int) value;
+    }
+
+    // [Request Executor Function]
+    // EFFECTS: returns an executor that starts a virtual thread per request if the JVM
+    //          supports them, and otherwise a pool of platform threads large enough to
+    //          keep <workers> busy while other requests wait for them or for the network
+    private ExecutorService requestExecutor(int workers) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            virtualThreads = true;
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(MinPlatformThreads, workers * 4), runnable -> {
+                Thread thread = new Thread(runnable, "fakebook-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /*
+        The Workers class is the oracle behind the result cache: each call borrows an idle
+        worker, runs on it, and hands it back, so that it is safe to call from every
+        request thread at once.
+    */
+    private final class Workers extends FakebookOracle {
+        @Override
+        public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+            return call(db -> db.findMonthOfBirthInfo());
+        }
+
+        @Override
+        public FirstNameInfo findNameInfo() throws SQLException {
+            return call(db -> db.findNameInfo());
+        }
+
+        @Override
+        public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+            return call(db -> db.lonelyUsers());
+        }
+
+        @Override
+        public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+            return call(db -> db.liveAwayFromHome());
+        }
+
+        @Override
+        public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+            return call(db -> db.findPhotosWithMostTags(num));
+        }
+
+        @Override
+        public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+            return call(db -> db.matchMaker(num, yearDiff));
+        }
+
+        @Override
+        public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+            return call(db -> db.suggestFriends(num));
+        }
+
+        @Override
+        public EventStateInfo findEventStates() throws SQLException {
+            return call(db -> db.findEventStates());
+        }
+
+        @Override
+        public AgeInfo findAgeInfo(long userID) throws SQLException {
+            return call(db -> db.findAgeInfo(userID));
+        }
+
+        @Override
+        public Map<Long, AgeInfo> findAgeInfo(Collection<Long> userIDs) throws SQLException {
+            return call(db -> db.findAgeInfo(userIDs));
+        }
+
+        @Override
+        public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+            return call(db -> db.findPotentialSiblings());
+        }
+
+        // runs <query> on an idle worker, waiting for one as long as a request would
+        private <T> T call(Query<T> query) throws SQLException {
+            FakebookOracle db;
+            try {
+                db = oracles.poll(AcquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted", e);
+            }
+            if (db == null) {
+                throw new SQLTransientConnectionException("All workers are busy");
+            }
+            try {
+                return query.run(db);
+            } finally {
+                oracles.add(db);
+            }
+        }
+    }
+
+    // One call made on a worker
+    @FunctionalInterface
+    private interface Query<T> {
+        T run(FakebookOracle db) throws SQLException;
+    }
+
+    private void closeConnections() {
+        for (StudentFakebookOracle oracle : workerOracles) {
+            try {
+                oracle.close();
+            } catch (SQLException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+        workerOracles.clear();
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+        connections.clear();
+    }
+
+    // Member Variables
+    private static final int Backlog = 1024;
+    private static final long AcquireTimeoutMillis = 10000L;
+    private static final int ShutdownDelaySeconds = 5;
+    private static final int MinPlatformThreads = 16;
+    private static final String ContentType = "text/plain; charset=utf-8";
+    private static final String NewLine = FakebookRendering.NewLine;
+    private static final int Stats = Endpoints.length; // index of /stats in <latencies> and <errors>
+    private static final int Invalidate = Endpoints.length + 1; // and of /invalidate
+
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private final List<StudentFakebookOracle> workerOracles = new ArrayList<StudentFakebookOracle>(); // every worker
+    private final BlockingQueue<FakebookOracle> oracles; // the idle workers
+    private final UserInfoCache users; // shared by every worker
+    private final FakebookJdbcProfiler profiler; // null if requests are not profiled
+    private CachingFakebookOracle results; // null unless setResultCache() was called
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private boolean virtualThreads;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Endpoints.length + 2]; // see Stats
+    private final LongAdder[] errors = new LongAdder[Endpoints.length + 2];
+    private final CountDownLatch stopped = new CountDownLatch(1);
+}
@@ -0,0 +1,129 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+    The FakebookSchema class contains the DDL for the eleven Public_ tables named in
+    FakebookOracleConstants, so that a stand-in database (e.g. an embedded H2 instance
+    running in Oracle compatibility mode) can be given the same shape as the course
+    database. This class cannot be instantiated directly.
+*/
+final class FakebookSchema {
+    // Schema Name (the part of the table names before the '.')
+    public static final String SchemaName = FakebookOracleConstants.UsersTable.substring(0,
+            FakebookOracleConstants.UsersTable.indexOf('.'));
+
+    // Table Definitions (column lists in the same order as the course database)
+    public static final String[] TableDefinitions = {
+        FakebookOracleConstants.UsersTable + " (" +
+            "USER_ID INTEGER PRIMARY KEY, " +
+            "FIRST_NAME VARCHAR2(100) NOT NULL, " +
+            "LAST_NAME VARCHAR2(100) NOT NULL, " +
+            "YEAR_OF_BIRTH INTEGER, " +
+            "MONTH_OF_BIRTH INTEGER, " +
+            "DAY_OF_BIRTH INTEGER, " +
+            "GENDER VARCHAR2(100))",
+        FakebookOracleConstants.FriendsTable + " (" +
+            "USER1_ID INTEGER NOT NULL, " +
+            "USER2_ID INTEGER NOT NULL, " +
+            "PRIMARY KEY (USER1_ID, USER2_ID))",
+        FakebookOracleConstants.CitiesTable + " (" +
+            "CITY_ID INTEGER PRIMARY KEY, " +
+            "CITY_NAME VARCHAR2(100) NOT NULL, " +
+            "STATE_NAME VARCHAR2(100) NOT NULL, " +
+            "COUNTRY_NAME VARCHAR2(100) NOT NULL)",
+        FakebookOracleConstants.CurrentCitiesTable + " (" +
+            "USER_ID INTEGER PRIMARY KEY, " +
+            "CURRENT_CITY_ID INTEGER NOT NULL)",
+        FakebookOracleConstants.HometownCitiesTable + " (" +
+            "USER_ID INTEGER PRIMARY KEY, " +
+            "HOMETOWN_CITY_ID INTEGER NOT NULL)",
+        FakebookOracleConstants.ProgramsTable + " (" +
+            "PROGRAM_ID INTEGER PRIMARY KEY, " +
+            "INSTITUTION VARCHAR2(100) NOT NULL, " +
+            "CONCENTRATION VARCHAR2(100) NOT NULL, " +
+            "DEGREE VARCHAR2(100) NOT NULL)",
+        FakebookOracleConstants.EducationTable + " (" +
+            "USER_ID INTEGER NOT NULL, " +
+            "PROGRAM_ID INTEGER NOT NULL, " +
+            "PROGRAM_YEAR INTEGER NOT NULL, " +
+            "PRIMARY KEY (USER_ID, PROGRAM_ID))",
+        FakebookOracleConstants.EventsTable + " (" +
+            "EVENT_ID INTEGER PRIMARY KEY, " +
+            "EVENT_CREATOR_ID INTEGER NOT NULL, " +
+            "EVENT_NAME VARCHAR2(100) NOT NULL, " +
+            "EVENT_TAGLINE VARCHAR2(100), " +
+            "EVENT_DESCRIPTION VARCHAR2(100), " +
+            "EVENT_HOST VARCHAR2(100), " +
+            "EVENT_TYPE VARCHAR2(100), " +
+            "EVENT_SUBTYPE VARCHAR2(100), " +
+            "EVENT_ADDRESS VARCHAR2(2000), " +
+            "EVENT_CITY_ID INTEGER NOT NULL, " +
+            "EVENT_START_TIME TIMESTAMP, " +
+            "EVENT_END_TIME TIMESTAMP)",
+        FakebookOracleConstants.AlbumsTable + " (" +
+            "ALBUM_ID INTEGER PRIMARY KEY, " +
+            "ALBUM_OWNER_ID INTEGER NOT NULL, " +
+            "ALBUM_NAME VARCHAR2(100) NOT NULL, " +
+            "ALBUM_CREATED_TIME TIMESTAMP NOT NULL, " +
+            "ALBUM_MODIFIED_TIME TIMESTAMP, " +
+            "ALBUM_LINK VARCHAR2(2000) NOT NULL, " +
+            "ALBUM_VISIBILITY VARCHAR2(100) NOT NULL, " +
+            "COVER_PHOTO_ID INTEGER NOT NULL)",
+        FakebookOracleConstants.PhotosTable + " (" +
+            "PHOTO_ID INTEGER PRIMARY KEY, " +
+            "ALBUM_ID INTEGER NOT NULL, " +
+            "PHOTO_CAPTION VARCHAR2(2000), " +
+            "PHOTO_CREATED_TIME TIMESTAMP NOT NULL, " +
+            "PHOTO_MODIFIED_TIME TIMESTAMP, " +
+            "PHOTO_LINK VARCHAR2(2000) NOT NULL)",
+        FakebookOracleConstants.TagsTable + " (" +
+            "TAG_PHOTO_ID INTEGER NOT NULL, " +
+            "TAG_SUBJECT_ID INTEGER NOT NULL, " +
+            "TAG_CREATED_TIME TIMESTAMP NOT NULL, " +
+            "TAG_X INTEGER NOT NULL, " +
+            "TAG_Y INTEGER NOT NULL, " +
+            "PRIMARY KEY (TAG_PHOTO_ID, TAG_SUBJECT_ID))"
+    };
+
+    // Secondary Indexes (the lookups the queries make on non-key columns)
+    public static final String[] IndexDefinitions = {
+        "Public_Friends_User2 ON " + FakebookOracleConstants.FriendsTable + " (USER2_ID)",
+        "Public_Tags_Subject ON " + FakebookOracleConstants.TagsTable + " (TAG_SUBJECT_ID)",
+        "Public_Photos_Album ON " + FakebookOracleConstants.PhotosTable + " (ALBUM_ID)",
+        "Public_Events_City ON " + FakebookOracleConstants.EventsTable + " (EVENT_CITY_ID)"
+    };
+
+    // [Create Schema Function]
+    // REQUIRES: <connection> is connected to an empty stand-in database that supports
+    //           CREATE SCHEMA (this must never be run against the course database)
+    // EFFECTS:  creates the schema, all eleven tables, and their secondary indexes
+    public static void create(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE SCHEMA " + SchemaName);
+            for (String table : TableDefinitions) {
+                stmt.executeUpdate("CREATE TABLE " + table);
+            }
+            for (String index : IndexDefinitions) {
+                stmt.executeUpdate("CREATE INDEX " + SchemaName + "." + index);
+            }
+        }
+    }
+
+    // [Drop Schema Function]
+    // REQUIRES: <connection> is connected to a stand-in database created by create()
+    // EFFECTS:  drops the schema and everything in it
+    public static void drop(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DROP SCHEMA " + SchemaName + " CASCADE");
+        }
+    }
+
+    // [Constructor]
+    // EFFECTS: throws an AssertionError
+    private FakebookSchema() {
+        throw new AssertionError();
+    }
+}
@@ -0,0 +1,758 @@
+package project2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+    The FakebookSnapshotFile class is a read-only, column-oriented copy of the eleven
+    Public_ tables stored in a single file, so that a process can start answering queries
+    without re-reading every table over JDBC. export() writes the file; open() maps it
+    with FileChannel.map, which takes milliseconds regardless of the file's size because
+    the pages are only read when first touched (and are shared through the page cache by
+    every process that maps the same file).
+
+    Every column is stored in one of four encodings, chosen from its JDBC type:
+      - Number:     integer columns, one fixed-width 8-byte value per row
+      - Timestamp:  DATE and TIMESTAMP columns, 8-byte epoch milliseconds per row
+      - Dictionary: names, states, and other text columns with few distinct values; a 4-byte
+                    code per row into a sorted table of the distinct values
+      - Text:       other text columns; an 8-byte end offset per row into a heap of UTF-8
+    A column that contains NULLs also has a bitmap with one bit per row.
+
+    File Layout (big-endian; every section starts on an 8-byte boundary):
+      [Magic][Version] [sections ...] [directory] [directory offset (8 bytes)][Magic]
+    The directory lists every table with its row count and every column with its name,
+    encoding, and the (offset, length) of its null bitmap and up to three data sections.
+    Offsets and lengths are 8 bytes, and a section is mapped in chunks of at most
+    2^30 bytes, so no section is limited to the 2 GB a single ByteBuffer can map.
+
+    export() streams each table: every column is spilled to temporary files next to the
+    snapshot as its rows are read and then copied into place, so only a column's distinct
+    values (while they are few enough to dictionary-encode) are held in memory.
+*/
+public final class FakebookSnapshotFile {
+    // The tables written by export(), in the order of FakebookSchema.TableDefinitions
+    public static final String[] Tables = {
+        FakebookOracleConstants.UsersTable,
+        FakebookOracleConstants.FriendsTable,
+        FakebookOracleConstants.CitiesTable,
+        FakebookOracleConstants.CurrentCitiesTable,
+        FakebookOracleConstants.HometownCitiesTable,
+        FakebookOracleConstants.ProgramsTable,
+        FakebookOracleConstants.EducationTable,
+        FakebookOracleConstants.EventsTable,
+        FakebookOracleConstants.AlbumsTable,
+        FakebookOracleConstants.PhotosTable,
+        FakebookOracleConstants.TagsTable
+    };
+
+    // The ways a column can be stored
+    public enum Encoding { Number, Timestamp, Dictionary, Text }
+
+    // [Constructor]
+    // EFFECTS: creates a snapshot over the already-mapped <tables>
+    private FakebookSnapshotFile(Map<String, Table> tables, long bytes) {
+        this.tables = tables;
+        this.bytes = bytes;
+    }
+
+    // [Main Function]
+    // Expected Command Line Arguments (given as key=value):
+    //  url=<jdbc url>       database to export; the JDBC driver must be on the classpath
+    //  username=, password= credentials for <url> (default: empty)
+    //  file=<path>          snapshot file to write (default: fakebook.snapshot)
+    public static void main(String[] args) throws SQLException, IOException {
+        Map<String, String> options = FakebookOracleBenchmark.parseOptions(args);
+        Path file = Paths.get(options.getOrDefault("file", "fakebook.snapshot"));
+
+        long begin = System.nanoTime();
+        long rows;
+        try (Connection connection = DriverManager.getConnection(options.get("url"),
+                options.getOrDefault("username", ""), options.getOrDefault("password", ""))) {
+            rows = export(connection, file);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        begin = System.nanoTime();
+        FakebookSnapshotFile snapshot = open(file);
+        double openMillis = (System.nanoTime() - begin) / 1e6;
+        System.out.printf("Exported %d rows from %d tables to %s (%d bytes) in %.3f s; mapped in %.3f ms%n",
+                rows, Tables.length, file, snapshot.bytes(), seconds, openMillis);
+    }
+
+    // [Export Function]
+    // REQUIRES: <connection> is a valid JDBC connection to a database with the Public_ tables
+    // MODIFIES: the file at <file>
+    // EFFECTS:  reads every table once and writes the snapshot to <file>, replacing it
+    //           only after the new file is complete; returns the number of rows written
+    public static long export(Connection connection, Path file) throws SQLException, IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        Path spill = Files.createTempDirectory(partial.toAbsolutePath().getParent(), "fakebook-export");
+        long rows = 0;
+        try (Output out = new Output(Files.newOutputStream(partial))) {
+            out.writeInt(Magic);
+            out.writeInt(Version);
+
+            BufferOutput directory = new BufferOutput();
+            directory.writeInt(Tables.length);
+            for (String table : Tables) {
+                rows += exportTable(connection, table, out, directory, spill);
+            }
+
+            out.align();
+            long directoryOffset = out.position();
+            out.write(directory.toByteArray());
+            out.writeLong(directoryOffset);
+            out.writeInt(Magic);
+        } catch (SQLException | IOException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        } finally {
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(spill)) {
+                for (Path leftover : leftovers) {
+                    Files.delete(leftover);
+                }
+            }
+            Files.delete(spill);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    // [Open Function]
+    // EFFECTS: maps the snapshot at <file> and returns it; the file is not read beyond its
+    //          directory until columns are accessed. The mappings stay valid after the
+    //          file is closed and are released when the snapshot is garbage collected.
+    public static FakebookSnapshotFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HeaderBytes + TrailerBytes) {
+                throw new IOException(file + " is not a Fakebook snapshot");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HeaderBytes);
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - TrailerBytes, TrailerBytes);
+            if (header.getInt(0) != Magic || trailer.getInt(8) != Magic) {
+                throw new IOException(file + " is not a Fakebook snapshot");
+            }
+            if (header.getInt(4) != Version) {
+                throw new IOException(file + " has snapshot version " + header.getInt(4) + ", expected " + Version);
+            }
+
+            long directoryOffset = trailer.getLong(0);
+            ByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, directoryOffset,
+                    size - TrailerBytes - directoryOffset);
+            Map<String, Table> tables = new LinkedHashMap<String, Table>();
+            int tableCount = directory.getInt();
+            for (int t = 0; t < tableCount; t++) {
+                String name = readString(directory);
+                int rows = directory.getInt();
+                Column[] columns = new Column[directory.getInt()];
+                for (int c = 0; c < columns.length; c++) {
+                    String column = readString(directory);
+                    Encoding encoding = Encoding.values()[directory.get()];
+                    Section[] sections = new Section[SectionsPerColumn];
+                    for (int s = 0; s < SectionsPerColumn; s++) {
+                        long offset = directory.getLong();
+                        long length = directory.getLong();
+                        if (length > 0) {
+                            sections[s] = new Section(channel, offset, length);
+                        }
+                    }
+                    columns[c] = new Column(column, encoding, sections);
+                }
+                tables.put(name, new Table(name, rows, columns));
+            }
+            return new FakebookSnapshotFile(tables, size);
+        }
+    }
+
+    // [Accessor Functions]
+    // EFFECTS: return the table named <name> (as in FakebookOracleConstants) or null if
+    //          the snapshot does not contain it; and the size of the snapshot file
+    public Table table(String name) {
+        return tables.get(name);
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    /*
+        The Table class is one table of a snapshot: a row count and a set of columns, all
+        of which hold one value per row in the order the rows were exported.
+    */
+    public static final class Table {
+        Table(String name, int rows, Column[] columns) {
+            this.name = name;
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        // EFFECTS: returns the column named <name> (case-insensitive)
+        public Column column(String name) {
+            for (Column column : columns) {
+                if (column.name.equalsIgnoreCase(name)) {
+                    return column;
+                }
+            }
+            throw new IllegalArgumentException(this.name + " has no column " + name);
+        }
+
+        private final String name;
+        private final int rows;
+        private final Column[] columns;
+    }
+
+    /*
+        The Column class reads one column of a snapshot straight from the mapped file.
+        getLong() applies to Number and Timestamp columns and getString() to Dictionary
+        and Text columns; both return a default (0 or null) for NULL values, as JDBC does,
+        and isNull() tells the two apart. Columns are safe to read from several threads.
+    */
+    public static final class Column {
+        Column(String name, Encoding encoding, Section[] sections) {
+            this.name = name;
+            this.encoding = encoding;
+            this.nulls = sections[0];
+            this.data = sections[1];
+            this.offsets = sections[2];
+            this.heap = sections[3];
+            this.decoded = encoding == Encoding.Dictionary ? new String[dictionarySize()] : null;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public Encoding encoding() {
+            return encoding;
+        }
+
+        public boolean isNull(int row) {
+            return nulls != null && (nulls.get(row >>> 3) & (1 << (row & 7))) != 0;
+        }
+
+        public long getLong(int row) {
+            if (encoding != Encoding.Number && encoding != Encoding.Timestamp) {
+                throw new IllegalStateException(name + " is a " + encoding + " column");
+            }
+            return data == null ? 0L : data.getLong(row * 8L);
+        }
+
+        public Timestamp getTimestamp(int row) {
+            if (encoding != Encoding.Timestamp) {
+                throw new IllegalStateException(name + " is a " + encoding + " column");
+            }
+            return isNull(row) ? null : new Timestamp(getLong(row));
+        }
+
+        public String getString(int row) {
+            switch (encoding) {
+                case Dictionary: {
+                    int code = code(row);
+                    return code < 0 ? null : dictionaryValue(code);
+                }
+                case Text:
+                    return isNull(row) ? null : string(row);
+                default:
+                    throw new IllegalStateException(name + " is a " + encoding + " column");
+            }
+        }
+
+        // [Dictionary Functions]
+        // REQUIRES: this is a Dictionary column
+        // EFFECTS:  return the code of row <row> (-1 for NULL), the number of distinct
+        //           values, the value with code <code>, and the code of <value> (-1 if the
+        //           column never holds it). Codes follow String.compareTo order, and each
+        //           value is decoded once and then shared by every row that holds it.
+        public int code(int row) {
+            return data == null ? -1 : data.getInt(row * 4L);
+        }
+
+        public int dictionarySize() {
+            return offsets == null ? 0 : (int) (offsets.length() / 8);
+        }
+
+        public String dictionaryValue(int code) {
+            String value = decoded[code];
+            if (value == null) {
+                value = string(code);
+                decoded[code] = value; // a benign race: every thread decodes the same String
+            }
+            return value;
+        }
+
+        public int codeOf(String value) {
+            int low = 0;
+            int high = dictionarySize() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int cmp = dictionaryValue(middle).compareTo(value);
+                if (cmp < 0) {
+                    low = middle + 1;
+                } else if (cmp > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        // decodes entry <idx> of the offset-indexed heap
+        private String string(int idx) {
+            long begin = idx == 0 ? 0 : offsets.getLong((idx - 1) * 8L);
+            long end = offsets.getLong(idx * 8L);
+            byte[] utf8 = new byte[(int) (end - begin)];
+            if (utf8.length > 0) {
+                heap.get(begin, utf8);
+            }
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        private final String name;
+        private final Encoding encoding;
+        private final Section nulls; // bit set = NULL; absent if the column has no NULLs
+        private final Section data; // values or dictionary codes
+        private final Section offsets; // end offsets of the rows or dictionary entries
+        private final Section heap; // UTF-8 bytes of the rows or dictionary entries
+        private final String[] decoded;
+    }
+
+    /*
+        The Section class is one section of the file, mapped in chunks of ChunkBytes so
+        that it may be larger than a single ByteBuffer. Values of 4 and 8 bytes start on
+        a multiple of their size, so they never straddle two chunks.
+    */
+    private static final class Section {
+        Section(FileChannel channel, long offset, long length) throws IOException {
+            chunks = new ByteBuffer[(int) ((length + ChunkBytes - 1) / ChunkBytes)];
+            for (int idx = 0; idx < chunks.length; idx++) {
+                long start = (long) idx * ChunkBytes;
+                chunks[idx] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start,
+                        Math.min(ChunkBytes, length - start));
+            }
+            this.length = length;
+        }
+
+        long length() {
+            return length;
+        }
+
+        byte get(long position) {
+            return chunks[(int) (position >>> ChunkShift)].get((int) (position & (ChunkBytes - 1)));
+        }
+
+        int getInt(long position) {
+            return chunks[(int) (position >>> ChunkShift)].getInt((int) (position & (ChunkBytes - 1)));
+        }
+
+        long getLong(long position) {
+            return chunks[(int) (position >>> ChunkShift)].getLong((int) (position & (ChunkBytes - 1)));
+        }
+
+        // copies the bytes starting at <position> into <bytes>, across chunks if need be
+        void get(long position, byte[] bytes) {
+            int copied = 0;
+            while (copied < bytes.length) {
+                ByteBuffer chunk = chunks[(int) (position >>> ChunkShift)];
+                int start = (int) (position & (ChunkBytes - 1));
+                int count = Math.min(bytes.length - copied, chunk.capacity() - start);
+                chunk.get(start, bytes, copied, count);
+                copied += count;
+                position += count;
+            }
+        }
+
+        private final ByteBuffer[] chunks;
+        private final long length;
+    }
+
+    // [Export Table Function]
+    // EFFECTS: writes every column of <table> to <out> and its directory entry to
+    //          <directory>, spilling the columns to temporary files in <spill> meanwhile
+    private static int exportTable(Connection connection, String table, Output out, BufferOutput directory,
+            Path spill) throws SQLException, IOException {
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly,
+                FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(ExportFetchSize);
+            int rows = 0;
+            ColumnSpill[] columns = new ColumnSpill[0];
+            try (ResultSet rst = stmt.executeQuery("SELECT * FROM " + table)) {
+                ResultSetMetaData meta = rst.getMetaData();
+                columns = new ColumnSpill[meta.getColumnCount()];
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = new ColumnSpill(meta.getColumnName(c + 1), encodingOf(meta, c + 1), spill, c);
+                }
+
+                while (rst.next()) {
+                    if (rows == Integer.MAX_VALUE) {
+                        throw new IOException(table + " has too many rows for a snapshot");
+                    }
+                    for (int c = 0; c < columns.length; c++) {
+                        columns[c].read(rst, c + 1, rows);
+                    }
+                    rows++;
+                }
+            } finally {
+                // a table that failed part way is abandoned with the whole export
+                for (ColumnSpill column : columns) {
+                    if (column != null) {
+                        column.finish();
+                    }
+                }
+            }
+
+            directory.writeString(table);
+            directory.writeInt(rows);
+            directory.writeInt(columns.length);
+            for (ColumnSpill column : columns) {
+                column.write(out, directory, rows);
+            }
+            return rows;
+        }
+    }
+
+    // whether a column is stored as a number, a timestamp, or text (refined by ColumnSpill)
+    private static Encoding encodingOf(ResultSetMetaData meta, int column) throws SQLException {
+        switch (meta.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return Encoding.Number;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                // Oracle reports INTEGER columns as NUMBER(38) with scale 0
+                return meta.getScale(column) == 0 ? Encoding.Number : Encoding.Text;
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                return Encoding.Timestamp;
+            default:
+                return Encoding.Text;
+        }
+    }
+
+    /*
+        The ColumnSpill class writes one column's values to temporary files as its table
+        is read: the null bitmap, and either the 8-byte values or, for text, the end
+        offsets and the UTF-8 heap. It keeps the column's distinct values in memory only
+        while there are at most MaxDictionaryValues of them, the most a column can have
+        and still be dictionary-encoded. write() then copies the files into the snapshot,
+        first re-reading a text column to replace its values with dictionary codes if it
+        is dictionary-encoded.
+    */
+    private static final class ColumnSpill {
+        ColumnSpill(String name, Encoding encoding, Path directory, int index) throws IOException {
+            this.name = name;
+            this.encoding = encoding;
+            nullFile = directory.resolve(index + ".nulls");
+            dataFile = directory.resolve(index + ".data");
+            heapFile = directory.resolve(index + ".heap");
+            nulls = spill(nullFile);
+            data = spill(dataFile);
+            if (encoding == Encoding.Text) {
+                heap = spill(heapFile);
+                distinct = new TreeSet<String>();
+            }
+        }
+
+        void read(ResultSet rst, int column, int row) throws SQLException, IOException {
+            boolean isNull;
+            if (encoding == Encoding.Text) {
+                String value = rst.getString(column);
+                isNull = value == null;
+                if (!isNull) {
+                    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                    heap.write(utf8);
+                    heapBytes += utf8.length;
+                    if (distinct != null) {
+                        distinct.add(value);
+                        if (distinct.size() > MaxDictionaryValues && !DictionaryColumns.contains(name.toUpperCase())) {
+                            distinct = null; // too many to dictionary-encode
+                        }
+                    }
+                }
+                data.writeLong(heapBytes); // the row's end offset
+            } else if (encoding == Encoding.Number) {
+                long value = rst.getLong(column);
+                isNull = rst.wasNull();
+                data.writeLong(value);
+            } else {
+                Timestamp time = rst.getTimestamp(column);
+                isNull = time == null;
+                data.writeLong(isNull ? 0L : time.getTime());
+            }
+
+            if (isNull) {
+                pending |= 1 << (row & 7);
+                hasNulls = true;
+            }
+            if ((row & 7) == 7) {
+                nulls.write(pending);
+                pending = 0;
+            }
+        }
+
+        // flushes and closes the temporary files
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            nulls.write(pending); // the last, partial byte (a spare zero byte if there is none)
+            nulls.close();
+            data.close();
+            if (heap != null) {
+                heap.close();
+            }
+        }
+
+        void write(Output out, BufferOutput directory, int rows) throws IOException {
+            long[][] sections = new long[SectionsPerColumn][];
+            sections[0] = hasNulls ? out.section(nullFile, (rows + 7) / 8) : None;
+
+            Encoding stored = encoding;
+            if (encoding != Encoding.Text) {
+                sections[1] = out.section(dataFile, rows * 8L);
+                sections[2] = None;
+                sections[3] = None;
+            } else if (distinct != null && (DictionaryColumns.contains(name.toUpperCase())
+                    || (long) distinct.size() * DictionaryRatio <= rows)) {
+                stored = Encoding.Dictionary;
+                String[] values = distinct.toArray(new String[0]);
+                Path codeFile = dataFile.resolveSibling(dataFile.getFileName() + ".codes");
+                try (DataOutputStream codes = spill(codeFile);
+                        DataInputStream bits = unspill(nullFile);
+                        DataInputStream ends = unspill(dataFile);
+                        DataInputStream utf8 = unspill(heapFile)) {
+                    int nullBits = 0;
+                    long begin = 0;
+                    for (int row = 0; row < rows; row++) {
+                        if ((row & 7) == 0) {
+                            nullBits = bits.readUnsignedByte();
+                        }
+                        long end = ends.readLong();
+                        byte[] bytes = new byte[(int) (end - begin)];
+                        utf8.readFully(bytes);
+                        // a NULL and an empty string both have no bytes; the bitmap tells them apart
+                        boolean isNull = (nullBits & (1 << (row & 7))) != 0;
+                        codes.writeInt(isNull ? -1
+                                : Arrays.binarySearch(values, new String(bytes, StandardCharsets.UTF_8)));
+                        begin = end;
+                    }
+                }
+                sections[1] = out.section(codeFile, rows * 4L);
+                Files.delete(codeFile);
+
+                ByteBuffer valueEnds = ByteBuffer.allocate(values.length * 8);
+                BufferOutput valueHeap = new BufferOutput();
+                for (String value : values) {
+                    valueHeap.write(value.getBytes(StandardCharsets.UTF_8));
+                    valueEnds.putLong(valueHeap.size());
+                }
+                sections[2] = out.section(valueEnds.array());
+                sections[3] = out.section(valueHeap.toByteArray());
+            } else {
+                sections[1] = None;
+                sections[2] = out.section(dataFile, rows * 8L);
+                sections[3] = out.section(heapFile, heapBytes);
+            }
+            distinct = null;
+            Files.deleteIfExists(nullFile);
+            Files.deleteIfExists(dataFile);
+            Files.deleteIfExists(heapFile);
+
+            directory.writeString(name);
+            directory.writeByte(stored.ordinal());
+            for (long[] section : sections) {
+                directory.writeLong(section[0]);
+                directory.writeLong(section[1]);
+            }
+        }
+
+        private static DataOutputStream spill(Path file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), SpillBufferBytes));
+        }
+
+        private static DataInputStream unspill(Path file) throws IOException {
+            return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), SpillBufferBytes));
+        }
+
+        private final String name;
+        private final Encoding encoding;
+        private final Path nullFile;
+        private final Path dataFile; // values, or end offsets for text
+        private final Path heapFile;
+        private final DataOutputStream nulls;
+        private final DataOutputStream data;
+        private DataOutputStream heap;
+        private TreeSet<String> distinct; // null once there are too many to keep
+        private long heapBytes;
+        private int pending; // the null bits of the current group of 8 rows
+        private boolean hasNulls;
+        private boolean finished;
+    }
+
+    /*
+        The Output class writes the snapshot file sequentially, keeping track of the
+        position so that each section's offset can be recorded in the directory.
+    */
+    private static final class Output implements AutoCloseable {
+        Output(OutputStream stream) {
+            out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        }
+
+        long position() {
+            return position;
+        }
+
+        void writeInt(int value) throws IOException {
+            out.writeInt(value);
+            position += 4;
+        }
+
+        void writeLong(long value) throws IOException {
+            out.writeLong(value);
+            position += 8;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        void align() throws IOException {
+            while (position % 8 != 0) {
+                out.write(0);
+                position++;
+            }
+        }
+
+        // writes <bytes> as an 8-byte aligned section and returns its {offset, length}
+        long[] section(byte[] bytes) throws IOException {
+            if (bytes.length == 0) {
+                return None;
+            }
+            align();
+            long offset = position;
+            write(bytes);
+            return new long[] { offset, bytes.length };
+        }
+
+        // copies the first <length> bytes of <file> as an 8-byte aligned section and
+        // returns its {offset, length}
+        long[] section(Path file, long length) throws IOException {
+            if (length == 0) {
+                return None;
+            }
+            align();
+            long offset = position;
+            byte[] buffer = new byte[SpillBufferBytes];
+            try (InputStream in = Files.newInputStream(file)) {
+                for (long left = length; left > 0; ) {
+                    int count = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                    if (count < 0) {
+                        throw new IOException(file + " ended early");
+                    }
+                    out.write(buffer, 0, count);
+                    left -= count;
+                }
+            }
+            position += length;
+            return new long[] { offset, length };
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private final DataOutputStream out;
+        private long position;
+    }
+
+    /*
+        The BufferOutput class is an in-memory DataOutputStream for the directory and
+        the dictionaries, whose sizes are not known until they have been written.
+    */
+    private static final class BufferOutput extends DataOutputStream {
+        BufferOutput() {
+            super(new ByteArrayOutputStream());
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(utf8.length);
+            write(utf8);
+        }
+
+        byte[] toByteArray() {
+            return ((ByteArrayOutputStream) out).toByteArray();
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] utf8 = new byte[buffer.getInt()];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Member Variables
+    private static final int Magic = 0x46425331; // "FBS1"
+    private static final int Version = 2; // 2: 8-byte text end offsets
+    private static final int HeaderBytes = 8;
+    private static final int TrailerBytes = 12;
+    private static final int SectionsPerColumn = 4; // null bitmap, data, offsets, heap
+    private static final int DictionaryRatio = 2; // dictionary-encode if rows >= 2 * distinct values
+    private static final int ExportFetchSize = 10000;
+    private static final int MaxDictionaryValues = 1 << 16; // distinct values kept while a column is exported
+    private static final int SpillBufferBytes = 1 << 16;
+    private static final int ChunkShift = 30;
+    private static final long ChunkBytes = 1L << ChunkShift; // the most mapped by one ByteBuffer
+    private static final long[] None = { 0L, 0L };
+    // always dictionary-encoded: values that repeat across the full dataset even when a
+    // small export holds few rows
+    private static final Set<String> DictionaryColumns = new HashSet<String>(Arrays.asList(
+            "FIRST_NAME", "LAST_NAME", "STATE_NAME", "COUNTRY_NAME"));
+
+    private final Map<String, Table> tables;
+    private final long bytes;
+}
@@ -0,0 +1,95 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    The FakebookStatementRegistry class prepares each distinct SQL text once per
+    connection and hands back the same PreparedStatement on every later request for that
+    text, so that repeated queries are parsed once and only their bind variables change.
+    Statements are forward-only and read-only, so the driver streams their rows in
+    batches of the requested fetch size instead of caching whole results on the client.
+    Statements handed out by the registry belong to it: callers close the ResultSets
+    they open but never the statements themselves. Like the connection it wraps, a
+    registry must only be used by one thread at a time.
+*/
+final class FakebookStatementRegistry implements AutoCloseable {
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection
+    FakebookStatementRegistry(Connection connection) {
+        this.connection = connection;
+    }
+
+    // [Prepare Functions]
+    // EFFECTS: returns the registry's PreparedStatement for <sql>, preparing it first if
+    //          this is the first request for <sql>; the second form also sets the number
+    //          of rows fetched per round trip to <fetchSize>
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt != null && !stmt.isClosed()) {
+            hits++;
+            stmt.clearParameters();
+            return stmt;
+        }
+
+        misses++;
+        stmt = connection.prepareStatement(sql, FakebookOracleConstants.ForwardOnly,
+                FakebookOracleConstants.ReadOnly);
+        statements.put(sql, stmt);
+        return stmt;
+    }
+
+    PreparedStatement prepare(String sql, int fetchSize) throws SQLException {
+        PreparedStatement stmt = prepare(sql);
+        stmt.setFetchSize(fetchSize);
+        return stmt;
+    }
+
+    // [Statistics Functions]
+    // EFFECTS: return the number of requests served by an already-prepared statement,
+    //          the number that had to prepare a new one, and the number held
+    long hits() {
+        return hits;
+    }
+
+    long misses() {
+        return misses;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    // [Close Function]
+    // EFFECTS: closes every statement held by the registry and forgets them all
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (PreparedStatement stmt : statements.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        statements.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // [Registry-to-String Converter]
+    // EFFECTS: returns a string representation of the registry's statistics
+    public String toString() {
+        return String.format("%d prepared statement(s), %d hit(s), %d miss(es)", size(), hits, misses);
+    }
+
+    // Member Variables
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+    private long hits;
+    private long misses;
+}
@@ -0,0 +1,144 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/*
+    The FriendGraph class is an immutable in-memory copy of the Friends table. User IDs
+    are renumbered to dense ints 0..size()-1 in increasing ID order (so comparing dense
+    IDs compares user IDs), and each user's friends are stored as a sorted run of
+    <neighbors> starting at <offsets>[u] and ending before <offsets>[u + 1]. Since the
+    Friends table only stores (U1, U2) with U1 < U2, every row becomes two entries.
+*/
+final class FriendGraph {
+    // [Constructor]
+    // REQUIRES: <ids> is sorted and distinct; <offsets> and <neighbors> form a valid
+    //           compressed adjacency structure over <ids> with sorted runs
+    FriendGraph(long[] ids, int[] offsets, int[] neighbors) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    // [Load Functions]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  reads the Friends table once and returns it as a FriendGraph; the second
+    //           form also gives every ID in <extraIds> a dense ID, as build() does
+    static FriendGraph load(Connection connection) throws SQLException {
+        return load(connection, new long[0]);
+    }
+
+    static FriendGraph load(Connection connection, long[] extraIds) throws SQLException {
+        long[] user1 = new long[1024];
+        long[] user2 = new long[1024];
+        int edges = 0;
+
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly,
+                FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(LoadFetchSize);
+            ResultSet rst = stmt.executeQuery(
+                    "SELECT USER1_ID, USER2_ID FROM " + FakebookOracleConstants.FriendsTable);
+            while (rst.next()) {
+                if (edges == user1.length) {
+                    user1 = Arrays.copyOf(user1, edges * 2);
+                    user2 = Arrays.copyOf(user2, edges * 2);
+                }
+                user1[edges] = rst.getLong(1);
+                user2[edges] = rst.getLong(2);
+                edges++;
+            }
+            rst.close();
+        }
+
+        return build(user1, user2, edges, extraIds);
+    }
+
+    // [Build Function]
+    // EFFECTS: returns the graph of the first <edges> friendships (<user1>[i], <user2>[i]);
+    //          every ID in <extraIds> gets a dense ID as well, even if it has no friends
+    static FriendGraph build(long[] user1, long[] user2, int edges, long[] extraIds) {
+        // Renumber: the dense ID of a user is its rank among all distinct IDs
+        long[] ids = new long[2 * edges + extraIds.length];
+        System.arraycopy(user1, 0, ids, 0, edges);
+        System.arraycopy(user2, 0, ids, edges, edges);
+        System.arraycopy(extraIds, 0, ids, 2 * edges, extraIds.length);
+        Arrays.sort(ids);
+        int size = 0;
+        for (int idx = 0; idx < ids.length; idx++) {
+            if (size == 0 || ids[idx] != ids[size - 1]) {
+                ids[size++] = ids[idx];
+            }
+        }
+        ids = Arrays.copyOf(ids, size);
+
+        int[] dense1 = new int[edges];
+        int[] dense2 = new int[edges];
+        int[] offsets = new int[size + 1];
+        for (int idx = 0; idx < edges; idx++) {
+            dense1[idx] = Arrays.binarySearch(ids, user1[idx]);
+            dense2[idx] = Arrays.binarySearch(ids, user2[idx]);
+            offsets[dense1[idx] + 1]++;
+            offsets[dense2[idx] + 1]++;
+        }
+        for (int u = 0; u < size; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+
+        int[] neighbors = new int[offsets[size]];
+        int[] fill = Arrays.copyOf(offsets, size);
+        for (int idx = 0; idx < edges; idx++) {
+            neighbors[fill[dense1[idx]]++] = dense2[idx];
+            neighbors[fill[dense2[idx]]++] = dense1[idx];
+        }
+        for (int u = 0; u < size; u++) {
+            Arrays.sort(neighbors, offsets[u], offsets[u + 1]);
+        }
+
+        return new FriendGraph(ids, offsets, neighbors);
+    }
+
+    // [Size Function]
+    // EFFECTS: returns the number of users in the graph
+    int size() {
+        return ids.length;
+    }
+
+    // [ID Conversion Functions]
+    // EFFECTS: userId() returns the user ID of dense ID <u>; denseId() returns the dense
+    //          ID of <userId>, or -1 if that user is not in the graph
+    long userId(int u) {
+        return ids[u];
+    }
+
+    int denseId(long userId) {
+        int u = Arrays.binarySearch(ids, userId);
+        return u < 0 ? -1 : u;
+    }
+
+    // [Degree Function]
+    // EFFECTS: returns the number of friends of dense ID <u>
+    int degree(int u) {
+        return offsets[u + 1] - offsets[u];
+    }
+
+    // [Are Friends Function]
+    // EFFECTS: returns true if dense IDs <u> and <v> are friends
+    boolean areFriends(int u, int v) {
+        return Arrays.binarySearch(neighbors, offsets[u], offsets[u + 1], v) >= 0;
+    }
+
+    // [Memory Function]
+    // EFFECTS: returns the approximate number of bytes held by the graph's arrays
+    long bytes() {
+        return 8L * ids.length + 4L * offsets.length + 4L * neighbors.length;
+    }
+
+    // Member Variables
+    private static final int LoadFetchSize = 10000;
+    final long[] ids;
+    final int[] offsets;
+    final int[] neighbors;
+}
@@ -0,0 +1,190 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    The FriendSnapshot class is an immutable in-memory copy of the Users and Friends
+    tables, holding just enough to answer the friendship queries without the database:
+    a FriendGraph over every user (users without friends included) and, indexed by the
+    graph's dense IDs, each user's names and a packed birth-date key. Repeated names
+    share one String. Users that appear in Friends but not in Users are kept in the
+    graph, but isUser() is false for them.
+*/
+final class FriendSnapshot {
+    // [Constructor]
+    // REQUIRES: the arrays are indexed by the dense IDs of <graph>
+    FriendSnapshot(FriendGraph graph, String[] firstNames, String[] lastNames, int[] birthKeys, boolean[] listed) {
+        this.graph = graph;
+        this.firstNames = firstNames;
+        this.lastNames = lastNames;
+        this.birthKeys = birthKeys;
+        this.listed = listed;
+    }
+
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  reads the Users and Friends tables once each and returns their snapshot
+    static FriendSnapshot load(Connection connection) throws SQLException {
+        int count = 0;
+        long[] ids = new long[1024];
+        String[] first = new String[1024];
+        String[] last = new String[1024];
+        int[] births = new int[1024];
+        Map<String, String> dictionary = new HashMap<String, String>();
+
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly,
+                FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(LoadFetchSize);
+            ResultSet rst = stmt.executeQuery(
+                    "SELECT USER_ID, FIRST_NAME, LAST_NAME, YEAR_OF_BIRTH, MONTH_OF_BIRTH, DAY_OF_BIRTH " +
+                    "FROM " + FakebookOracleConstants.UsersTable);
+            while (rst.next()) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                    first = Arrays.copyOf(first, count * 2);
+                    last = Arrays.copyOf(last, count * 2);
+                    births = Arrays.copyOf(births, count * 2);
+                }
+                ids[count] = rst.getLong(1);
+                first[count] = shared(dictionary, rst.getString(2));
+                last[count] = shared(dictionary, rst.getString(3));
+                int year = rst.getInt(4);
+                boolean noYear = rst.wasNull();
+                int month = rst.getInt(5);
+                boolean noMonth = rst.wasNull();
+                int day = rst.getInt(6);
+                boolean noDay = rst.wasNull();
+                births[count] = birthKey(noYear ? NoYear : year, noMonth ? NoMonth : month, noDay ? NoDay : day);
+                count++;
+            }
+            rst.close();
+        }
+
+        return build(FriendGraph.load(connection, Arrays.copyOf(ids, count)), ids, first, last, births, count);
+    }
+
+    // [Load Function]
+    // REQUIRES: <file> holds the Users and Friends tables
+    // EFFECTS:  returns the snapshot of the Users and Friends tables in <file>
+    static FriendSnapshot load(FakebookSnapshotFile file) {
+        FakebookSnapshotFile.Table users = file.table(FakebookOracleConstants.UsersTable);
+        FakebookSnapshotFile.Column userId = users.column("USER_ID");
+        FakebookSnapshotFile.Column firstName = users.column("FIRST_NAME");
+        FakebookSnapshotFile.Column lastName = users.column("LAST_NAME");
+        FakebookSnapshotFile.Column year = users.column("YEAR_OF_BIRTH");
+        FakebookSnapshotFile.Column month = users.column("MONTH_OF_BIRTH");
+        FakebookSnapshotFile.Column day = users.column("DAY_OF_BIRTH");
+
+        int count = users.rows();
+        long[] ids = new long[count];
+        String[] first = new String[count];
+        String[] last = new String[count];
+        int[] births = new int[count];
+        for (int row = 0; row < count; row++) {
+            ids[row] = userId.getLong(row);
+            first[row] = firstName.getString(row); // dictionary-encoded names are already shared
+            last[row] = lastName.getString(row);
+            births[row] = birthKey(year.isNull(row) ? NoYear : (int) year.getLong(row),
+                    month.isNull(row) ? NoMonth : (int) month.getLong(row),
+                    day.isNull(row) ? NoDay : (int) day.getLong(row));
+        }
+
+        FakebookSnapshotFile.Table friends = file.table(FakebookOracleConstants.FriendsTable);
+        FakebookSnapshotFile.Column user1Id = friends.column("USER1_ID");
+        FakebookSnapshotFile.Column user2Id = friends.column("USER2_ID");
+        long[] user1 = new long[friends.rows()];
+        long[] user2 = new long[friends.rows()];
+        for (int row = 0; row < friends.rows(); row++) {
+            user1[row] = user1Id.getLong(row);
+            user2[row] = user2Id.getLong(row);
+        }
+
+        return build(FriendGraph.build(user1, user2, user1.length, ids), ids, first, last, births, count);
+    }
+
+    // combines <graph> with the first <count> users' names and birth keys
+    private static FriendSnapshot build(FriendGraph graph, long[] ids, String[] first, String[] last, int[] births,
+            int count) {
+        String[] firstNames = new String[graph.size()];
+        String[] lastNames = new String[graph.size()];
+        int[] birthKeys = new int[graph.size()];
+        boolean[] listed = new boolean[graph.size()];
+        Arrays.fill(birthKeys, birthKey(NoYear, NoMonth, NoDay));
+        for (int idx = 0; idx < count; idx++) {
+            int u = graph.denseId(ids[idx]);
+            firstNames[u] = first[idx];
+            lastNames[u] = last[idx];
+            birthKeys[u] = births[idx];
+            listed[u] = true;
+        }
+
+        return new FriendSnapshot(graph, firstNames, lastNames, birthKeys, listed);
+    }
+
+    // [Birth Key Function]
+    // EFFECTS: packs a birth date into an int that orders like
+    //          ORDER BY YEAR_OF_BIRTH, MONTH_OF_BIRTH, DAY_OF_BIRTH with NULLs last, where
+    //          a NULL part is passed as NoYear, NoMonth, or NoDay
+    static int birthKey(int year, int month, int day) {
+        return (year << 10) | (month << 6) | day;
+    }
+
+    // [Accessor Functions]
+    // EFFECTS: return the friendship graph; whether dense ID <u> is a row of the Users
+    //          table; the UserInfo and the last name of dense ID <u>; and the birth key of
+    //          dense ID <u>
+    FriendGraph graph() {
+        return graph;
+    }
+
+    boolean isUser(int u) {
+        return listed[u];
+    }
+
+    UserInfo user(int u) {
+        return new UserInfo(graph.userId(u), firstNames[u], lastNames[u]);
+    }
+
+    String lastName(int u) {
+        return lastNames[u];
+    }
+
+    int birthKey(int u) {
+        return birthKeys[u];
+    }
+
+    // [Memory Function]
+    // EFFECTS: returns the approximate number of bytes held by the snapshot's arrays,
+    //          not counting the (shared) name Strings
+    long bytes() {
+        return graph.bytes() + 4L * firstNames.length + 4L * lastNames.length + 4L * birthKeys.length
+                + listed.length;
+    }
+
+    private static String shared(Map<String, String> dictionary, String name) {
+        if (name == null) {
+            return null;
+        }
+        String existing = dictionary.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
+
+    // Member Variables
+    private static final int LoadFetchSize = 10000;
+    // stand-ins for NULL date parts, larger than any real value so that they sort last
+    static final int NoYear = (1 << 21) - 1;
+    static final int NoMonth = 15;
+    static final int NoDay = 63;
+
+    private final FriendGraph graph;
+    private final String[] firstNames;
+    private final String[] lastNames;
+    private final int[] birthKeys;
+    private final boolean[] listed;
+}
@@ -0,0 +1,307 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    The InMemoryFakebookOracle class answers the friendship, user-set, and match queries
+    (Query 2, Query 3, Query 5, Query 6, Query 8, and Query 9) from a FriendSnapshot, a
+    UserSetEngine, and a MatchMakerEngine built when it is constructed, without going
+    back to the database; every other query is passed on to the FakebookOracle it wraps.
+    Results reflect the tables as they were when the snapshot was taken; the tables are
+    read in one read-only serializable transaction, so they are consistent with each
+    other even while other sessions write to them.
+*/
+public final class InMemoryFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection, not in a transaction
+    // EFFECTS:  snapshots the Users, Friends, Current_Cities, Hometown_Cities, and Tags
+    //           tables (and the tagged photos) and answers the other queries through a
+    //           StudentFakebookOracle on <connection>
+    public InMemoryFakebookOracle(Connection connection) throws SQLException {
+        this(connection, new StudentFakebookOracle(connection));
+    }
+
+    // [Delegate Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection, not in a transaction, to the
+    //           database that <delegate> queries
+    // EFFECTS:  snapshots the same tables as above and answers the other queries
+    //           through <delegate>
+    public InMemoryFakebookOracle(Connection connection, FakebookOracle delegate) throws SQLException {
+        this(Tables.read(connection), delegate);
+    }
+
+    // [Snapshot File Constructor]
+    // REQUIRES: <file> was exported (see FakebookSnapshotFile) from the database that
+    //           <delegate> queries
+    // EFFECTS:  builds the snapshot and the engines from the tables in <file> instead of
+    //           reading them over JDBC, and answers the other queries through <delegate>
+    public InMemoryFakebookOracle(FakebookSnapshotFile file, FakebookOracle delegate) {
+        this(Tables.read(file), delegate);
+    }
+
+    // [Shared Tables Constructor]
+    // REQUIRES: <tables> were read from the database that <delegate> queries
+    // EFFECTS:  answers from <tables>, which any number of oracles may share since
+    //           nothing in them changes, and the other queries through <delegate>
+    InMemoryFakebookOracle(Tables tables, FakebookOracle delegate) {
+        this(tables.snapshot, tables.sets, tables.matches, delegate);
+    }
+
+    // [Constructor]
+    // REQUIRES: <snapshot>, <sets>, and <matches> were taken from the database that
+    //           <delegate> queries
+    InMemoryFakebookOracle(FriendSnapshot snapshot, UserSetEngine sets, MatchMakerEngine matches,
+            FakebookOracle delegate) {
+        this.snapshot = snapshot;
+        this.sets = sets;
+        this.matches = matches;
+        this.delegate = delegate;
+        graph = snapshot.graph();
+        engine = new MutualFriendEngine(graph, this::users);
+    }
+
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        return delegate.findMonthOfBirthInfo();
+    }
+
+    @Override
+    public FirstNameInfo findNameInfo() throws SQLException {
+        return delegate.findNameInfo();
+    }
+
+    @Override
+    // Query 2
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the users in neither column of Friends, by increasing ID
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
+        lonelyUsers(results::add);
+        return results;
+    }
+
+    @Override
+    public <E extends Exception> long lonelyUsers(FakebookConsumer<? super UserInfo, E> consumer)
+            throws SQLException, E {
+        return sets.scan(sets.lonelyUsers(), consumer);
+    }
+
+    @Override
+    public long countLonelyUsers() throws SQLException {
+        return sets.lonelyUsers().cardinality();
+    }
+
+    @Override
+    // Query 3
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the users whose current city and hometown differ, by increasing ID
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
+        liveAwayFromHome(results::add);
+        return results;
+    }
+
+    @Override
+    public <E extends Exception> long liveAwayFromHome(FakebookConsumer<? super UserInfo, E> consumer)
+            throws SQLException, E {
+        return sets.scan(sets.liveAwayFromHome(), consumer);
+    }
+
+    @Override
+    public long countLiveAwayFromHome() throws SQLException {
+        return sets.liveAwayFromHome().cardinality();
+    }
+
+    @Override
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        return delegate.findPhotosWithMostTags(num);
+    }
+
+    @Override
+    // Query 5
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the top <num> matches, computed from the tag index of a
+    //          MatchMakerEngine
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        return matches.matchMaker(num, yearDiff);
+    }
+
+    @Override
+    // Query 6
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the top <num> non-friend pairs by mutual friends, computed on the
+    //          snapshot by a MutualFriendEngine
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        return engine.suggestFriends(num);
+    }
+
+    @Override
+    public EventStateInfo findEventStates() throws SQLException {
+        return delegate.findEventStates();
+    }
+
+    @Override
+    // Query 8
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the oldest and youngest of <userID>'s friends, found by one pass
+    //          over the user's adjacency run; friends missing from Users are skipped, as
+    //          the SQL's join with Users skips them, friends born on the same date are
+    //          ranked by the larger user ID, and a user without a listed friend gets the
+    //          same placeholder AgeInfo as StudentFakebookOracle
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        int u = graph.denseId(userID);
+        if (u < 0) {
+            return noFriends();
+        }
+
+        int oldest = -1;
+        int youngest = -1;
+        for (int i = graph.offsets[u]; i < graph.offsets[u + 1]; i++) {
+            int v = graph.neighbors[i]; // increasing, so a later friend wins every tie
+            if (!snapshot.isUser(v)) {
+                continue;
+            }
+            int birth = snapshot.birthKey(v);
+            if (oldest < 0 || birth <= snapshot.birthKey(oldest)) {
+                oldest = v;
+            }
+            if (youngest < 0 || birth >= snapshot.birthKey(youngest)) {
+                youngest = v;
+            }
+        }
+        if (oldest < 0) {
+            return noFriends();
+        }
+        return new AgeInfo(snapshot.user(oldest), snapshot.user(youngest));
+    }
+
+    // the placeholder StudentFakebookOracle returns for a user without a listed friend
+    private static AgeInfo noFriends() {
+        return new AgeInfo(new UserInfo(99999999L, "", ""), new UserInfo(999999999L, "", ""));
+    }
+
+    @Override
+    // Bulk Query 8
+    // -----------------------------------------------------------------------------------
+    public Map<Long, AgeInfo> findAgeInfo(Collection<Long> userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new HashMap<Long, AgeInfo>();
+        for (Long userID : userIDs) {
+            long id = requireUserID(userID);
+            results.put(id, findAgeInfo(id));
+        }
+        return results;
+    }
+
+    @Override
+    // Query 9
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the friends with the same last name and hometown born less than
+    //          10 years apart, ordered by the first user's ID and then the second's
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
+        findPotentialSiblings(results::add);
+        return results;
+    }
+
+    @Override
+    public <E extends Exception> long findPotentialSiblings(FakebookConsumer<? super SiblingInfo, E> consumer)
+            throws SQLException, E {
+        return sets.findPotentialSiblings(consumer);
+    }
+
+    @Override
+    public long countPotentialSiblings() throws SQLException {
+        return sets.countPotentialSiblings();
+    }
+
+    // [Snapshot Accessor]
+    // EFFECTS: returns the snapshot the friendship queries are answered from
+    FriendSnapshot snapshot() {
+        return snapshot;
+    }
+
+    // [Delegate Accessor]
+    // EFFECTS: returns the oracle that answers the queries not kept in memory
+    FakebookOracle delegate() {
+        return delegate;
+    }
+
+    // [Close Function]
+    // EFFECTS: closes the oracle that answers the queries not kept in memory
+    @Override
+    public void close() throws SQLException {
+        delegate.close();
+    }
+
+    // looks up the names of the users in Query 6's pairs in the snapshot
+    private Map<Long, UserInfo> users(long[] userIds) {
+        Map<Long, UserInfo> users = new HashMap<Long, UserInfo>();
+        for (long userId : userIds) {
+            int u = graph.denseId(userId);
+            if (u >= 0 && snapshot.isUser(u)) {
+                users.put(userId, snapshot.user(u));
+            }
+        }
+        return users;
+    }
+
+    /*
+        The Tables class holds what the constructor reads from the database: the snapshot
+        and the two engines built over it. They are immutable, so one Tables can be read
+        once and shared by every oracle on the same database.
+    */
+    static final class Tables {
+        private Tables(FriendSnapshot snapshot, UserSetEngine sets, MatchMakerEngine matches) {
+            this.snapshot = snapshot;
+            this.sets = sets;
+            this.matches = matches;
+        }
+
+        // reads the tables in one read-only serializable transaction, then restores the
+        // connection's settings
+        static Tables read(Connection connection) throws SQLException {
+            boolean autoCommit = connection.getAutoCommit();
+            boolean readOnly = connection.isReadOnly();
+            int isolation = connection.getTransactionIsolation();
+            connection.setReadOnly(true);
+            connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            connection.setAutoCommit(false);
+            try {
+                FriendSnapshot snapshot = FriendSnapshot.load(connection);
+                Tables tables = new Tables(snapshot, UserSetEngine.load(connection, snapshot),
+                        MatchMakerEngine.load(connection, snapshot));
+                connection.commit();
+                return tables;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                connection.setTransactionIsolation(isolation);
+                connection.setReadOnly(readOnly);
+            }
+        }
+
+        // reads the tables from <file>
+        static Tables read(FakebookSnapshotFile file) {
+            FriendSnapshot snapshot = FriendSnapshot.load(file);
+            return new Tables(snapshot, UserSetEngine.load(file, snapshot), MatchMakerEngine.load(file, snapshot));
+        }
+
+        final FriendSnapshot snapshot;
+        final UserSetEngine sets;
+        final MatchMakerEngine matches;
+    }
+
+    // Member Variables
+    private final FriendSnapshot snapshot;
+    private final FriendGraph graph;
+    private final UserSetEngine sets;
+    private final MatchMakerEngine matches;
+    private final FakebookOracle delegate;
+    private final MutualFriendEngine engine;
+}
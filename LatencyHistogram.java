@@ -0,0 +1,108 @@
+package project2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    The LatencyHistogram class records latencies (in nanoseconds) into fixed log-linear
+    buckets, so that percentiles can be read back without keeping every sample. Values
+    below 128 ns get a bucket each; above that, every power of two is split into 64
+    equal buckets, so a reported percentile is never more than 1/64 (about 1.6%) above
+    the true value. The minimum, maximum, and mean are exact.
+
+    Recording is lock-free and may be done from several threads at once; reading while
+    others record gives a result that is consistent to within the samples in flight.
+*/
+final class LatencyHistogram {
+    // [Record Function]
+    // REQUIRES: <nanos> >= 0
+    // MODIFIES: this
+    // EFFECTS:  adds one sample of <nanos> nanoseconds
+    void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        sum.add(nanos);
+        min.accumulateAndGet(nanos, Math::min);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    // [Percentile Function]
+    // REQUIRES: 0 < <percentile> <= 100
+    // EFFECTS:  returns the smallest recorded latency (to within the bucket width) that
+    //           at least <percentile>% of the samples do not exceed, or 0 if there are none
+    long percentile(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int idx = 0; idx < Buckets; idx++) {
+            seen += counts.get(idx);
+            if (seen >= rank) {
+                return Math.max(min(), Math.min(max(), highestValue(idx)));
+            }
+        }
+        return max();
+    }
+
+    // [Statistics Functions]
+    // EFFECTS: return the number of samples, and the smallest, largest, and mean sample
+    //          (0 if there are none)
+    long count() {
+        return count.sum();
+    }
+
+    long min() {
+        return count() == 0 ? 0L : min.get();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        long total = count();
+        return total == 0 ? 0.0 : (double) sum.sum() / total;
+    }
+
+    // [Histogram-to-String Converter]
+    // EFFECTS: returns a string representation of the histogram's percentiles in ms
+    public String toString() {
+        return String.format("n=%d p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms", count(),
+                percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6, max() / 1e6);
+    }
+
+    // the bucket holding <value>: exact below 2 * SubBuckets, then SubBuckets per power of two
+    private static int bucket(long value) {
+        if (value < SubBuckets * 2) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SubBits)) & (SubBuckets - 1);
+        return SubBuckets * 2 + (exponent - SubBits - 1) * SubBuckets + sub;
+    }
+
+    // the largest value that falls into bucket <idx>
+    private static long highestValue(int idx) {
+        if (idx < SubBuckets * 2) {
+            return idx;
+        }
+        int exponent = (idx - SubBuckets * 2) / SubBuckets + SubBits + 1;
+        long sub = (idx - SubBuckets * 2) % SubBuckets;
+        long lowest = (1L << exponent) | (sub << (exponent - SubBits));
+        return lowest + (1L << (exponent - SubBits)) - 1;
+    }
+
+    // Member Variables
+    private static final int SubBits = 6;
+    private static final int SubBuckets = 1 << SubBits; // buckets per power of two
+    private static final int Buckets = SubBuckets * 2 + (63 - SubBits - 1) * SubBuckets;
+
+    private final AtomicLongArray counts = new AtomicLongArray(Buckets);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(0L);
+}
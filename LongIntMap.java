@@ -0,0 +1,151 @@
+package project2;
+
+/*
+    The LongIntMap class is a hash map from long keys to int values that stores both in
+    flat arrays (open addressing with linear probing), so that counting over millions of
+    IDs allocates no objects per entry. A value of 0 stands for "absent": get() returns
+    0 for keys that were never stored, and storing 0 removes the key. This class is not
+    safe for concurrent use.
+*/
+final class LongIntMap {
+    // [Constructor]
+    // REQUIRES: 0 <= <expected>
+    // EFFECTS:  creates an empty map with room for <expected> keys before it grows
+    LongIntMap(int expected) {
+        int slots = Integer.highestOneBit(Math.max(MinSlots, (int) (expected / MaxLoad) + 1));
+        if (slots * MaxLoad < expected) {
+            slots *= 2;
+        }
+        keys = new long[slots];
+        values = new int[slots];
+    }
+
+    // [Get Function]
+    // EFFECTS: returns the value of <key>, or 0 if it has none
+    int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & (keys.length - 1)) {
+            if (values[slot] == 0) {
+                return 0;
+            }
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+    }
+
+    // [Put Function]
+    // MODIFIES: this
+    // EFFECTS:  sets the value of <key> to <value> (removing <key> if <value> is 0) and
+    //           returns its previous value
+    int put(long key, int value) {
+        if (value == 0) {
+            return remove(key);
+        }
+        int slot = find(key);
+        int previous = values[slot];
+        keys[slot] = key;
+        values[slot] = value;
+        if (previous == 0) {
+            size++;
+            if (size > keys.length * MaxLoad) {
+                resize(keys.length * 2);
+            }
+        }
+        return previous;
+    }
+
+    // [Add Function]
+    // MODIFIES: this
+    // EFFECTS:  adds <delta> to the value of <key> and returns the new value
+    int add(long key, int delta) {
+        int value = get(key) + delta;
+        put(key, value);
+        return value;
+    }
+
+    // [Remove Function]
+    // MODIFIES: this
+    // EFFECTS:  removes <key> and returns its value (0 if it had none)
+    int remove(long key) {
+        int slot = find(key);
+        int previous = values[slot];
+        if (previous == 0) {
+            return 0;
+        }
+
+        // Backward-shift deletion: move later entries of the same probe run into the gap
+        // so that lookups never need tombstones
+        int mask = keys.length - 1;
+        int gap = slot;
+        for (int next = (gap + 1) & mask; values[next] != 0; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = 0;
+        size--;
+        return previous;
+    }
+
+    // [Size Function]
+    // EFFECTS: returns the number of keys with a value
+    int size() {
+        return size;
+    }
+
+    // [For Each Function]
+    // EFFECTS: passes every key and its value to <visitor>, in no particular order
+    void forEach(Visitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != 0) {
+                visitor.visit(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    // Receives the entries of a LongIntMap
+    @FunctionalInterface
+    interface Visitor {
+        void visit(long key, int value);
+    }
+
+    // the slot holding <key>, or the empty slot where it would go
+    private int find(long key) {
+        int slot = slot(key);
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return slot;
+    }
+
+    // spreads the key's bits so that sequential IDs do not form long probe runs
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+    }
+
+    private void resize(int slots) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[slots];
+        values = new int[slots];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != 0) {
+                int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+
+    // Member Variables
+    private static final int MinSlots = 16;
+    private static final double MaxLoad = 0.5;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+}
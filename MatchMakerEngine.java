@@ -0,0 +1,374 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/*
+    The MatchMakerEngine class answers Query 5 (matchMaker) from an inverted index of the
+    Tags table instead of joining Users to itself. Each photo keeps the users tagged in
+    it, sorted by gender and then birth year, so the pairs of the same gender born at
+    most <yearDiff> years apart are exactly the runs that follow each user within its
+    gender; only those pairs are enumerated, and their shared photos are counted in a
+    LongIntMap keyed by the pair. The pairs are then checked against the FriendGraph
+    and the best <num> kept in a bounded heap. Users without a gender or birth year
+    never match, so they are left out of the index, and so are photos with fewer than
+    two remaining users.
+
+    The photo details are read when the engine is loaded, for the indexed photos only.
+    Like the SQL, a photo that is missing from Photos (or whose album is missing from
+    Albums) still counts toward a pair's shared photos, but is not listed.
+*/
+final class MatchMakerEngine {
+    // [Constructor]
+    // REQUIRES: <subjects>[<offsets>[p], <offsets>[p + 1]) are the dense IDs of the users
+    //           tagged in photo <p>, sorted by gender and then year; <photos> and
+    //           <photoOffsets> are the same index inverted, with increasing photo indexes
+    private MatchMakerEngine(FriendSnapshot snapshot, int[] genders, int[] years, int[] offsets, int[] subjects,
+            int[] photoOffsets, int[] photos, PhotoInfo[] details) {
+        this.snapshot = snapshot;
+        graph = snapshot.graph();
+        this.genders = genders;
+        this.years = years;
+        this.offsets = offsets;
+        this.subjects = subjects;
+        this.photoOffsets = photoOffsets;
+        this.photos = photos;
+        this.details = details;
+    }
+
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection to the database that <snapshot>
+    //           was taken from
+    // EFFECTS:  reads the users' genders, the Tags table, and the tagged photos' details
+    //           once each and returns an engine over them and <snapshot>
+    static MatchMakerEngine load(Connection connection, FriendSnapshot snapshot) throws SQLException {
+        FriendGraph graph = snapshot.graph();
+        int[] genders = new int[graph.size()];
+        int[] years = new int[graph.size()];
+        Arrays.fill(genders, -1);
+        for (int u = 0; u < graph.size(); u++) {
+            years[u] = snapshot.birthKey(u) >>> YearShift;
+        }
+
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly,
+                FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(LoadFetchSize);
+
+            // Genders are numbered in the order they are first seen; only equality matters
+            Map<String, Integer> codes = new HashMap<String, Integer>();
+            try (ResultSet rst = stmt.executeQuery("SELECT USER_ID, GENDER FROM " + FakebookOracleConstants.UsersTable)) {
+                while (rst.next()) {
+                    String gender = rst.getString(2);
+                    int u = graph.denseId(rst.getLong(1));
+                    if (gender != null && u >= 0) { // a user missing from the snapshot cannot match
+                        genders[u] = codes.computeIfAbsent(gender, g -> codes.size());
+                    }
+                }
+            }
+
+            // Keep the tags of the users that can match, packed as (photo ID, dense ID)
+            long[] tags = new long[1024];
+            int count = 0;
+            try (ResultSet rst = stmt.executeQuery("SELECT TAG_PHOTO_ID, TAG_SUBJECT_ID FROM " +
+                    FakebookOracleConstants.TagsTable)) {
+                while (rst.next()) {
+                    int u = graph.denseId(rst.getLong(2));
+                    if (u < 0 || !snapshot.isUser(u) || genders[u] < 0 || years[u] == FriendSnapshot.NoYear) {
+                        continue;
+                    }
+                    long photoId = rst.getLong(1);
+                    if (photoId < 0 || photoId > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("photo ID out of range: " + photoId);
+                    }
+                    if (count == tags.length) {
+                        tags = Arrays.copyOf(tags, count * 2);
+                    }
+                    tags[count++] = (photoId << 32) | u;
+                }
+            }
+
+            return build(snapshot, genders, years, tags, count, (photoIds, details) -> {
+                try (ResultSet rst = stmt.executeQuery("SELECT P.PHOTO_ID, P.ALBUM_ID, P.PHOTO_LINK, A.ALBUM_NAME " +
+                        "FROM " + FakebookOracleConstants.PhotosTable + " P " +
+                        "JOIN " + FakebookOracleConstants.AlbumsTable + " A ON P.ALBUM_ID = A.ALBUM_ID")) {
+                    while (rst.next()) {
+                        int p = Arrays.binarySearch(photoIds, rst.getLong(1));
+                        if (p >= 0) {
+                            details[p] = new PhotoInfo(rst.getLong(1), rst.getLong(2), rst.getString(3),
+                                    rst.getString(4));
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    // [Load Function]
+    // REQUIRES: <file> holds the tables that <snapshot> was taken from
+    // EFFECTS:  returns an engine over the users' genders, the Tags table, and the tagged
+    //           photos' details in <file> and <snapshot>
+    static MatchMakerEngine load(FakebookSnapshotFile file, FriendSnapshot snapshot) {
+        FriendGraph graph = snapshot.graph();
+        int[] genders = new int[graph.size()];
+        int[] years = new int[graph.size()];
+        Arrays.fill(genders, -1);
+        for (int u = 0; u < graph.size(); u++) {
+            years[u] = snapshot.birthKey(u) >>> YearShift;
+        }
+
+        FakebookSnapshotFile.Table users = file.table(FakebookOracleConstants.UsersTable);
+        FakebookSnapshotFile.Column userId = users.column("USER_ID");
+        FakebookSnapshotFile.Column gender = users.column("GENDER");
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        for (int row = 0; row < users.rows(); row++) {
+            String value = gender.getString(row);
+            int u = graph.denseId(userId.getLong(row));
+            if (value != null && u >= 0) {
+                genders[u] = codes.computeIfAbsent(value, g -> codes.size());
+            }
+        }
+
+        FakebookSnapshotFile.Table tagsTable = file.table(FakebookOracleConstants.TagsTable);
+        FakebookSnapshotFile.Column tagPhotoId = tagsTable.column("TAG_PHOTO_ID");
+        FakebookSnapshotFile.Column tagSubjectId = tagsTable.column("TAG_SUBJECT_ID");
+        long[] tags = new long[Math.max(1, tagsTable.rows())];
+        int count = 0;
+        for (int row = 0; row < tagsTable.rows(); row++) {
+            int u = graph.denseId(tagSubjectId.getLong(row));
+            if (u < 0 || !snapshot.isUser(u) || genders[u] < 0 || years[u] == FriendSnapshot.NoYear) {
+                continue;
+            }
+            long photoId = tagPhotoId.getLong(row);
+            if (photoId < 0 || photoId > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("photo ID out of range: " + photoId);
+            }
+            tags[count++] = (photoId << 32) | u;
+        }
+
+        return build(snapshot, genders, years, tags, count, (photoIds, details) -> {
+            FakebookSnapshotFile.Table albums = file.table(FakebookOracleConstants.AlbumsTable);
+            FakebookSnapshotFile.Column albumId = albums.column("ALBUM_ID");
+            FakebookSnapshotFile.Column albumName = albums.column("ALBUM_NAME");
+            Map<Long, String> names = new HashMap<Long, String>();
+            for (int row = 0; row < albums.rows(); row++) {
+                names.put(albumId.getLong(row), albumName.getString(row));
+            }
+
+            FakebookSnapshotFile.Table photos = file.table(FakebookOracleConstants.PhotosTable);
+            FakebookSnapshotFile.Column photoId = photos.column("PHOTO_ID");
+            FakebookSnapshotFile.Column photoAlbumId = photos.column("ALBUM_ID");
+            FakebookSnapshotFile.Column photoLink = photos.column("PHOTO_LINK");
+            for (int row = 0; row < photos.rows(); row++) {
+                int p = Arrays.binarySearch(photoIds, photoId.getLong(row));
+                long album = photoAlbumId.getLong(row);
+                // like the SQL's inner join, a photo whose album is missing is not listed
+                if (p >= 0 && !photoAlbumId.isNull(row) && names.containsKey(album)) {
+                    details[p] = new PhotoInfo(photoId.getLong(row), album, photoLink.getString(row),
+                            names.get(album));
+                }
+            }
+        });
+    }
+
+    // indexes the first <count> packed (photo ID, dense ID) tags and has <reader> fill in
+    // the details of the photos that are kept
+    private static <E extends Exception> MatchMakerEngine build(FriendSnapshot snapshot, int[] genders, int[] years,
+            long[] tags, int count, DetailReader<E> reader) throws E {
+        Arrays.sort(tags, 0, count);
+
+        // Keep the photos with at least two users, each photo's users sorted by gender,
+        // year, and dense ID through one more packed sort
+        long[] photoIds = new long[count / 2];
+        int[] offsets = new int[count / 2 + 1];
+        int[] subjects = new int[count];
+        long[] buckets = new long[16];
+        int photoCount = 0;
+        int kept = 0;
+        for (int start = 0; start < count; ) {
+            int end = start;
+            while (end < count && tags[end] >>> 32 == tags[start] >>> 32) {
+                end++;
+            }
+            if (end - start > 1) {
+                if (buckets.length < end - start) {
+                    buckets = new long[Math.max(end - start, buckets.length * 2)];
+                }
+                for (int idx = start; idx < end; idx++) {
+                    int u = (int) tags[idx];
+                    buckets[idx - start] = ((long) genders[u] << GenderShift) | ((long) years[u] << 32) | u;
+                }
+                Arrays.sort(buckets, 0, end - start);
+                photoIds[photoCount] = tags[start] >>> 32;
+                for (int idx = 0; idx < end - start; idx++) {
+                    subjects[kept++] = (int) buckets[idx];
+                }
+                offsets[++photoCount] = kept;
+            }
+            start = end;
+        }
+        photoIds = Arrays.copyOf(photoIds, photoCount);
+        offsets = Arrays.copyOf(offsets, photoCount + 1);
+        subjects = Arrays.copyOf(subjects, kept);
+
+        // Invert the index: each user's photos, in increasing photo order
+        int[] photoOffsets = new int[snapshot.graph().size() + 1];
+        for (int idx = 0; idx < kept; idx++) {
+            photoOffsets[subjects[idx] + 1]++;
+        }
+        for (int u = 0; u < snapshot.graph().size(); u++) {
+            photoOffsets[u + 1] += photoOffsets[u];
+        }
+        int[] photos = new int[kept];
+        int[] filled = Arrays.copyOf(photoOffsets, photoOffsets.length - 1);
+        for (int p = 0; p < photoCount; p++) {
+            for (int idx = offsets[p]; idx < offsets[p + 1]; idx++) {
+                photos[filled[subjects[idx]]++] = p;
+            }
+        }
+
+        PhotoInfo[] details = new PhotoInfo[photoCount];
+        reader.read(photoIds, details);
+
+        return new MatchMakerEngine(snapshot, genders, years, offsets, subjects, photoOffsets, photos, details);
+    }
+
+    // Query 5
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the same results as StudentFakebookOracle.matchMaker(<num>,
+    //          <yearDiff>): the top <num> pairs of users of the same gender, born at most
+    //          <yearDiff> years apart, who are not friends, by number of photos they are
+    //          both tagged in (ties broken by the smaller and then the larger user ID),
+    //          each with those photos
+    FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) {
+        FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
+        if (num <= 0) {
+            return results;
+        }
+
+        // Count the shared photos of every eligible pair, keyed by its two dense IDs
+        LongIntMap shared = new LongIntMap(1024);
+        for (int p = 0; p + 1 < offsets.length; p++) {
+            int end = offsets[p + 1];
+            for (int i = offsets[p]; i < end; i++) {
+                int u = subjects[i];
+                for (int j = i + 1; j < end; j++) {
+                    int v = subjects[j];
+                    if (genders[v] != genders[u] || years[v] - years[u] > yearDiff) {
+                        break; // the rest of the photo's users are in a later bucket
+                    }
+                    shared.add(u < v ? ((long) u << 32) | v : ((long) v << 32) | u, 1);
+                }
+            }
+        }
+
+        PriorityQueue<Candidate> heap = new PriorityQueue<Candidate>(num + 1, Better.reversed());
+        shared.forEach((pair, count) -> {
+            if (heap.size() == num && count < heap.peek().photos) {
+                return; // cannot beat the current worst, skip the friendship check
+            }
+            int u = (int) (pair >>> 32);
+            int v = (int) pair;
+            if (!graph.areFriends(u, v)) {
+                offer(heap, new Candidate(u, v, count), num);
+            }
+        });
+        Candidate[] top = heap.toArray(new Candidate[0]);
+        Arrays.sort(top, Better);
+
+        for (Candidate candidate : top) {
+            MatchPair mp = new MatchPair(snapshot.user(candidate.user1), years[candidate.user1],
+                    snapshot.user(candidate.user2), years[candidate.user2]);
+            // Shared photos are the intersection of the two users' sorted photo runs
+            int i = photoOffsets[candidate.user1];
+            int j = photoOffsets[candidate.user2];
+            while (i < photoOffsets[candidate.user1 + 1] && j < photoOffsets[candidate.user2 + 1]) {
+                if (photos[i] == photos[j]) {
+                    if (details[photos[i]] != null) {
+                        mp.addSharedPhoto(details[photos[i]]);
+                    }
+                    i++;
+                    j++;
+                } else if (photos[i] < photos[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            results.add(mp);
+        }
+        return results;
+    }
+
+    // [Memory Function]
+    // EFFECTS: returns the approximate number of bytes held by the engine's arrays, not
+    //          counting the snapshot or the photo details
+    long bytes() {
+        return 4L * (genders.length + years.length + offsets.length + subjects.length + photoOffsets.length
+                + photos.length) + 4L * details.length;
+    }
+
+    // [Offer Function]
+    // MODIFIES: <heap>
+    // EFFECTS:  adds <candidate> to <heap> if it is among the best <num> seen so far
+    private static void offer(PriorityQueue<Candidate> heap, Candidate candidate, int num) {
+        if (heap.size() < num) {
+            heap.add(candidate);
+        } else if (Better.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    /*
+        The DetailReader interface reads the details of the photos whose IDs are in the
+        sorted array <photoIds> into the same positions of <details>, leaving null the
+        photos missing from Photos or whose album is missing from Albums.
+    */
+    @FunctionalInterface
+    private interface DetailReader<E extends Exception> {
+        void read(long[] photoIds, PhotoInfo[] details) throws E;
+    }
+
+    /*
+        The Candidate class is a pair of dense user IDs and their number of shared photos.
+    */
+    private static final class Candidate {
+        Candidate(int user1, int user2, int photos) {
+            this.user1 = user1;
+            this.user2 = user2;
+            this.photos = photos;
+        }
+
+        final int user1;
+        final int user2;
+        final int photos;
+    }
+
+    // Member Variables
+    private static final int LoadFetchSize = 10000;
+    private static final int YearShift = 10; // see FriendSnapshot.birthKey()
+    private static final int GenderShift = 53; // above the 21 bits of a birth year
+    // more shared photos first, then smaller user 1, then smaller user 2 (dense IDs are
+    // ordered like user IDs)
+    private static final Comparator<Candidate> Better = Comparator
+            .comparingInt((Candidate c) -> -c.photos)
+            .thenComparingInt(c -> c.user1)
+            .thenComparingInt(c -> c.user2);
+
+    private final FriendSnapshot snapshot;
+    private final FriendGraph graph;
+    private final int[] genders; // dense ID -> gender code, or -1 for none
+    private final int[] years; // dense ID -> birth year, or FriendSnapshot.NoYear
+    private final int[] offsets; // photo index -> start of its run in <subjects>
+    private final int[] subjects;
+    private final int[] photoOffsets; // dense ID -> start of its run in <photos>
+    private final int[] photos; // photo indexes, in increasing photo ID order per user
+    private final PhotoInfo[] details; // photo index -> details, or null if not in Photos
+}
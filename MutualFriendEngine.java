@@ -0,0 +1,278 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+    The MutualFriendEngine class answers Query 6 (suggestFriends) from a FriendGraph
+    instead of the database. For every user U it walks two hops (U -> friend W -> friend V
+    of W with V > U), counting how often each V is reached; each V that is not already
+    U's friend is then a candidate pair (U, V) with that many mutual friends. Users are
+    split into ranges that are processed in parallel on a fork/join pool, each range
+    keeping only its best <num> candidates in a bounded heap, and the heaps are merged.
+    Only the names of the users in the final pairs are looked up, from the database or
+    from any other UserSource. As in the SQL, mutual friends missing from Users are
+    counted but not listed, and a pair is left out if either user is missing from Users
+    or none of its mutual friends is listed.
+*/
+final class MutualFriendEngine {
+    // [Constructor]
+    // REQUIRES: <graph> was loaded from the database that <connection> is connected to
+    MutualFriendEngine(FriendGraph graph, Connection connection) {
+        this(graph, userIds -> UserInfoLookup.fetch(connection, userIds));
+    }
+
+    // [Constructor]
+    // REQUIRES: <users> knows the users of <graph>
+    MutualFriendEngine(FriendGraph graph, UserSource users) {
+        this.graph = graph;
+        this.users = users;
+    }
+
+    /*
+        The UserSource interface looks up the names of the users in the final pairs.
+    */
+    @FunctionalInterface
+    interface UserSource {
+        // EFFECTS: returns a UserInfo for every known ID in <userIds>, keyed by user ID
+        Map<Long, UserInfo> fetch(long[] userIds) throws SQLException;
+    }
+
+    // Query 6
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: returns the same results as StudentFakebookOracle.suggestFriends(<num>):
+    //          the top <num> non-friend pairs by number of mutual friends (ties broken by
+    //          the smaller and then the larger user ID), each with its mutual friends
+    FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
+        if (num <= 0 || graph.size() == 0) {
+            return results;
+        }
+
+        // The scratch arrays live only as long as this pass: at most one per worker thread
+        // is created, and they are all dropped with the queue
+        Queue<Scratch> scratches = new ConcurrentLinkedQueue<Scratch>();
+        PriorityQueue<Candidate> heap = ForkJoinPool.commonPool().invoke(
+                new TopPairsTask(0, graph.size(), num, scratches));
+        Candidate[] top = heap.toArray(new Candidate[0]);
+        Arrays.sort(top, Better);
+
+        // Mutual friends are the intersection of the two sorted adjacency runs
+        int[][] mutuals = new int[top.length][];
+        int total = 0;
+        for (int idx = 0; idx < top.length; idx++) {
+            mutuals[idx] = intersect(top[idx].user1, top[idx].user2);
+            total += 2 + mutuals[idx].length;
+        }
+
+        long[] needed = new long[total];
+        int used = 0;
+        for (int idx = 0; idx < top.length; idx++) {
+            needed[used++] = graph.userId(top[idx].user1);
+            needed[used++] = graph.userId(top[idx].user2);
+            for (int friend : mutuals[idx]) {
+                needed[used++] = graph.userId(friend);
+            }
+        }
+
+        Map<Long, UserInfo> names = users.fetch(distinct(needed));
+        for (int idx = 0; idx < top.length; idx++) {
+            UserInfo user1 = names.get(graph.userId(top[idx].user1));
+            UserInfo user2 = names.get(graph.userId(top[idx].user2));
+            if (user1 == null || user2 == null) {
+                continue; // a friend ID missing from Users
+            }
+            UsersPair up = new UsersPair(user1, user2);
+            int listed = 0;
+            for (int friend : mutuals[idx]) {
+                UserInfo shared = names.get(graph.userId(friend));
+                if (shared != null) {
+                    up.addSharedFriend(shared);
+                    listed++;
+                }
+            }
+            if (listed > 0) { // the SQL joins each mutual friend to Users
+                results.add(up);
+            }
+        }
+
+        return results;
+    }
+
+    // [Intersect Function]
+    // EFFECTS: returns the sorted dense IDs that are friends of both <u> and <v>
+    private int[] intersect(int u, int v) {
+        int[] common = new int[Math.min(graph.degree(u), graph.degree(v))];
+        int count = 0;
+        int i = graph.offsets[u];
+        int j = graph.offsets[v];
+        while (i < graph.offsets[u + 1] && j < graph.offsets[v + 1]) {
+            int a = graph.neighbors[i];
+            int b = graph.neighbors[j];
+            if (a == b) {
+                common[count++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+
+    private static long[] distinct(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int idx = 0; idx < sorted.length; idx++) {
+            if (count == 0 || sorted[idx] != sorted[count - 1]) {
+                sorted[count++] = sorted[idx];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    // [Offer Function]
+    // MODIFIES: <heap>
+    // EFFECTS:  adds <candidate> to <heap> if it is among the best <num> seen so far
+    private static void offer(PriorityQueue<Candidate> heap, Candidate candidate, int num) {
+        if (heap.size() < num) {
+            heap.add(candidate);
+        } else if (Better.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    /*
+        The TopPairsTask class finds the best <num> candidate pairs whose smaller user
+        falls in dense IDs [<from>, <to>), splitting the range until it is small enough.
+        Each leaf borrows a Scratch from <scratches> (or creates one) and returns it.
+    */
+    private final class TopPairsTask extends RecursiveTask<PriorityQueue<Candidate>> {
+        TopPairsTask(int from, int to, int num, Queue<Scratch> scratches) {
+            this.from = from;
+            this.to = to;
+            this.num = num;
+            this.scratches = scratches;
+        }
+
+        @Override
+        protected PriorityQueue<Candidate> compute() {
+            if (to - from > UsersPerTask) {
+                int middle = (from + to) >>> 1;
+                TopPairsTask left = new TopPairsTask(from, middle, num, scratches);
+                left.fork();
+                PriorityQueue<Candidate> heap = new TopPairsTask(middle, to, num, scratches).compute();
+                for (Candidate candidate : left.join()) {
+                    offer(heap, candidate, num);
+                }
+                return heap;
+            }
+
+            Scratch scratch = scratches.poll();
+            if (scratch == null) {
+                scratch = new Scratch(graph.size());
+            }
+            try {
+                return walk(scratch);
+            } finally {
+                scratches.add(scratch);
+            }
+        }
+
+        // runs the two-hop walk from every user in [<from>, <to>) using <scratch>
+        private PriorityQueue<Candidate> walk(Scratch scratch) {
+            PriorityQueue<Candidate> heap = new PriorityQueue<Candidate>(num + 1, Better.reversed());
+            int[] counts = scratch.counts;
+            int[] reached = scratch.reached;
+            int[] offsets = graph.offsets;
+            int[] neighbors = graph.neighbors;
+
+            for (int u = from; u < to; u++) {
+                int touched = 0;
+                for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                    int w = neighbors[i];
+                    // only V > U, so each pair is counted from its smaller user
+                    int j = Arrays.binarySearch(neighbors, offsets[w], offsets[w + 1], u + 1);
+                    for (j = j < 0 ? -j - 1 : j; j < offsets[w + 1]; j++) {
+                        int v = neighbors[j];
+                        if (counts[v]++ == 0) {
+                            reached[touched++] = v;
+                        }
+                    }
+                }
+
+                for (int idx = 0; idx < touched; idx++) {
+                    int v = reached[idx];
+                    int count = counts[v];
+                    counts[v] = 0;
+                    if (heap.size() == num && count < heap.peek().mutuals) {
+                        continue; // cannot beat the current worst, skip the friendship check
+                    }
+                    if (!graph.areFriends(u, v)) {
+                        offer(heap, new Candidate(u, v, count), num);
+                    }
+                }
+            }
+            return heap;
+        }
+
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int num;
+        private final Queue<Scratch> scratches;
+    }
+
+    /*
+        The Candidate class is a pair of dense user IDs and their number of mutual friends.
+    */
+    private static final class Candidate {
+        Candidate(int user1, int user2, int mutuals) {
+            this.user1 = user1;
+            this.user2 = user2;
+            this.mutuals = mutuals;
+        }
+
+        final int user1;
+        final int user2;
+        final int mutuals;
+    }
+
+    /*
+        The Scratch class holds the counters of one thread's two-hop walk; the counts are
+        all zero between users.
+    */
+    private static final class Scratch {
+        Scratch(int size) {
+            counts = new int[size];
+            reached = new int[size];
+        }
+
+        final int[] counts;
+        final int[] reached;
+    }
+
+    // Member Variables
+    private static final int UsersPerTask = 1024;
+    // more mutual friends first, then smaller user 1, then smaller user 2 (dense IDs are
+    // ordered like user IDs)
+    private static final Comparator<Candidate> Better = Comparator
+            .comparingInt((Candidate c) -> -c.mutuals)
+            .thenComparingInt(c -> c.user1)
+            .thenComparingInt(c -> c.user2);
+
+    private final FriendGraph graph;
+    private final UserSource users;
+}
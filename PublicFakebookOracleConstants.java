@@ -30,6 +30,7 @@ final class FakebookOracleConstants {
 
     // Result Set Constants Renamed
     public static final int AllScroll = ResultSet.TYPE_SCROLL_INSENSITIVE;
+    public static final int ForwardOnly = ResultSet.TYPE_FORWARD_ONLY;
     public static final int ReadOnly = ResultSet.CONCUR_READ_ONLY;
 
     // [Constructor]
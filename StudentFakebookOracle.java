@@ -1,21 +1,92 @@
 package project2;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /*
     The StudentFakebookOracle class is derived from the FakebookOracle class and implements
     the abstract query functions that investigate the database provided via the <connection>
-    parameter of the constructor to discover specific information.
+    parameter of the constructor to discover specific information. Closing the oracle
+    closes the prepared statements it keeps between queries, but not the connection.
 */
 public final class StudentFakebookOracle extends FakebookOracle {
     // [Constructor]
     // REQUIRES: <connection> is a valid JDBC connection
     public StudentFakebookOracle(Connection connection) {
+        this(connection, new UserInfoCache(DefaultUserCacheSize));
+    }
+
+    // [Shared Cache Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection; <users> is only shared with
+    //           oracles connected to the same database
+    public StudentFakebookOracle(Connection connection, UserInfoCache users) {
         oracle = connection;
+        statements = new FakebookStatementRegistry(connection);
+        this.users = users;
+    }
+
+    // [Propagate Errors Function]
+    // MODIFIES: this
+    // EFFECTS:  makes every query rethrow the SQLException that makes it fail (after
+    //           printing its message as usual) if <propagate> is true, instead of
+    //           returning a partial or placeholder result
+    public void setPropagateErrors(boolean propagate) {
+        propagateErrors = propagate;
+    }
+
+    // [Fetch Size Function]
+    // REQUIRES: 0 <= <query> <= 9 and 0 < <rows>
+    // MODIFIES: this
+    // EFFECTS:  makes the statements of query <query> fetch <rows> rows per round trip
+    public void setFetchSize(int query, int rows) {
+        fetchSizes[query] = rows;
+    }
+
+    // [Tag Index Function]
+    // REQUIRES: <index> was loaded from this oracle's database and is told about every
+    //           change to its Tags table, or is null
+    // MODIFIES: this
+    // EFFECTS:  makes findPhotosWithMostTags() take the ranking from <index> whenever
+    //           <num> is within its capacity, instead of ranking every photo in SQL
+    public void setTagIndex(TopTaggedPhotoIndex index) {
+        tagIndex = index;
+    }
+
+    // [Aggregates Function]
+    // REQUIRES: <aggregates> were loaded from this oracle's database, or are null
+    // MODIFIES: this
+    // EFFECTS:  makes findMonthOfBirthInfo(), findNameInfo(), and findEventStates() answer
+    //           from <aggregates> instead of grouping the tables in SQL
+    public void setAggregates(FakebookAggregates aggregates) {
+        this.aggregates = aggregates;
+    }
+
+    // [User Cache Accessor]
+    // EFFECTS: returns the cache of UserInfo instances shared by this oracle's queries
+    UserInfoCache users() {
+        return users;
+    }
+
+    // [Statement Registry Accessor]
+    // EFFECTS: returns the registry holding this oracle's prepared statements
+    FakebookStatementRegistry statements() {
+        return statements;
+    }
+
+    // [Close Function]
+    // EFFECTS: closes the oracle's prepared statements; <connection> stays open
+    @Override
+    public void close() throws SQLException {
+        statements.close();
     }
 
     @Override
@@ -33,70 +104,72 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // mechanisms for opening up a statement, executing a query, walking through results, extracting
     // data, and more things that you will need to do for the remaining nine queries
     public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        if (aggregates != null) {
+            return aggregates.findMonthOfBirthInfo();
+        }
+
+        try {
             // Step 1
             // ------------
             // * Find the total number of users with birth month info
             // * Find the month in which the most users were born
             // * Find the month in which the fewest (but at least 1) users were born
-            ResultSet rst = stmt.executeQuery(
+            int mostMonth = 0;
+            int leastMonth = 0;
+            int total = 0;
+            try (ResultSet rst = statements.prepare(
                     "SELECT COUNT(*) AS Birthed, Month_of_Birth " + // select birth months and number of uses with that birth month
                             "FROM " + UsersTable + " " + // from all users
                             "WHERE Month_of_Birth IS NOT NULL " + // for which a birth month is available
                             "GROUP BY Month_of_Birth " + // group into buckets by birth month
-                            "ORDER BY Birthed DESC, Month_of_Birth ASC"); // sort by users born in that month, descending; break ties by birth month
-
-            int mostMonth = 0;
-            int leastMonth = 0;
-            int total = 0;
-            while (rst.next()) { // step through result rows/records one by one
-                if (rst.isFirst()) { // if first record
-                    mostMonth = rst.getInt(2); //   it is the month with the most
-                }
-                if (rst.isLast()) { // if last record
-                    leastMonth = rst.getInt(2); //   it is the month with the least
+                            "ORDER BY Birthed DESC, Month_of_Birth ASC", fetchSizes[0]).executeQuery()) { // sort by users born in that month, descending; break ties by birth month
+                boolean first = true;
+                while (rst.next()) { // step through result rows/records one by one, forward only
+                    if (first) { // if first record
+                        mostMonth = rst.getInt(2); //   it is the month with the most
+                        first = false;
+                    }
+                    leastMonth = rst.getInt(2); // the last record read is the month with the least
+                    total += rst.getInt(1); // get the first field's value as an integer
                 }
-                total += rst.getInt(1); // get the first field's value as an integer
             }
             BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
 
             // Step 2
             // ------------
             // * Get the names of users born in the most popular birth month
-            rst = stmt.executeQuery(
+            PreparedStatement pstmt = statements.prepare(
                     "SELECT User_ID, First_Name, Last_Name " + // select ID, first name, and last name
                             "FROM " + UsersTable + " " + // from all users
-                            "WHERE Month_of_Birth = " + mostMonth + " " + // born in the most popular birth month
-                            "ORDER BY User_ID"); // sort smaller IDs first
-
-            while (rst.next()) {
-                info.addMostPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                            "WHERE Month_of_Birth = ? " + // born in the birth month bound below
+                            "ORDER BY User_ID", fetchSizes[0]); // sort smaller IDs first
+            pstmt.setInt(1, mostMonth); // bind the most popular birth month
+            try (ResultSet rst = pstmt.executeQuery()) {
+                while (rst.next()) {
+                    info.addMostPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                }
             }
 
             // Step 3
             // ------------
             // * Get the names of users born in the least popular birth month
-            rst = stmt.executeQuery(
-                    "SELECT User_ID, First_Name, Last_Name " + // select ID, first name, and last name
-                            "FROM " + UsersTable + " " + // from all users
-                            "WHERE Month_of_Birth = " + leastMonth + " " + // born in the least popular birth month
-                            "ORDER BY User_ID"); // sort smaller IDs first
-
-            while (rst.next()) {
-                info.addLeastPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+            pstmt.setInt(1, leastMonth); // same statement, now bound to the least popular birth month
+            try (ResultSet rst = pstmt.executeQuery()) {
+                while (rst.next()) {
+                    info.addLeastPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                }
             }
 
             // Step 4
             // ------------
-            // * Close resources being used
-            rst.close();
-            stmt.close(); // if you close the statement first, the result set gets closed automatically
+            // * The result sets are closed by their try blocks; the statements stay open in
+            //   the registry and are reused by the next call
 
             return info;
 
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            propagate(e);
             return new BirthMonthInfo(-1, -1, -1);
         }
     }
@@ -109,8 +182,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (C) The first name held by the most users
     //        (D) The number of users whose first name is that identified in (C)
     public FirstNameInfo findNameInfo() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -125,55 +197,69 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 info.setCommonNameCount(42);
                 return info;
             */
+            if (aggregates != null) {
+                return aggregates.findNameInfo();
+            }
             FirstNameInfo info = new FirstNameInfo();
 
-            // Query for longest names (A)
-            ResultSet rstLong = stmt.executeQuery(
-                    "SELECT DISTINCT FIRST_NAME " +
+            // One GROUP BY over the users: window functions over the groups find the
+            // longest and shortest lengths and the highest count, so that the table is
+            // scanned once and only the names that qualify for (A), (B), or (C) come back;
+            // users without a first name have no length and are left out
+            List<String> longNames = new ArrayList<String>();
+            List<String> shortNames = new ArrayList<String>();
+            List<String> commonNames = new ArrayList<String>();
+            long maxCount = 0;
+            try (ResultSet rst = statements.prepare(
+                    "SELECT FIRST_NAME, NAME_LENGTH, NAME_COUNT, LONGEST, SHORTEST, MOST " +
+                    "FROM (" +
+                    "SELECT FIRST_NAME, LENGTH(FIRST_NAME) AS NAME_LENGTH, COUNT(*) AS NAME_COUNT, " +
+                    "MAX(LENGTH(FIRST_NAME)) OVER () AS LONGEST, " +
+                    "MIN(LENGTH(FIRST_NAME)) OVER () AS SHORTEST, " +
+                    "MAX(COUNT(*)) OVER () AS MOST " +
                     "FROM " + UsersTable + " " +
-                    "WHERE LENGTH(FIRST_NAME) = (SELECT MAX(LENGTH(FIRST_NAME)) FROM " + UsersTable + " ) " +
-                    "ORDER BY FIRST_NAME");
-            while (rstLong.next()) {
-                info.addLongName(rstLong.getString(1));
+                    "WHERE FIRST_NAME IS NOT NULL " +
+                    "GROUP BY FIRST_NAME) N " +
+                    "WHERE NAME_LENGTH = LONGEST OR NAME_LENGTH = SHORTEST OR NAME_COUNT = MOST",
+                    fetchSizes[1]).executeQuery()) {
+                while (rst.next()) {
+                    String name = rst.getString(1);
+                    int length = rst.getInt(2);
+                    long count = rst.getLong(3);
+                    if (length == rst.getInt(4)) {
+                        longNames.add(name);
+                    }
+                    if (length == rst.getInt(5)) {
+                        shortNames.add(name);
+                    }
+                    if (count == rst.getLong(6)) {
+                        commonNames.add(name);
+                        maxCount = count;
+                    }
+                }
             }
 
-            // Query for shortest names (B)
-            ResultSet rstShort = stmt.executeQuery(
-                    "SELECT DISTINCT FIRST_NAME " +
-                    "FROM " + UsersTable + " " +
-                    "WHERE LENGTH(FIRST_NAME) = (SELECT MIN(LENGTH(FIRST_NAME)) FROM " + UsersTable + " ) " +
-                    "ORDER BY FIRST_NAME");
-            while (rstShort.next()) {
-                info.addShortName(rstShort.getString(1));
+            Collections.sort(longNames);
+            Collections.sort(shortNames);
+            Collections.sort(commonNames);
+            for (String name : longNames) {
+                info.addLongName(name);
             }
-            
-            // Query for most common name or names (C)
-            // First, find the highest occurrence count
-            ResultSet rstCount = stmt.executeQuery(
-                    "SELECT FIRST_NAME, COUNT(*) AS COUNT " +
-                    "FROM " + UsersTable + " " +
-                    "GROUP BY FIRST_NAME " +
-                    "ORDER BY COUNT DESC, FIRST_NAME");
-            long maxCount = 0;
-            if (rstCount.next()) {
-                maxCount = rstCount.getLong(2);
-                info.addCommonName(rstCount.getString(1));
+            for (String name : shortNames) {
+                info.addShortName(name);
+            }
+            for (String name : commonNames) {
+                info.addCommonName(name);
+            }
+            if (maxCount > 0) {
                 info.setCommonNameCount(maxCount);
-                //if tie, remaining names and their count added below
-                while (rstCount.next() && rstCount.getLong(2) == maxCount) {
-                    info.addCommonName(rstCount.getString(1));
-                }
             }
 
-            rstLong.close();
-            rstShort.close();
-            rstCount.close();
-            stmt.close(); 
-
             return info;
 
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            propagate(e);
             return new FirstNameInfo();
         }
     }
@@ -188,43 +274,60 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
-            /*
-                EXAMPLE DATA STRUCTURE USAGE
-                ============================================
-                UserInfo u1 = new UserInfo(15, "Abraham", "Lincoln");
-                UserInfo u2 = new UserInfo(39, "Margaret", "Thatcher");
-                results.add(u1);
-                results.add(u2);
-            */
+        /*
+            EXAMPLE DATA STRUCTURE USAGE
+            ============================================
+            UserInfo u1 = new UserInfo(15, "Abraham", "Lincoln");
+            UserInfo u2 = new UserInfo(39, "Margaret", "Thatcher");
+            results.add(u1);
+            results.add(u2);
+        */
+        lonelyUsers(results::add);
+        return results;
+    }
 
-            ResultSet rst = stmt.executeQuery(
-                    "SELECT U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
-                       "FROM " + UsersTable + " U " +
-                       "WHERE NOT EXISTS (" +
-                       "SELECT * FROM " + FriendsTable + " F " +
-                       "WHERE F.USER1_ID = U.USER_ID OR F.USER2_ID = U.USER_ID" +
-                       ") " +
-                       "ORDER BY U.USER_ID ASC");
-            
+    @Override
+    // Streaming Query 2
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: passes the number of users found by lonelyUsers() and then each of them to
+    //          <consumer> as soon as its row is read, and returns the number of users passed
+    public <E extends Exception> long lonelyUsers(FakebookConsumer<? super UserInfo, E> consumer)
+            throws SQLException, E {
+        long count = 0;
+        try (ResultSet rst = statements.prepare(counted(lonelyUsersQuery(), "USER_ID"),
+                fetchSizes[2]).executeQuery()) {
             while (rst.next()) {
+                if (count == 0) {
+                    consumer.begin(rst.getLong("RESULT_COUNT"));
+                }
                 long id = rst.getLong("USER_ID");
                 String firstName = rst.getString("FIRST_NAME");
                 String lastName = rst.getString("LAST_NAME");
-                UserInfo user = new UserInfo(id, firstName, lastName);
-                results.add(user);
-            }     
-            
-            rst.close();
-            stmt.close();
-
-            return results;
-
+                consumer.accept(new UserInfo(id, firstName, lastName));
+                count++;
+            }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
-            return results;
+            propagate(e);
+        }
+        if (count == 0) {
+            consumer.begin(0);
         }
+        return count;
+    }
+
+    @Override
+    public long countLonelyUsers() throws SQLException {
+        return count(lonelyUsersQuery(), fetchSizes[2]);
+    }
+
+    private String lonelyUsersQuery() {
+        return "SELECT U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
+               "FROM " + UsersTable + " U " +
+               "WHERE NOT EXISTS (" +
+               "SELECT * FROM " + FriendsTable + " F " +
+               "WHERE F.USER1_ID = U.USER_ID OR F.USER2_ID = U.USER_ID" +
+               ") ";
     }
 
     @Override
@@ -235,41 +338,60 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
-            /*
-                EXAMPLE DATA STRUCTURE USAGE
-                ============================================
-                UserInfo u1 = new UserInfo(9, "Meryl", "Streep");
-                UserInfo u2 = new UserInfo(104, "Tom", "Hanks");
-                results.add(u1);
-                results.add(u2);
-            */
+        /*
+            EXAMPLE DATA STRUCTURE USAGE
+            ============================================
+            UserInfo u1 = new UserInfo(9, "Meryl", "Streep");
+            UserInfo u2 = new UserInfo(104, "Tom", "Hanks");
+            results.add(u1);
+            results.add(u2);
+        */
+        liveAwayFromHome(results::add);
+        return results;
+    }
 
-            ResultSet rst = stmt.executeQuery(
-                "SELECT DISTINCT U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
-                       "FROM " + UsersTable + " U " +
-                       "JOIN " + CurrentCitiesTable + " CC ON U.USER_ID = CC.USER_ID " +
-                       "JOIN " + HometownCitiesTable + " HC ON U.USER_ID = HC.USER_ID " +
-                       "WHERE CC.CURRENT_CITY_ID != HC.HOMETOWN_CITY_ID " +
-                       "ORDER BY U.USER_ID ASC");
-            
+    @Override
+    // Streaming Query 3
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: passes the number of users found by liveAwayFromHome() and then each of
+    //          them to <consumer> as soon as its row is read, and returns the number of
+    //          users passed
+    public <E extends Exception> long liveAwayFromHome(FakebookConsumer<? super UserInfo, E> consumer)
+            throws SQLException, E {
+        long count = 0;
+        try (ResultSet rst = statements.prepare(counted(liveAwayFromHomeQuery(), "USER_ID"),
+                fetchSizes[3]).executeQuery()) {
             while (rst.next()) {
+                if (count == 0) {
+                    consumer.begin(rst.getLong("RESULT_COUNT"));
+                }
                 long id = rst.getLong("USER_ID");
                 String firstName = rst.getString("FIRST_NAME");
                 String lastName = rst.getString("LAST_NAME");
-                UserInfo user = new UserInfo(id, firstName, lastName);
-                results.add(user);
+                consumer.accept(new UserInfo(id, firstName, lastName));
+                count++;
             }
-
-            rst.close();
-            stmt.close();
-
-            return results;
         } catch (SQLException e) {
             System.err.println(e.getMessage());
-            return results;
+            propagate(e);
+        }
+        if (count == 0) {
+            consumer.begin(0);
         }
+        return count;
+    }
+
+    @Override
+    public long countLiveAwayFromHome() throws SQLException {
+        return count(liveAwayFromHomeQuery(), fetchSizes[3]);
+    }
+
+    private String liveAwayFromHomeQuery() {
+        return "SELECT DISTINCT U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
+               "FROM " + UsersTable + " U " +
+               "JOIN " + CurrentCitiesTable + " CC ON U.USER_ID = CC.USER_ID " +
+               "JOIN " + HometownCitiesTable + " HC ON U.USER_ID = HC.USER_ID " +
+               "WHERE CC.CURRENT_CITY_ID != HC.HOMETOWN_CITY_ID ";
     }
 
     @Override
@@ -282,8 +404,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
         FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -297,60 +418,121 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 tp.addTaggedUser(u3);
                 results.add(tp);
             */
-            String query = "SELECT P.PHOTO_ID, P.ALBUM_ID, P.PHOTO_LINK, A.ALBUM_NAME, COUNT(T.TAG_PHOTO_ID) AS TAG_COUNT " +
+            if (tagIndex != null && num <= tagIndex.capacity()) {
+                return taggedPhotos(tagIndex.top(num));
+            }
+
+            // The top <num> photos and all of their tagged users come back in one result,
+            // ordered photo by photo, so the TaggedPhotoInfo objects are built in one pass
+            String query = "SELECT TP.PHOTO_ID, TP.ALBUM_ID, TP.PHOTO_LINK, TP.ALBUM_NAME, " +
+                       "U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
+                       "FROM (" +
+                       "SELECT P.PHOTO_ID, P.ALBUM_ID, P.PHOTO_LINK, A.ALBUM_NAME, COUNT(T.TAG_PHOTO_ID) AS TAG_COUNT " +
                        "FROM " + PhotosTable + " P " +
                        "JOIN " + TagsTable + " T ON P.PHOTO_ID = T.TAG_PHOTO_ID " +
                        "JOIN " + AlbumsTable + " A ON P.ALBUM_ID = A.ALBUM_ID " +
                        "GROUP BY P.PHOTO_ID, P.ALBUM_ID, P.PHOTO_LINK, A.ALBUM_NAME " +
                        "ORDER BY TAG_COUNT DESC, P.PHOTO_ID ASC " +
-                       "FETCH FIRST " + num + " ROWS ONLY";
+                       "FETCH FIRST ? ROWS ONLY) TP " +
+                       "JOIN " + TagsTable + " T ON TP.PHOTO_ID = T.TAG_PHOTO_ID " +
+                       "LEFT JOIN " + UsersTable + " U ON T.TAG_SUBJECT_ID = U.USER_ID " +
+                       "ORDER BY TP.TAG_COUNT DESC, TP.PHOTO_ID ASC, U.USER_ID ASC";
 
-            ResultSet rsPhotos = stmt.executeQuery(query);
-            
-            // Process each photo
-            while (rsPhotos.next()) {
-                long photoId = rsPhotos.getLong(1);
-                long albumId = rsPhotos.getLong(2);
-                String photoLink = rsPhotos.getString(3);
-                String albumName = rsPhotos.getString(4);
-                
-                // Create PhotoInfo object
-                PhotoInfo photoInfo = new PhotoInfo(photoId, albumId, photoLink, albumName);
-                TaggedPhotoInfo taggedPhotoInfo = new TaggedPhotoInfo(photoInfo);
-                
-                // Query to get tagged users for the current photo
-                String queryUsers = "SELECT U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
-                                    "FROM " + TagsTable + " T " +
-                                    "JOIN " + UsersTable + " U ON T.Tag_subject_ID = U.USER_ID " +
-                                    "WHERE T.TAG_PHOTO_ID = " + photoId + " " +
-                                    "ORDER BY U.USER_ID ASC";
-                try (Statement stmt2 = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
-                    ResultSet rsUsers = stmt2.executeQuery(queryUsers);
-                
-                // Process each tagged user
-                    while (rsUsers.next()) {
-                        long userId = rsUsers.getLong(1);
-                        String firstName = rsUsers.getString(2);
-                        String lastName = rsUsers.getString(3);
-                        
-                        taggedPhotoInfo.addTaggedUser(new UserInfo(userId, firstName, lastName));
-                    } 
-                results.add(taggedPhotoInfo);
-                rsUsers.close();
+            PreparedStatement pstmt = statements.prepare(query, fetchSizes[4]);
+            pstmt.setInt(1, num);
+            try (ResultSet rst = pstmt.executeQuery()) {
+                TaggedPhotoInfo taggedPhotoInfo = null;
+                long currentPhotoId = 0;
+                while (rst.next()) {
+                    long photoId = rst.getLong(1);
+                    if (taggedPhotoInfo == null || photoId != currentPhotoId) {
+                        // first row of the next photo
+                        PhotoInfo photoInfo = new PhotoInfo(photoId, rst.getLong(2), rst.getString(3), rst.getString(4));
+                        taggedPhotoInfo = new TaggedPhotoInfo(photoInfo);
+                        currentPhotoId = photoId;
+                        results.add(taggedPhotoInfo);
+                    }
+
+                    rst.getLong(5);
+                    if (!rst.wasNull()) { // tag of a user missing from the Users table
+                        taggedPhotoInfo.addTaggedUser(user(rst, 5));
+                    }
+                }
             }
-        }
-            rsPhotos.close();
-            stmt.close();
 
             return results;
-           
+
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            propagate(e);
             return results;
         }
     }
- 
+
+    // [Tagged Photos Function]
+    // EFFECTS: returns a TaggedPhotoInfo for each photo in <photoIds>, in the same order,
+    //          with its tagged users in increasing ID order; the photos are looked up
+    //          MaxIdsPerQuery at a time
+    private FakebookArrayList<TaggedPhotoInfo> taggedPhotos(long[] photoIds) throws SQLException {
+        FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
+        Map<Long, TaggedPhotoInfo> photos = new HashMap<Long, TaggedPhotoInfo>();
+        for (int first = 0; first < photoIds.length; first += MaxIdsPerQuery) {
+            int chunk = Math.min(MaxIdsPerQuery, photoIds.length - first);
+
+            // Pad the IN list to a power of two with the last ID so only a few distinct
+            // SQL texts are ever sent
+            int slots = Integer.highestOneBit(chunk);
+            if (slots < chunk) {
+                slots *= 2;
+            }
+            StringBuilder idList = new StringBuilder();
+            for (int idx = 0; idx < slots; idx++) {
+                idList.append(idx == 0 ? "?" : ", ?");
+            }
+
+            String query = "SELECT P.PHOTO_ID, P.ALBUM_ID, P.PHOTO_LINK, A.ALBUM_NAME, " +
+                       "U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
+                       "FROM " + PhotosTable + " P " +
+                       "JOIN " + AlbumsTable + " A ON P.ALBUM_ID = A.ALBUM_ID " +
+                       "JOIN " + TagsTable + " T ON P.PHOTO_ID = T.TAG_PHOTO_ID " +
+                       "LEFT JOIN " + UsersTable + " U ON T.TAG_SUBJECT_ID = U.USER_ID " +
+                       "WHERE P.PHOTO_ID IN (" + idList + ") " +
+                       "ORDER BY P.PHOTO_ID ASC, U.USER_ID ASC";
+
+            PreparedStatement pstmt = statements.prepare(query, fetchSizes[4]);
+            for (int idx = 0; idx < slots; idx++) {
+                pstmt.setLong(idx + 1, photoIds[first + Math.min(idx, chunk - 1)]);
+            }
+
+            try (ResultSet rst = pstmt.executeQuery()) {
+                TaggedPhotoInfo taggedPhotoInfo = null;
+                long currentPhotoId = 0;
+                while (rst.next()) {
+                    long photoId = rst.getLong(1);
+                    if (taggedPhotoInfo == null || photoId != currentPhotoId) {
+                        PhotoInfo photoInfo = new PhotoInfo(photoId, rst.getLong(2), rst.getString(3), rst.getString(4));
+                        taggedPhotoInfo = new TaggedPhotoInfo(photoInfo);
+                        currentPhotoId = photoId;
+                        photos.put(photoId, taggedPhotoInfo);
+                    }
+
+                    rst.getLong(5);
+                    if (!rst.wasNull()) { // tag of a user missing from the Users table
+                        taggedPhotoInfo.addTaggedUser(user(rst, 5));
+                    }
+                }
+            }
+        }
+
+        for (long photoId : photoIds) {
+            TaggedPhotoInfo taggedPhotoInfo = photos.get(photoId);
+            if (taggedPhotoInfo != null) { // deleted since the index last heard of it
+                results.add(taggedPhotoInfo);
+            }
+        }
+        return results;
+    }
+
   @Override
     // Query 5
     // -----------------------------------------------------------------------------------
@@ -366,8 +548,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
         FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -383,7 +564,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
             "U2.USER_ID AS USER2_ID, U2.FIRST_NAME AS USER2_FIRST, U2.LAST_NAME AS USER2_LAST, U2.YEAR_OF_BIRTH AS USER2_YEAR, " +
             "COUNT(DISTINCT T1.TAG_PHOTO_ID) AS COMMON_PHOTOS " +
             "FROM " + UsersTable + " U1 " +
-            "JOIN " + UsersTable + " U2 ON U1.GENDER = U2.GENDER AND ABS(U1.YEAR_OF_BIRTH - U2.YEAR_OF_BIRTH) <= " + yearDiff + " AND U1.USER_ID < U2.USER_ID " +
+            "JOIN " + UsersTable + " U2 ON U1.GENDER = U2.GENDER AND ABS(U1.YEAR_OF_BIRTH - U2.YEAR_OF_BIRTH) <= ? AND U1.USER_ID < U2.USER_ID " +
             "LEFT JOIN " + FriendsTable + " F ON (U1.USER_ID = F.USER1_ID AND U2.USER_ID = F.USER2_ID) OR (U1.USER_ID = F.USER2_ID AND U2.USER_ID = F.USER1_ID) " +
             "JOIN " + TagsTable + " T1 ON U1.USER_ID = T1.TAG_SUBJECT_ID " +
             "JOIN " + TagsTable + " T2 ON U2.USER_ID = T2.TAG_SUBJECT_ID AND T1.TAG_PHOTO_ID = T2.TAG_PHOTO_ID " +
@@ -391,57 +572,90 @@ public final class StudentFakebookOracle extends FakebookOracle {
             "GROUP BY U1.USER_ID, U1.FIRST_NAME, U1.LAST_NAME, U1.YEAR_OF_BIRTH, U2.USER_ID, U2.FIRST_NAME, U2.LAST_NAME, U2.YEAR_OF_BIRTH " +
             "HAVING COUNT(DISTINCT T1.TAG_PHOTO_ID) > 0 " +
             "ORDER BY COMMON_PHOTOS DESC, U1.USER_ID ASC, U2.USER_ID ASC " +
-            "FETCH FIRST " + num + " ROWS ONLY";
+            "FETCH FIRST ? ROWS ONLY";
 
             // Execute the query
-            ResultSet pairsRS = stmt.executeQuery(findPairsQuery);
+            PreparedStatement pairsStmt = statements.prepare(findPairsQuery, fetchSizes[5]);
+            pairsStmt.setInt(1, yearDiff);
+            pairsStmt.setInt(2, num);
 
-            // Step 2: For each pair, find the photos in which they are both tagged
-            
+            // Step 1: Find the top <num> pairs, keyed by their two user IDs
+            List<long[]> pairIds = new ArrayList<long[]>();
+            Map<String, MatchPair> pairs = new HashMap<String, MatchPair>();
+            try (ResultSet pairsRS = pairsStmt.executeQuery()) {
+                while (pairsRS.next()) {
+                    UserInfo user1 = user(pairsRS, 1);
+                    UserInfo user2 = user(pairsRS, 5);
+                    int user1Year = pairsRS.getInt(4);
+                    int user2Year = pairsRS.getInt(8);
 
-            // Prepare the statement for finding shared photos outside the loop
-            // PreparedStatement pstmt = oracle.prepareStatement(findPhotosQuery);
+                    long user1Id = pairsRS.getLong(1);
+                    long user2Id = pairsRS.getLong(5);
 
-            while (pairsRS.next()) {
-                // Extract user info
-                UserInfo user1 = new UserInfo(pairsRS.getLong(1), pairsRS.getString(2), pairsRS.getString(3));
-                UserInfo user2 = new UserInfo(pairsRS.getLong(5), pairsRS.getString(6), pairsRS.getString(7));
-                int user1Year = pairsRS.getInt(4);
-                int user2Year = pairsRS.getInt(8);
-    
-                long user1Id = pairsRS.getLong(1);
-                long user2Id = pairsRS.getLong(5);
+                    MatchPair mp = new MatchPair(user1, user1Year, user2, user2Year);
+                    pairIds.add(new long[] { user1Id, user2Id });
+                    pairs.put(pairKey(user1Id, user2Id), mp);
+                    results.add(mp);
+                }
+            }
 
-                // Set parameters for the prepared statement
-                String findPhotosQuery = 
-                "SELECT DISTINCT P.PHOTO_ID, P.ALBUM_ID, P.PHOTO_LINK, A.ALBUM_NAME " +
+            // Step 2: Find the photos in which each pair is tagged together, for up to
+            // MaxPairsPerQuery pairs per round trip
+            for (int first = 0; first < pairIds.size(); first += MaxPairsPerQuery) {
+                List<long[]> chunk = pairIds.subList(first, Math.min(pairIds.size(), first + MaxPairsPerQuery));
+
+                // Round the number of bind slots up to a power of two (padding with the last
+                // pair, which DISTINCT removes again) so only a handful of distinct SQL texts
+                // are ever sent and the server can keep reusing their cursors
+                int slots = Integer.highestOneBit(chunk.size());
+                if (slots < chunk.size()) {
+                    slots *= 2;
+                }
+
+                StringBuilder pairList = new StringBuilder();
+                for (int idx = 0; idx < slots; idx++) {
+                    pairList.append(idx == 0 ? "(?, ?)" : ", (?, ?)");
+                }
+                String findPhotosQuery =
+                "SELECT DISTINCT T1.TAG_SUBJECT_ID, T2.TAG_SUBJECT_ID, P.PHOTO_ID, P.ALBUM_ID, P.PHOTO_LINK, A.ALBUM_NAME " +
                 "FROM " + TagsTable + " T1 " +
                 "JOIN " + TagsTable + " T2 ON T1.TAG_PHOTO_ID = T2.TAG_PHOTO_ID AND T1.TAG_SUBJECT_ID <> T2.TAG_SUBJECT_ID " +
                 "JOIN " + PhotosTable + " P ON T1.TAG_PHOTO_ID = P.PHOTO_ID " +
                 "JOIN " + AlbumsTable + " A ON P.ALBUM_ID = A.ALBUM_ID " +
-                "WHERE T1.TAG_SUBJECT_ID = " + Long.toString(user1Id) + " AND T2.TAG_SUBJECT_ID = " + Long.toString(user2Id) + " " +
-                "ORDER BY P.PHOTO_ID ASC";
-
-                // Execute the prepared statement
-                MatchPair mp = new MatchPair(user1, user1Year, user2, user2Year);
-                try (Statement stmt2 = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
-                    ResultSet photosRS = stmt2.executeQuery(findPhotosQuery);
+                "WHERE (T1.TAG_SUBJECT_ID, T2.TAG_SUBJECT_ID) IN (" + pairList + ") " +
+                "ORDER BY T1.TAG_SUBJECT_ID ASC, T2.TAG_SUBJECT_ID ASC, P.PHOTO_ID ASC";
+
+                PreparedStatement pstmt = statements.prepare(findPhotosQuery, fetchSizes[5]);
+                for (int idx = 0; idx < slots; idx++) {
+                    long[] pair = chunk.get(Math.min(idx, chunk.size() - 1));
+                    pstmt.setLong(2 * idx + 1, pair[0]);
+                    pstmt.setLong(2 * idx + 2, pair[1]);
+                }
+
+                try (ResultSet photosRS = pstmt.executeQuery()) {
                     while (photosRS.next()) {
-                    PhotoInfo photo = new PhotoInfo(photosRS.getLong(1), photosRS.getLong(2), photosRS.getString(3), photosRS.getString(4));
-                    mp.addSharedPhoto(photo);
+                        MatchPair mp = pairs.get(pairKey(photosRS.getLong(1), photosRS.getLong(2)));
+                        PhotoInfo photo = new PhotoInfo(photosRS.getLong(3), photosRS.getLong(4), photosRS.getString(5), photosRS.getString(6));
+                        mp.addSharedPhoto(photo);
                     }
                 }
-                results.add(mp);
             }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            propagate(e);
             return results;
         }
 
         return results;
     }
 
+    // [Pair Key Function]
+    // EFFECTS: returns the key under which the pair of users <user1Id> and <user2Id> is
+    //          stored while their shared photos are being collected
+    private static String pairKey(long user1Id, long user2Id) {
+        return user1Id + ":" + user2Id;
+    }
+
     @Override
     // Query 6
     // -----------------------------------------------------------------------------------
@@ -453,8 +667,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
         FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -466,61 +679,57 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 results.add(up);
             */
 
-           String query1 = "CREATE VIEW NotFriends AS " +
-                    "SELECT U1.USER_ID AS user1, U1.FIRST_NAME AS first1, U1.LAST_NAME As last1, U2.USER_ID AS user2, U2.FIRST_NAME AS first2, U2.LAST_NAME AS last2 " +
-                    "FROM " + UsersTable + " U1, " + UsersTable + " U2 " +  
-                    "WHERE U1.user_ID < U2.user_ID AND (U1.user_id, U2.user_id) NOT IN " +
-                        "(SELECT * FROM " + FriendsTable +  " ) ";
-            String view = "CREATE VIEW PairGroup AS " +
-                    "SELECT NF.user1 AS user1, NF.first1 AS first1, NF.last1 AS last1, NF.user2 AS user2, NF.first2 AS first2, NF.last2 AS last2, F1.USER1_ID AS common1, F1.USER2_ID AS common2 " +
-                    "FROM NotFriends NF, " + FriendsTable + " F1, " + FriendsTable + " F2 " +
-                    "WHERE (NF.user1 = F1.USER1_ID AND F1.USER2_ID = F2.USER1_ID AND NF.user2 = F2.USER2_ID) OR " +
-                            "(NF.user1 = F1.USER2_ID AND F1.USER1_ID = F2.USER1_ID AND NF.user2 = F2.USER2_ID) OR " +
-                            "(NF.user1 = F1.USER1_ID AND F1.USER2_ID = F2.USER2_ID AND NF.user2 = F2.USER1_ID) OR " +
-                            "(NF.user1 = F1.USER2_ID AND F1.USER1_ID = F2.USER1_ID AND NF.user2 = F2.USER1_ID) " ;
-            String query2 = 
-                    "SELECT * FROM (SELECT PG.user1, PG.first1, PG.last1, PG.user2, PG.first2, PG.last2, COUNT(*) AS mutuals " +
-                                    "FROM PairGroup PG " +
-                                    "GROUP BY PG.user1, PG.first1, PG.last1, PG.user2, PG.first2, PG.last2 " +
-                                    "ORDER BY mutuals DESC, PG.user1 ASC) " +
-                    "WHERE ROWNUM <= " + num;
-            String query4 = "DROP VIEW PairGroup " ;
-            String query5 = "DROP VIEW NotFriends " ;            
-            stmt.executeUpdate(query1);
-            stmt.executeUpdate(view);
-            ResultSet rst = stmt.executeQuery(query2);
-            
-            while(rst.next()) {
-                long uid1 = rst.getLong(1);
-                long uid2 = rst.getLong(4);
-                UserInfo user1 = new UserInfo(rst.getLong(1),rst.getString(2),rst.getString(3));
-                UserInfo user2 = new UserInfo(rst.getLong(4), rst.getString(5), rst.getString(6));
-                UsersPair up = new UsersPair(user1, user2);
-                try (Statement stmt2 = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
-                    String query3 = "SELECT DISTINCT U3.USER_ID, U3.FIRST_NAME, U3.LAST_NAME " +
-                                    "FROM PairGroup PG " +
-                                    "JOIN " + UsersTable + " U3 ON " + uid1 + " = PG.user1 AND " + uid2 + " = PG.user2 " +
-                                    "WHERE U3.USER_ID != " + uid1 + " AND U3.USER_ID != " + uid2 + " AND " +
-                                    "(U3.USER_ID = PG.common1 OR U3.USER_ID = PG.COMMON2)" + 
-                                    "ORDER BY U3.USER_ID ASC";
-                    ResultSet rst2 = stmt2.executeQuery(query3);
-                    while(rst2.next()) {                                            
-                        UserInfo friend = new UserInfo(rst2.getLong(1), rst2.getString(2), rst2.getString(3));
-                        up.addSharedFriend(friend);
+            // AllFriends lists every friendship in both directions; Mutuals holds one row per
+            // (user1, user2, common friend) for non-friends user1 < user2. The top <num>
+            // pairs and their common friends come back together, so no views are needed and
+            // concurrent sessions do not interfere with each other
+            String query =
+                    "WITH AllFriends AS (" +
+                        "SELECT USER1_ID AS me, USER2_ID AS friend FROM " + FriendsTable + " " +
+                        "UNION ALL " +
+                        "SELECT USER2_ID AS me, USER1_ID AS friend FROM " + FriendsTable + "), " +
+                    "Mutuals AS (" +
+                        "SELECT A.me AS user1, B.me AS user2, A.friend AS common " +
+                        "FROM AllFriends A " +
+                        "JOIN AllFriends B ON A.friend = B.friend AND A.me < B.me " +
+                        "WHERE NOT EXISTS (SELECT * FROM " + FriendsTable + " F " +
+                            "WHERE F.USER1_ID = A.me AND F.USER2_ID = B.me)) " +
+                    "SELECT TP.user1, U1.FIRST_NAME, U1.LAST_NAME, TP.user2, U2.FIRST_NAME, U2.LAST_NAME, " +
+                        "U3.USER_ID, U3.FIRST_NAME, U3.LAST_NAME " +
+                    "FROM (" +
+                        "SELECT M.user1, M.user2, COUNT(*) AS mutuals " +
+                        "FROM Mutuals M " +
+                        "GROUP BY M.user1, M.user2 " +
+                        "ORDER BY mutuals DESC, M.user1 ASC, M.user2 ASC " +
+                        "FETCH FIRST ? ROWS ONLY) TP " +
+                    "JOIN Mutuals M ON M.user1 = TP.user1 AND M.user2 = TP.user2 " +
+                    "JOIN " + UsersTable + " U1 ON U1.USER_ID = TP.user1 " +
+                    "JOIN " + UsersTable + " U2 ON U2.USER_ID = TP.user2 " +
+                    "JOIN " + UsersTable + " U3 ON U3.USER_ID = M.common " +
+                    "ORDER BY TP.mutuals DESC, TP.user1 ASC, TP.user2 ASC, U3.USER_ID ASC";
+            PreparedStatement pstmt = statements.prepare(query, fetchSizes[6]);
+            pstmt.setInt(1, num);
+            try (ResultSet rst = pstmt.executeQuery()) {
+                UsersPair up = null;
+                long uid1 = 0;
+                long uid2 = 0;
+                while (rst.next()) {
+                    if (up == null || rst.getLong(1) != uid1 || rst.getLong(4) != uid2) {
+                        // first row of the next pair
+                        uid1 = rst.getLong(1);
+                        uid2 = rst.getLong(4);
+                        UserInfo user1 = user(rst, 1);
+                        UserInfo user2 = user(rst, 4);
+                        up = new UsersPair(user1, user2);
+                        results.add(up);
                     }
-                results.add(up);
-                rst2.close();
-                stmt2.close();                     
-                }      
+                    up.addSharedFriend(user(rst, 7));
+                }
             }
-            stmt.executeUpdate(query4);
-            stmt.executeUpdate(query5);
-            rst.close();                       
-            stmt.close();
             return results;
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            propagate(e);
            return results;
         }
     }
@@ -532,8 +741,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (B) Find the number of events held in the states identified in (A)
     
     public EventStateInfo findEventStates() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
             
                 EXAMPLE DATA STRUCTURE USAGE
@@ -544,6 +752,9 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 info.addState("New Hampshire");
                 return info;
             */
+            if (aggregates != null) {
+                return aggregates.findEventStates();
+            }
             String query = 
                 "SELECT C.STATE_NAME, COUNT(*) AS num " +
                 "FROM " + EventsTable + " E " +
@@ -551,26 +762,26 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 "GROUP BY C.STATE_NAME " +
                 "ORDER BY num DESC " ;                
 
-            ResultSet rs = stmt.executeQuery(query);
             EventStateInfo info = null;
             long maxEvents = 0;
-            while (rs.next()) {
-                if(info == null) {
-                    maxEvents = rs.getLong(2);
-                    info = new EventStateInfo(maxEvents);
-                }
-                if(rs.getLong(2) == maxEvents) {
-                    info.addState(rs.getString(1));
+            try (ResultSet rs = statements.prepare(query, fetchSizes[7]).executeQuery()) {
+                while (rs.next()) {
+                    if(info == null) {
+                        maxEvents = rs.getLong(2);
+                        info = new EventStateInfo(maxEvents);
+                    }
+                    if(rs.getLong(2) == maxEvents) {
+                        info.addState(rs.getString(1));
+                    }
                 }
             }
             if(info == null) {
                 info = new EventStateInfo(-1);
             }
-            rs.close();
-            stmt.close();
             return info;
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            propagate(e);
             return new EventStateInfo(-1);
         }
     }
@@ -582,9 +793,29 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //            with User ID <userID>
     //        (B) Find the ID, first name, and last name of the youngest friend of the user
     //            with User ID <userID>
+    //
+    // Friends born on the same date are ranked by the larger user ID, both for the oldest
+    // and for the youngest, as in the bulk version below.
     public AgeInfo findAgeInfo(long userID) throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        // Friends are stored once as (smaller ID, larger ID), so look in both columns; the
+        // user ID is a bind variable, so every call shares one cursor and creates no views.
+        // The friends are ranked on the server with the same ROW_NUMBERs as the bulk
+        // version, and only the first-ranked ones are sent back
+        String query = "SELECT USER_ID, FIRST_NAME, LAST_NAME, oldest_rank, youngest_rank " +
+                        "FROM (" +
+                            "SELECT U.USER_ID, U.FIRST_NAME, U.LAST_NAME, " +
+                            "ROW_NUMBER() OVER (ORDER BY U.year_of_birth ASC, U.month_of_birth ASC, " +
+                                "U.day_of_birth ASC, U.USER_ID DESC) AS oldest_rank, " +
+                            "ROW_NUMBER() OVER (ORDER BY U.year_of_birth DESC, U.month_of_birth DESC, " +
+                                "U.day_of_birth DESC, U.USER_ID DESC) AS youngest_rank " +
+                            "FROM " + UsersTable + " U " +
+                            "WHERE U.USER_ID IN (" +
+                                "SELECT F1.USER2_ID FROM " + FriendsTable + " F1 WHERE F1.USER1_ID = ? " +
+                                "UNION " +
+                                "SELECT F2.USER1_ID FROM " + FriendsTable + " F2 WHERE F2.USER2_ID = ?)) Ranked " +
+                        "WHERE oldest_rank = 1 OR youngest_rank = 1";
+
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -592,61 +823,132 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 UserInfo young = new UserInfo(80000000, "Neil", "deGrasse Tyson");
                 return new AgeInfo(old, young);
             */
-            String dropview = "DROP VIEW AllFriends";
-            String dropview1 = "DROP VIEW AF1";
-            String dropview2 = "DROP VIEW AF2";
-           String useridstring = Long.toString(userID);
-           String query = "CREATE VIEW AF1 AS " +
-                            "SELECT F1.user2_id as fid " +
-                            "FROM " + FriendsTable + " F1 " +
-                            "WHERE F1.user1_id = " + useridstring;
-            String view1 = "CREATE VIEW AF2 AS " +
-                            "SELECT F2.user1_id as fid " +
-                            "FROM " + FriendsTable + " F2 " +
-                            "WHERE F2.user1_id = " + useridstring;
-            String view3 = "CREATE VIEW AllFriends AS " +
-                            "SELECT * FROM AF1 UNION SELECT * FROM AF2";
-            stmt.executeUpdate(query);
-            stmt.executeUpdate(view1);
-            stmt.executeUpdate(view3);
-            String query2 = "SELECT U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
-                            "FROM AllFriends AF " +
-                            "JOIN " + UsersTable + " U ON AF.fid = U.USER_ID " +
-                            "ORDER BY U.year_of_birth, U.month_of_birth, U.day_of_birth ASC";
-            ResultSet rst = stmt.executeQuery(query2);
+            PreparedStatement pstmt = statements.prepare(query, fetchSizes[8]);
+            pstmt.setLong(1, userID);
+            pstmt.setLong(2, userID);
             Long oldID = 99999999L;
             Long youngID = 999999999L;
             String oldF = "";
             String oldL = "";
             String youngF = "";
             String youngL =  "";
-            while(rst.next()) {
-                if (rst.isFirst()) {
-                    oldID = rst.getLong(1);
-                    oldF = rst.getString(2);
-                    oldL = rst.getString(3);
+            try (ResultSet rst = pstmt.executeQuery()) {
+                while(rst.next()) {
+                    // at most two rows, in no particular order; one friend may be both
+                    if (rst.getInt(4) == 1) {
+                        oldID = rst.getLong(1);
+                        oldF = rst.getString(2);
+                        oldL = rst.getString(3);
+                    }
+                    if (rst.getInt(5) == 1) {
+                        youngID = rst.getLong(1);
+                        youngF = rst.getString(2);
+                        youngL = rst.getString(3);
+                    }
                 }
-                if (rst.isLast()) {
-                    youngID = rst.getLong(1);
-                    youngF = rst.getString(2);
-                    youngL = rst.getString(3);
-                }                
             }
             UserInfo old = new UserInfo(oldID, oldF, oldL);
             UserInfo young = new UserInfo(youngID, youngF, youngL);
-            stmt.executeUpdate(dropview);
-            stmt.executeUpdate(dropview1);
-            stmt.executeUpdate(dropview2);
-            rst.close();
-            stmt.close();
             return new AgeInfo(old,young);
             
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            propagate(e);
             return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
         }
     }
 
+    @Override
+    // Bulk Query 8
+    // -----------------------------------------------------------------------------------
+    // GOALS: (A) For every user in <userIDs>, find the ID, first name, and last name of
+    //            that user's oldest and youngest friend
+    //
+    // The users are looked up MaxIdsPerQuery at a time. Each round trip returns at most two
+    // rows per user: the server ranks every user's friends by birth date in both directions
+    // (ties go to the larger user ID) and only the first-ranked friends are sent back.
+    // Users without friends get the same placeholder AgeInfo as findAgeInfo(long).
+    public Map<Long, AgeInfo> findAgeInfo(Collection<Long> userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new HashMap<Long, AgeInfo>();
+        long[] ids = new long[userIDs.size()];
+        int count = 0;
+        for (Long userID : new LinkedHashSet<Long>(userIDs)) {
+            ids[count++] = requireUserID(userID);
+        }
+
+        try {
+            for (int first = 0; first < count; first += MaxIdsPerQuery) {
+                int chunk = Math.min(MaxIdsPerQuery, count - first);
+
+                // Pad the IN lists to a power of two with the last ID so only a few distinct
+                // SQL texts are ever sent
+                int slots = Integer.highestOneBit(chunk);
+                if (slots < chunk) {
+                    slots *= 2;
+                }
+                StringBuilder idList = new StringBuilder();
+                for (int idx = 0; idx < slots; idx++) {
+                    idList.append(idx == 0 ? "?" : ", ?");
+                }
+
+                String query =
+                        "SELECT owner, USER_ID, FIRST_NAME, LAST_NAME, oldest_rank, youngest_rank " +
+                        "FROM (" +
+                            "SELECT AF.owner, U.USER_ID, U.FIRST_NAME, U.LAST_NAME, " +
+                            "ROW_NUMBER() OVER (PARTITION BY AF.owner ORDER BY U.year_of_birth ASC, " +
+                                "U.month_of_birth ASC, U.day_of_birth ASC, U.USER_ID DESC) AS oldest_rank, " +
+                            "ROW_NUMBER() OVER (PARTITION BY AF.owner ORDER BY U.year_of_birth DESC, " +
+                                "U.month_of_birth DESC, U.day_of_birth DESC, U.USER_ID DESC) AS youngest_rank " +
+                            "FROM (" +
+                                "SELECT F1.USER1_ID AS owner, F1.USER2_ID AS friend FROM " + FriendsTable + " F1 " +
+                                "WHERE F1.USER1_ID IN (" + idList + ") " +
+                                "UNION ALL " +
+                                "SELECT F2.USER2_ID AS owner, F2.USER1_ID AS friend FROM " + FriendsTable + " F2 " +
+                                "WHERE F2.USER2_ID IN (" + idList + ")) AF " +
+                            "JOIN " + UsersTable + " U ON U.USER_ID = AF.friend) Ranked " +
+                        "WHERE oldest_rank = 1 OR youngest_rank = 1";
+
+                Map<Long, UserInfo> oldest = new HashMap<Long, UserInfo>();
+                Map<Long, UserInfo> youngest = new HashMap<Long, UserInfo>();
+                PreparedStatement pstmt = statements.prepare(query, fetchSizes[8]);
+                for (int idx = 0; idx < slots; idx++) {
+                    long userID = ids[first + Math.min(idx, chunk - 1)];
+                    pstmt.setLong(idx + 1, userID);
+                    pstmt.setLong(slots + idx + 1, userID);
+                }
+
+                try (ResultSet rst = pstmt.executeQuery()) {
+                    while (rst.next()) {
+                        long owner = rst.getLong(1);
+                        UserInfo friend = user(rst, 2);
+                        if (rst.getInt(5) == 1) {
+                            oldest.put(owner, friend);
+                        }
+                        if (rst.getInt(6) == 1) {
+                            youngest.put(owner, friend);
+                        }
+                    }
+                }
+
+                for (int idx = first; idx < first + chunk; idx++) {
+                    UserInfo old = oldest.get(ids[idx]);
+                    UserInfo young = youngest.get(ids[idx]);
+                    if (old == null) {
+                        old = new UserInfo(99999999L, "", "");
+                        young = new UserInfo(999999999L, "", "");
+                    }
+                    results.put(ids[idx], new AgeInfo(old, young));
+                }
+            }
+            return results;
+
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            propagate(e);
+            return results;
+        }
+    }
+
     @Override
     // Query 9
     // -----------------------------------------------------------------------------------
@@ -658,53 +960,131 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
         FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
-            /*
-                EXAMPLE DATA STRUCTURE USAGE
-                ============================================
-                UserInfo u1 = new UserInfo(81023, "Kim", "Kardashian");
-                UserInfo u2 = new UserInfo(17231, "Kourtney", "Kardashian");
-                SiblingInfo si = new SiblingInfo(u1, u2);
-                results.add(si);
-            */
-           String queryS = "CREATE VIEW MatchTable AS " +
-           "SELECT U1.USER_ID AS user1, U2.USER_ID as user2 " +
-            "FROM " + UsersTable + " U1, " + UsersTable + " U2 " +
-            "WHERE U1.LAST_NAME = U2.LAST_NAME  AND (ABS(U1.year_of_birth - U2.year_of_birth) < 10) " +
-            "INTERSECT " +
-            "SELECT H1.USER_ID AS user1, H2.USER_ID AS user2 " +
-            "FROM " + HometownCitiesTable + " H1, " + HometownCitiesTable + " H2 " +
-            "WHERE H1.HOMETOWN_CITY_ID = H2.HOMETOWN_CITY_ID " +
-            "INTERSECT " +
-            "SELECT * FROM " + FriendsTable + "" ;
-            stmt.executeUpdate(queryS);
-            String queryR = "SELECT U1.USER_ID AS u1id, U1.First_Name as u1fname, U1.Last_Name as u1lname, U2.USER_ID AS u2id, U2.First_Name as u2fname, U2.Last_Name as u2lname " +
-                            "FROM " + UsersTable + " U1, " + UsersTable + " U2, MatchTable Ms " +
-                            "WHERE Ms.user1 = U1.USER_ID AND Ms.user2 = U2.USER_ID" ;
-            ResultSet rs2 = stmt.executeQuery(queryR);
+        /*
+            EXAMPLE DATA STRUCTURE USAGE
+            ============================================
+            UserInfo u1 = new UserInfo(81023, "Kim", "Kardashian");
+            UserInfo u2 = new UserInfo(17231, "Kourtney", "Kardashian");
+            SiblingInfo si = new SiblingInfo(u1, u2);
+            results.add(si);
+        */
+        findPotentialSiblings(results::add);
+        return results;
+    }
+
+    @Override
+    // Streaming Query 9
+    // -----------------------------------------------------------------------------------
+    // EFFECTS: passes the number of pairs found by findPotentialSiblings() and then each
+    //          of them to <consumer> as soon as its row is read, and returns the number of
+    //          pairs passed
+    public <E extends Exception> long findPotentialSiblings(FakebookConsumer<? super SiblingInfo, E> consumer)
+            throws SQLException, E {
+        long count = 0;
+        try (ResultSet rs2 = statements.prepare(counted(potentialSiblingsQuery(), "u1id, u2id"),
+                fetchSizes[9]).executeQuery()) {
             while(rs2.next()) {
-                UserInfo u1 = new UserInfo(rs2.getLong(1), rs2.getString(2), rs2.getString(3));
-                UserInfo u2 = new UserInfo(rs2.getLong(4), rs2.getString(5), rs2.getString(6));
-                SiblingInfo si = new SiblingInfo(u1, u2);
-                results.add(si);                
+                if (count == 0) {
+                    consumer.begin(rs2.getLong("RESULT_COUNT"));
+                }
+                UserInfo u1 = user(rs2, 1);
+                UserInfo u2 = user(rs2, 4);
+                consumer.accept(new SiblingInfo(u1, u2));
+                count++;
             }
-            String query3 = "DROP VIEW MatchTable" ;
-            stmt.executeUpdate(query3);
-            rs2.close();
-            stmt.close();
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            propagate(e);
+        }
+        if (count == 0) {
+            consumer.begin(0);
+        }
+        return count;
+    }
 
+    @Override
+    public long countPotentialSiblings() throws SQLException {
+        return count(potentialSiblingsQuery(), fetchSizes[9]);
+    }
+
+    // The candidate pairs are an inline subquery rather than a view, so concurrent
+    // sessions do not collide on a shared view name
+    private String potentialSiblingsQuery() {
+        return "SELECT U1.USER_ID AS u1id, U1.First_Name as u1fname, U1.Last_Name as u1lname, U2.USER_ID AS u2id, U2.First_Name as u2fname, U2.Last_Name as u2lname " +
+               "FROM " + UsersTable + " U1, " + UsersTable + " U2, (" +
+                   "SELECT U1.USER_ID AS user1, U2.USER_ID as user2 " +
+                   "FROM " + UsersTable + " U1, " + UsersTable + " U2 " +
+                   "WHERE U1.LAST_NAME = U2.LAST_NAME  AND (ABS(U1.year_of_birth - U2.year_of_birth) < 10) " +
+                   "INTERSECT " +
+                   "SELECT H1.USER_ID AS user1, H2.USER_ID AS user2 " +
+                   "FROM " + HometownCitiesTable + " H1, " + HometownCitiesTable + " H2 " +
+                   "WHERE H1.HOMETOWN_CITY_ID = H2.HOMETOWN_CITY_ID " +
+                   "INTERSECT " +
+                   "SELECT USER1_ID, USER2_ID FROM " + FriendsTable + ") Ms " +
+               "WHERE Ms.user1 = U1.USER_ID AND Ms.user2 = U2.USER_ID ";
+    }
+
+    // [User Function]
+    // REQUIRES: columns <column>, <column> + 1, and <column> + 2 of <rst>'s current row
+    //           hold a user's ID, first name, and last name
+    // EFFECTS:  returns the UserInfo for that user, shared with every other result that
+    //           contains the user while it stays cached; the names are only read from
+    //           <rst> when the user is not cached
+    private UserInfo user(ResultSet rst, int column) throws SQLException {
+        long userID = rst.getLong(column);
+        UserInfo cached = users.get(userID);
+        if (cached != null) {
+            return cached;
+        }
+        return users.put(userID, rst.getString(column + 1), rst.getString(column + 2));
+    }
 
+    // [Propagate Function]
+    // EFFECTS: throws <e> if setPropagateErrors(true) was called; the queries call this
+    //          right after printing a failure's message
+    private void propagate(SQLException e) throws SQLException {
+        if (propagateErrors) {
+            throw e;
+        }
+    }
+
+    // [Count Function]
+    // EFFECTS: returns the number of rows that <query> (which has no ORDER BY) returns,
+    //          counted on the server; there is no placeholder count, so a failure is
+    //          always thrown after its message is printed
+    private long count(String query, int fetchSize) throws SQLException {
+        try (ResultSet rst = statements.prepare("SELECT COUNT(*) FROM (" + query + ") Counted",
+                fetchSize).executeQuery()) {
+            return rst.next() ? rst.getLong(1) : 0;
         } catch (SQLException e) {
             System.err.println(e.getMessage());
-            return results;
+            throw e;
         }
+    }
 
-        return results;
+    // [Counted Function]
+    // EFFECTS: returns <query> (which has no ORDER BY) sorted by <order>, with the number
+    //          of rows it returns added to every row as RESULT_COUNT, so that a streaming
+    //          query learns its count from its first row instead of a second query
+    private static String counted(String query, String order) {
+        return "SELECT Counted.*, COUNT(*) OVER () AS RESULT_COUNT FROM (" + query + ") Counted ORDER BY " + order;
     }
 
     // Member Variables
+    private static final int MaxPairsPerQuery = 512; // 1024 bind variables per query
+    private static final int MaxIdsPerQuery = 512; // a power of two under the 1000-item IN list limit
+    static final int DefaultUserCacheSize = 1 << 16; // users; about 10 MB when full
+    // rows fetched per round trip by each query's statements, indexed by query number; the
+    // queries that return every matching user fetch the most at a time
+    private static final int[] DefaultFetchSizes = { 500, 100, 1000, 1000, 100, 100, 100, 100, 100, 500 };
     private Connection oracle;
+    private final FakebookStatementRegistry statements;
+    private final int[] fetchSizes = DefaultFetchSizes.clone();
+    // Queries 0, 2, and 3 list each user at most once, so they do not go through the cache
+    private final UserInfoCache users;
+    private TopTaggedPhotoIndex tagIndex; // null unless setTagIndex() was called
+    private FakebookAggregates aggregates; // null unless setAggregates() was called
+    private boolean propagateErrors; // see setPropagateErrors()
     private final String UsersTable = FakebookOracleConstants.UsersTable;
     private final String CitiesTable = FakebookOracleConstants.CitiesTable;
     private final String FriendsTable = FakebookOracleConstants.FriendsTable;
@@ -0,0 +1,196 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/*
+    The TopTaggedPhotoIndex class keeps the ranking behind Query 4 (photos by number of
+    tags, descending, ties broken by smaller photo ID) up to date in memory, so that the
+    top <num> photos for any <num> up to capacity() are read off in O(<num>) instead of
+    grouping and sorting the whole Tags table.
+
+    It is built once from the Tags table and then told about every tag inserted into or
+    deleted from it (and every photo deleted). Each photo's tag count lives in a
+    LongIntMap; <top> holds the best-ranked photos as packed keys whose natural order is
+    the ranking. <top> holds between capacity() and twice capacity() photos (or every
+    photo, if there are fewer), and every photo outside of it ranks below every photo in
+    it, so it can absorb that many demotions before it has to be refilled from the counts.
+    A refill is a single pass over the counts and is the only operation that is not
+    O(log capacity()).
+
+    Like the SQL version, only tags of photos that exist in the Photos table, in an album
+    that exists in the Albums table, are counted when the index is built; events are
+    assumed to respect the same foreign keys. The functions are synchronized, so events
+    and lookups may come from several threads.
+*/
+final class TopTaggedPhotoIndex {
+    // [Constructor]
+    // REQUIRES: 0 < <capacity>
+    // EFFECTS:  creates an empty index that can answer for up to <capacity> photos
+    TopTaggedPhotoIndex(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        counts = new LongIntMap(capacity * 2);
+    }
+
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection; 0 < <capacity>
+    // EFFECTS:  counts the tags of every photo with one scan of the Tags table and
+    //           returns an index over those counts
+    static TopTaggedPhotoIndex load(Connection connection, int capacity) throws SQLException {
+        TopTaggedPhotoIndex index = new TopTaggedPhotoIndex(capacity);
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly,
+                FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rst = stmt.executeQuery(
+                    "SELECT T.TAG_PHOTO_ID, COUNT(*) " +
+                    "FROM " + FakebookOracleConstants.TagsTable + " T " +
+                    "JOIN " + FakebookOracleConstants.PhotosTable + " P ON P.PHOTO_ID = T.TAG_PHOTO_ID " +
+                    "JOIN " + FakebookOracleConstants.AlbumsTable + " A ON A.ALBUM_ID = P.ALBUM_ID " +
+                    "GROUP BY T.TAG_PHOTO_ID")) {
+                while (rst.next()) {
+                    index.counts.put(checked(rst.getLong(1)), rst.getInt(2));
+                }
+            }
+        }
+        synchronized (index) {
+            index.refill();
+        }
+        return index;
+    }
+
+    // [Capacity Accessor]
+    // EFFECTS: returns the largest <num> that top() answers for
+    int capacity() {
+        return capacity;
+    }
+
+    // [Tag Count Function]
+    // EFFECTS: returns the number of tags of photo <photoId> (0 if it has none)
+    synchronized int tagCount(long photoId) {
+        return counts.get(photoId);
+    }
+
+    // [Top Function]
+    // REQUIRES: 0 <= <num> <= capacity()
+    // EFFECTS:  returns the IDs of the (at most) <num> photos with the most tags, in the
+    //           order Query 4 lists them
+    synchronized long[] top(int num) {
+        if (num < 0 || num > capacity) {
+            throw new IllegalArgumentException("num must be between 0 and " + capacity + ": " + num);
+        }
+        long[] photoIds = new long[Math.min(num, top.size())];
+        Iterator<Long> keys = top.iterator();
+        for (int idx = 0; idx < photoIds.length; idx++) {
+            photoIds[idx] = keys.next() & PhotoMask;
+        }
+        return photoIds;
+    }
+
+    // [Tag Inserted Function]
+    // MODIFIES: this
+    // EFFECTS:  records that a tag of photo <photoId> was inserted
+    synchronized void tagInserted(long photoId) {
+        changeCount(checked(photoId), 1);
+    }
+
+    // [Tag Deleted Function]
+    // MODIFIES: this
+    // EFFECTS:  records that a tag of photo <photoId> was deleted; does nothing if the
+    //           photo has no tags
+    synchronized void tagDeleted(long photoId) {
+        if (counts.get(photoId) > 0) {
+            changeCount(photoId, -1);
+        }
+    }
+
+    // [Photo Deleted Function]
+    // MODIFIES: this
+    // EFFECTS:  records that photo <photoId> was deleted along with all of its tags
+    synchronized void photoDeleted(long photoId) {
+        int count = counts.remove(photoId);
+        if (count > 0 && top.remove(key(count, photoId))) {
+            refillIfShort();
+        }
+    }
+
+    // moves <photoId> from its old position in the ranking to its new one
+    private void changeCount(long photoId, int delta) {
+        int before = counts.get(photoId);
+        int after = counts.add(photoId, delta);
+        boolean ranked = before > 0 && top.remove(key(before, photoId));
+        if (after == 0) {
+            if (ranked) {
+                refillIfShort();
+            }
+            return;
+        }
+
+        long key = key(after, photoId);
+        if (ranked && delta > 0) {
+            // a ranked photo only moves up
+            top.add(key);
+        } else if (!top.isEmpty() && key < top.last()) {
+            // the photo now outranks a ranked photo, so it also outranks every photo that
+            // is not ranked
+            top.add(key);
+            if (top.size() > capacity * 2) {
+                top.pollLast();
+            }
+        } else if (counts.size() - 1 == top.size() && top.size() < capacity * 2) {
+            // every other photo is ranked, so the photo goes at the end
+            top.add(key);
+        } else if (ranked) {
+            // the photo fell below every other ranked photo; it may now rank below a photo
+            // that is not ranked, so it leaves <top>
+            refillIfShort();
+        }
+    }
+
+    private void refillIfShort() {
+        if (top.size() < capacity && top.size() < counts.size()) {
+            refill();
+        }
+    }
+
+    // rebuilds <top> from the counts, keeping the best twice-capacity photos
+    private void refill() {
+        top.clear();
+        counts.forEach((photoId, count) -> {
+            long key = key(count, photoId);
+            if (top.size() < capacity * 2) {
+                top.add(key);
+            } else if (key < top.last()) {
+                top.pollLast();
+                top.add(key);
+            }
+        });
+    }
+
+    // packs a photo's rank into one long: fewer missing tags, then smaller photo ID, first
+    private static long key(int count, long photoId) {
+        return ((long) (MaxCount - count) << PhotoBits) | photoId;
+    }
+
+    private static long checked(long photoId) {
+        if (photoId < 0 || photoId > PhotoMask) {
+            throw new IllegalArgumentException("photo ID out of range: " + photoId);
+        }
+        return photoId;
+    }
+
+    // Member Variables
+    private static final int PhotoBits = 40; // photo IDs below 2^40
+    private static final long PhotoMask = (1L << PhotoBits) - 1;
+    private static final int MaxCount = (1 << (63 - PhotoBits)) - 1; // tags per photo
+
+    private final int capacity;
+    private final LongIntMap counts; // photo ID -> number of tags
+    private final TreeSet<Long> top = new TreeSet<Long>();
+}
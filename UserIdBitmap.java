@@ -0,0 +1,445 @@
+package project2;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/*
+    The UserIdBitmap class is an immutable compressed set of user IDs in [0, 2^32), laid
+    out like a roaring bitmap: IDs are split by their high 16 bits into chunks of 65536,
+    and each non-empty chunk is stored in the smaller of two forms: a sorted array of
+    the low 16 bits (up to ArrayLimit IDs, 2 bytes each) or a 65536-bit bitmap (8 KB).
+    Sparse and dense sets therefore both cost at most about 2 bytes per ID, and the set
+    operations work a chunk at a time, either by merging sorted arrays or by combining
+    64 IDs per machine word.
+
+    Bitmaps are built with a Builder and combined with and(), or(), and andNot(), which
+    return new bitmaps and share unchanged chunks with their inputs.
+*/
+final class UserIdBitmap {
+    // [Constructor]
+    // REQUIRES: <keys> is sorted and distinct; <chunks>[i] is the non-empty chunk with
+    //           high bits <keys>[i]
+    private UserIdBitmap(char[] keys, Chunk[] chunks, int size) {
+        this.keys = keys;
+        this.chunks = chunks;
+        this.size = size;
+        long total = 0;
+        for (int idx = 0; idx < size; idx++) {
+            total += chunks[idx].cardinality;
+        }
+        cardinality = total;
+    }
+
+    // [Empty Function]
+    // EFFECTS: returns the empty bitmap
+    static UserIdBitmap empty() {
+        return Empty;
+    }
+
+    // [Contains Function]
+    // EFFECTS: returns whether <userId> is in this set
+    boolean contains(long userId) {
+        if (userId < 0 || userId > MaxId) {
+            return false;
+        }
+        int idx = Arrays.binarySearch(keys, 0, size, (char) (userId >>> 16));
+        return idx >= 0 && chunks[idx].contains((char) userId);
+    }
+
+    // [Size Functions]
+    // EFFECTS: return the number of IDs in this set, and whether there are none
+    long cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // [And Function]
+    // EFFECTS: returns the IDs in both this set and <other>
+    UserIdBitmap and(UserIdBitmap other) {
+        Combiner combiner = new Combiner(Math.min(size, other.size));
+        for (int i = 0, j = 0; i < size && j < other.size; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                combiner.add(keys[i], chunks[i++].and(other.chunks[j++]));
+            }
+        }
+        return combiner.bitmap();
+    }
+
+    // [Or Function]
+    // EFFECTS: returns the IDs in this set, <other>, or both
+    UserIdBitmap or(UserIdBitmap other) {
+        Combiner combiner = new Combiner(size + other.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                combiner.add(keys[i], chunks[i++]);
+            } else if (i == size || keys[i] > other.keys[j]) {
+                combiner.add(other.keys[j], other.chunks[j++]);
+            } else {
+                combiner.add(keys[i], chunks[i++].or(other.chunks[j++]));
+            }
+        }
+        return combiner.bitmap();
+    }
+
+    // [And Not Function]
+    // EFFECTS: returns the IDs in this set that are not in <other>
+    UserIdBitmap andNot(UserIdBitmap other) {
+        Combiner combiner = new Combiner(size);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                combiner.add(keys[i], chunks[i].andNot(other.chunks[j]));
+            } else {
+                combiner.add(keys[i], chunks[i]);
+            }
+        }
+        return combiner.bitmap();
+    }
+
+    // [Iterator Function]
+    // EFFECTS: returns an iterator over the IDs in this set, in increasing order
+    PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public long nextLong() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                long value = next;
+                advance();
+                return value;
+            }
+
+            // moves <next> to the next ID, or -1 past the last one
+            private void advance() {
+                while (chunk < size) {
+                    int low = chunks[chunk].nextFrom(position);
+                    if (low >= 0) {
+                        next = ((long) keys[chunk] << 16) | low;
+                        position = low + 1;
+                        return;
+                    }
+                    chunk++;
+                    position = 0;
+                }
+                next = -1;
+            }
+
+            private int chunk;
+            private int position; // the smallest low 16 bits not yet returned from <chunk>
+            private long next = -2;
+
+            {
+                advance();
+            }
+        };
+    }
+
+    // [Memory Function]
+    // EFFECTS: returns the approximate number of bytes held by the bitmap's chunks
+    long bytes() {
+        long total = 2L * keys.length + 4L * chunks.length;
+        for (int idx = 0; idx < size; idx++) {
+            total += chunks[idx].bytes();
+        }
+        return total;
+    }
+
+    // [Bitmap-to-String Converter]
+    // EFFECTS: returns the cardinality and the number of chunks of each form
+    public String toString() {
+        int arrays = 0;
+        for (int idx = 0; idx < size; idx++) {
+            if (chunks[idx].values != null) {
+                arrays++;
+            }
+        }
+        return String.format("%d IDs in %d array and %d bitmap chunks (%d bytes)", cardinality, arrays,
+                size - arrays, bytes());
+    }
+
+    /*
+        The Builder class collects user IDs in any order (duplicates are allowed) and
+        turns them into a UserIdBitmap with one sort.
+    */
+    static final class Builder {
+        // [Add Function]
+        // REQUIRES: 0 <= <userId> < 2^32
+        // MODIFIES: this
+        // EFFECTS:  adds <userId> to the set being built
+        Builder add(long userId) {
+            if (userId < 0 || userId > MaxId) {
+                throw new IllegalArgumentException("user ID out of range: " + userId);
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = (int) userId ^ Integer.MIN_VALUE; // so that signed order is unsigned order
+            return this;
+        }
+
+        // [Build Function]
+        // EFFECTS: returns the set of the IDs added so far
+        UserIdBitmap build() {
+            Arrays.sort(ids, 0, count);
+            Combiner combiner = new Combiner(16);
+            char[] values = new char[ArrayLimit];
+            long[] words = null;
+            int held = 0; // IDs of the current chunk, while they fit in <values>
+            int key = -1;
+            for (int idx = 0; idx <= count; idx++) {
+                int id = idx < count ? ids[idx] ^ Integer.MIN_VALUE : 0;
+                int high = id >>> 16;
+                if (idx == count || high != key) {
+                    if (key >= 0) {
+                        combiner.add((char) key, words != null ? Chunk.of(words) : Chunk.of(Arrays.copyOf(values, held)));
+                    }
+                    key = high;
+                    words = null;
+                    held = 0;
+                }
+                if (idx == count) {
+                    break;
+                }
+                char low = (char) id;
+                if (words != null) {
+                    words[low >>> 6] |= 1L << low;
+                } else if (held == 0 || values[held - 1] != low) {
+                    if (held == ArrayLimit) {
+                        words = new long[Words];
+                        for (int v = 0; v < held; v++) {
+                            words[values[v] >>> 6] |= 1L << values[v];
+                        }
+                        words[low >>> 6] |= 1L << low;
+                    } else {
+                        values[held++] = low;
+                    }
+                }
+            }
+            return combiner.bitmap();
+        }
+
+        private int[] ids = new int[1024];
+        private int count;
+    }
+
+    /*
+        The Chunk class holds the IDs that share one value of the high 16 bits, as either
+        a sorted array of their low bits (<values>) or a bitmap of them (<words>).
+    */
+    private static final class Chunk {
+        private Chunk(char[] values, long[] words, int cardinality) {
+            this.values = values;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static Chunk of(char[] values) {
+            return values.length == 0 ? null : new Chunk(values, null, values.length);
+        }
+
+        // the chunk holding the bits of <words>, which it may keep, in its smaller form
+        static Chunk of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            if (cardinality > ArrayLimit) {
+                return new Chunk(null, words, cardinality);
+            }
+            char[] values = new char[cardinality];
+            int held = 0;
+            for (int w = 0; w < Words; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[held++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new Chunk(values, null, cardinality);
+        }
+
+        boolean contains(char low) {
+            return words != null ? (words[low >>> 6] & (1L << low)) != 0 : Arrays.binarySearch(values, low) >= 0;
+        }
+
+        // the smallest low bits >= <from> in this chunk, or -1
+        int nextFrom(int from) {
+            if (values != null) {
+                if (from == 0) {
+                    return values[0];
+                }
+                int idx = Arrays.binarySearch(values, (char) from);
+                if (idx < 0) {
+                    idx = -idx - 1;
+                }
+                return from > 0xFFFF || idx == values.length ? -1 : values[idx];
+            }
+            for (int w = from >>> 6; w < Words; w++) {
+                long word = w == from >>> 6 ? words[w] & (-1L << from) : words[w];
+                if (word != 0) {
+                    return (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+            return -1;
+        }
+
+        Chunk and(Chunk other) {
+            if (values != null || other.values != null) {
+                Chunk array = values != null ? this : other;
+                Chunk probe = array == this ? other : this;
+                char[] kept = new char[array.cardinality];
+                int held = 0;
+                for (char low : array.values) {
+                    if (probe.contains(low)) {
+                        kept[held++] = low;
+                    }
+                }
+                return held == array.cardinality ? array : of(Arrays.copyOf(kept, held));
+            }
+            long[] kept = new long[Words];
+            for (int w = 0; w < Words; w++) {
+                kept[w] = words[w] & other.words[w];
+            }
+            return of(kept);
+        }
+
+        Chunk or(Chunk other) {
+            if (values != null && other.values != null && cardinality + other.cardinality <= ArrayLimit) {
+                char[] merged = new char[cardinality + other.cardinality];
+                int held = 0;
+                int i = 0;
+                int j = 0;
+                while (i < values.length || j < other.values.length) {
+                    if (j == other.values.length || (i < values.length && values[i] < other.values[j])) {
+                        merged[held++] = values[i++];
+                    } else if (i == values.length || values[i] > other.values[j]) {
+                        merged[held++] = other.values[j++];
+                    } else {
+                        merged[held++] = values[i++];
+                        j++;
+                    }
+                }
+                return of(Arrays.copyOf(merged, held));
+            }
+            long[] merged = words();
+            other.addTo(merged);
+            return of(merged);
+        }
+
+        Chunk andNot(Chunk other) {
+            if (values != null) {
+                char[] kept = new char[cardinality];
+                int held = 0;
+                for (char low : values) {
+                    if (!other.contains(low)) {
+                        kept[held++] = low;
+                    }
+                }
+                return held == cardinality ? this : of(Arrays.copyOf(kept, held));
+            }
+            long[] kept = words.clone();
+            if (other.values != null) {
+                for (char low : other.values) {
+                    kept[low >>> 6] &= ~(1L << low);
+                }
+            } else {
+                for (int w = 0; w < Words; w++) {
+                    kept[w] &= ~other.words[w];
+                }
+            }
+            return of(kept);
+        }
+
+        // a new bitmap of this chunk's IDs
+        private long[] words() {
+            if (words != null) {
+                return words.clone();
+            }
+            long[] result = new long[Words];
+            addTo(result);
+            return result;
+        }
+
+        private void addTo(long[] target) {
+            if (words != null) {
+                for (int w = 0; w < Words; w++) {
+                    target[w] |= words[w];
+                }
+            } else {
+                for (char low : values) {
+                    target[low >>> 6] |= 1L << low;
+                }
+            }
+        }
+
+        long bytes() {
+            return values != null ? 2L * values.length : 8L * words.length;
+        }
+
+        final char[] values;
+        final long[] words;
+        final int cardinality;
+    }
+
+    /*
+        The Combiner class collects the chunks of a result in key order, skipping the
+        ones that came out empty.
+    */
+    private static final class Combiner {
+        Combiner(int capacity) {
+            keys = new char[Math.max(1, capacity)];
+            chunks = new Chunk[Math.max(1, capacity)];
+        }
+
+        void add(char key, Chunk chunk) {
+            if (chunk == null) {
+                return;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                chunks = Arrays.copyOf(chunks, size * 2);
+            }
+            keys[size] = key;
+            chunks[size++] = chunk;
+        }
+
+        UserIdBitmap bitmap() {
+            return new UserIdBitmap(keys, chunks, size);
+        }
+
+        private char[] keys;
+        private Chunk[] chunks;
+        private int size;
+    }
+
+    // Member Variables
+    private static final long MaxId = (1L << 32) - 1;
+    private static final int ArrayLimit = 4096; // the most IDs a chunk keeps as an array (8 KB)
+    private static final int Words = (1 << 16) / 64;
+    private static final UserIdBitmap Empty = new UserIdBitmap(new char[0], new Chunk[0], 0);
+
+    private final char[] keys; // the high 16 bits of each chunk's IDs, increasing
+    private final Chunk[] chunks;
+    private final int size; // the number of chunks (the arrays may be longer)
+    private final long cardinality;
+}
@@ -0,0 +1,167 @@
+package project2;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    The UserInfoCache class is a bounded identity map from user IDs to UserInfo instances,
+    so that a user who appears in many query results is represented by one shared
+    UserInfo (and one copy of each name) instead of a fresh one per row. The cache is
+    direct-mapped: every user ID hashes to exactly one of <capacity> slots, and storing a
+    user evicts whichever user held that slot before, so lookups and stores take
+    constant time and memory never grows past the capacity.
+
+    Entries are immutable, so one cache may be shared by oracles running on different
+    threads. The cache assumes that users' names do not change while it is in use; call
+    clear() after modifying the Users table.
+*/
+final class UserInfoCache {
+    // [Constructor]
+    // REQUIRES: 0 < <capacity> <= 2^30
+    // EFFECTS:  creates an empty cache with room for <capacity> users, rounded up to a
+    //           power of two
+    UserInfoCache(int capacity) {
+        int slots = Integer.highestOneBit(capacity);
+        if (slots < capacity) {
+            slots *= 2;
+        }
+        entries = new Entry[slots];
+        mask = slots - 1;
+    }
+
+    // [Get Function]
+    // EFFECTS: returns the cached UserInfo for <userID>, or null if it is not cached
+    UserInfo get(long userID) {
+        Entry entry = entries[slot(userID)];
+        if (entry != null && entry.userID == userID) {
+            hits.increment();
+            return entry.user;
+        }
+        misses.increment();
+        return null;
+    }
+
+    // [Put Function]
+    // MODIFIES: this
+    // EFFECTS:  creates the UserInfo for <userID>, <firstName>, and <lastName>, caches it
+    //           in place of the user previously held in its slot, and returns it
+    UserInfo put(long userID, String firstName, String lastName) {
+        UserInfo user = new UserInfo(userID, firstName, lastName);
+        int slot = slot(userID);
+        if (entries[slot] != null && entries[slot].userID != userID) {
+            evictions.increment();
+        }
+        entries[slot] = new Entry(userID, user, EntryBytes + stringBytes(firstName) + stringBytes(lastName));
+        return user;
+    }
+
+    // [Clear Function]
+    // MODIFIES: this
+    // EFFECTS:  forgets every cached user; the statistics are kept
+    void clear() {
+        for (int idx = 0; idx < entries.length; idx++) {
+            entries[idx] = null;
+        }
+    }
+
+    // [Statistics Functions]
+    // EFFECTS: return the number of lookups that found their user, the number that did
+    //          not, the number of users evicted to make room for others, the fraction of
+    //          lookups that hit, the number of users cached, and the capacity
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    double hitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    int size() {
+        int size = 0;
+        for (Entry entry : entries) {
+            if (entry != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    // [Memory Function]
+    // EFFECTS: returns the approximate number of bytes retained by the cache: its slot
+    //          array plus every cached entry, UserInfo, and name
+    long retainedBytes() {
+        long bytes = ArrayHeaderBytes + (long) ReferenceBytes * entries.length;
+        for (Entry entry : entries) {
+            if (entry != null) {
+                bytes += entry.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    // [Cache-to-String Converter]
+    // EFFECTS: returns a string representation of the cache's statistics
+    public String toString() {
+        return String.format("%d/%d user(s) cached, %d hit(s), %d miss(es) (%.1f%% hits), %d eviction(s), ~%d bytes",
+                size(), capacity(), hits(), misses(), 100.0 * hitRate(), evictions(), retainedBytes());
+    }
+
+    // spreads the ID's bits so that IDs with a common stride do not share slots
+    private int slot(long userID) {
+        long hash = userID * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    // a String with its backing array, assuming one byte per character (compact strings)
+    private static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        return StringBytes + align(ArrayHeaderBytes + value.length());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /*
+        The Entry class is one cached user together with its estimated retained size.
+    */
+    private static final class Entry {
+        Entry(long userID, UserInfo user, long bytes) {
+            this.userID = userID;
+            this.user = user;
+            this.bytes = bytes;
+        }
+
+        final long userID;
+        final UserInfo user;
+        final long bytes;
+    }
+
+    // Member Variables
+    // approximate object sizes on a 64-bit JVM with compressed references
+    private static final int ReferenceBytes = 4;
+    private static final long ArrayHeaderBytes = 16;
+    private static final long StringBytes = 24;
+    private static final long EntryBytes = 32 + 32; // Entry + UserInfo
+
+    private final Entry[] entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+}
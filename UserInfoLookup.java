@@ -0,0 +1,66 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    The UserInfoLookup class fetches the names of a set of users whose IDs were found
+    without the database (e.g. by one of the in-memory engines), using as few round trips
+    as possible. This class cannot be instantiated directly.
+*/
+final class UserInfoLookup {
+    // [Fetch Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  returns a UserInfo for every ID in <userIds> that exists in the Users
+    //           table, keyed by user ID; IDs are looked up MaxIdsPerQuery at a time
+    static Map<Long, UserInfo> fetch(Connection connection, long[] userIds) throws SQLException {
+        Map<Long, UserInfo> users = new HashMap<Long, UserInfo>();
+
+        for (int first = 0; first < userIds.length; first += MaxIdsPerQuery) {
+            int count = Math.min(MaxIdsPerQuery, userIds.length - first);
+
+            // Pad the IN list to a power of two with the last ID so that only a few
+            // distinct SQL texts are ever sent
+            int slots = Integer.highestOneBit(count);
+            if (slots < count) {
+                slots *= 2;
+            }
+            StringBuilder idList = new StringBuilder();
+            for (int idx = 0; idx < slots; idx++) {
+                idList.append(idx == 0 ? "?" : ", ?");
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT USER_ID, FIRST_NAME, LAST_NAME " +
+                    "FROM " + FakebookOracleConstants.UsersTable + " " +
+                    "WHERE USER_ID IN (" + idList + ")",
+                    FakebookOracleConstants.ForwardOnly, FakebookOracleConstants.ReadOnly)) {
+                stmt.setFetchSize(slots);
+                for (int idx = 0; idx < slots; idx++) {
+                    stmt.setLong(idx + 1, userIds[first + Math.min(idx, count - 1)]);
+                }
+                ResultSet rst = stmt.executeQuery();
+                while (rst.next()) {
+                    long id = rst.getLong(1);
+                    users.put(id, new UserInfo(id, rst.getString(2), rst.getString(3)));
+                }
+                rst.close();
+            }
+        }
+
+        return users;
+    }
+
+    // [Constructor]
+    // EFFECTS: throws an AssertionError
+    private UserInfoLookup() {
+        throw new AssertionError();
+    }
+
+    // Member Variables
+    private static final int MaxIdsPerQuery = 512; // a power of two under the 1000-item IN list limit
+}
@@ -0,0 +1,274 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+
+/*
+    The UserSetEngine class answers the set-shaped queries (Query 2, Query 3, and Query 9)
+    with UserIdBitmap algebra over sets derived once from a FriendSnapshot and the
+    Current_Cities and Hometown_Cities tables:
+      - <users> (every row of Users) and <friended> (every ID in either column of Friends)
+      - <away>, the users with a current city other than their hometown, found by
+        comparing each user's cities once
+      - for each (last name, hometown) pair held by at least two users, those users,
+        and <related>, the union of those groups; users without a last name, which
+        match no one in SQL, are in no group
+    Each answer is a bitmap whose IDs are then scanned in increasing order to build the
+    UserInfo results from the snapshot, which is the order the SQL versions sort by.
+*/
+final class UserSetEngine {
+    // [Constructor]
+    // REQUIRES: the city arrays hold the rows of Current_Cities and Hometown_Cities of
+    //           the database that <snapshot> was taken from
+    private UserSetEngine(FriendSnapshot snapshot, long[] currentUsers, long[] currentCities,
+            long[] hometownUsers, long[] hometownCities) {
+        this.snapshot = snapshot;
+        graph = snapshot.graph();
+
+        UserIdBitmap.Builder listed = new UserIdBitmap.Builder();
+        UserIdBitmap.Builder connected = new UserIdBitmap.Builder();
+        for (int u = 0; u < graph.size(); u++) {
+            if (snapshot.isUser(u)) {
+                listed.add(graph.userId(u));
+            }
+            if (graph.degree(u) > 0) {
+                connected.add(graph.userId(u));
+            }
+        }
+        users = listed.build();
+        friended = connected.build();
+        away = awayFromHome(currentUsers, currentCities, hometownUsers, hometownCities);
+
+        // Group the listed users by last name and hometown; a user has at most one hometown
+        Map<String, Integer> groupIds = new HashMap<String, Integer>();
+        List<UserIdBitmap.Builder> builders = new ArrayList<UserIdBitmap.Builder>();
+        groupOf = new int[graph.size()];
+        Arrays.fill(groupOf, -1);
+        for (int idx = 0; idx < hometownUsers.length; idx++) {
+            int u = graph.denseId(hometownUsers[idx]);
+            if (u < 0 || !snapshot.isUser(u) || snapshot.lastName(u) == null) {
+                continue;
+            }
+            String key = snapshot.lastName(u) + '\u0000' + hometownCities[idx];
+            Integer group = groupIds.get(key);
+            if (group == null) {
+                group = builders.size();
+                groupIds.put(key, group);
+                builders.add(new UserIdBitmap.Builder());
+            }
+            builders.get(group).add(hometownUsers[idx]);
+            groupOf[u] = group;
+        }
+        groups = new UserIdBitmap[builders.size()];
+        UserIdBitmap.Builder inGroups = new UserIdBitmap.Builder();
+        for (int group = 0; group < groups.length; group++) {
+            groups[group] = builders.get(group).build();
+            if (groups[group].cardinality() > 1) {
+                for (PrimitiveIterator.OfLong ids = groups[group].iterator(); ids.hasNext(); ) {
+                    inGroups.add(ids.nextLong());
+                }
+            }
+        }
+        related = inGroups.build();
+    }
+
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection to the database that <snapshot>
+    //           was taken from
+    // EFFECTS:  reads the Current_Cities and Hometown_Cities tables once each and returns
+    //           an engine over them and <snapshot>
+    static UserSetEngine load(Connection connection, FriendSnapshot snapshot) throws SQLException {
+        long[][] current = readCities(connection, "SELECT USER_ID, CURRENT_CITY_ID FROM " +
+                FakebookOracleConstants.CurrentCitiesTable);
+        long[][] hometown = readCities(connection, "SELECT USER_ID, HOMETOWN_CITY_ID FROM " +
+                FakebookOracleConstants.HometownCitiesTable);
+        return new UserSetEngine(snapshot, current[0], current[1], hometown[0], hometown[1]);
+    }
+
+    // [Load Function]
+    // REQUIRES: <file> holds the tables that <snapshot> was taken from
+    // EFFECTS:  returns an engine over the city tables in <file> and <snapshot>
+    static UserSetEngine load(FakebookSnapshotFile file, FriendSnapshot snapshot) {
+        long[][] current = readCities(file.table(FakebookOracleConstants.CurrentCitiesTable), "CURRENT_CITY_ID");
+        long[][] hometown = readCities(file.table(FakebookOracleConstants.HometownCitiesTable), "HOMETOWN_CITY_ID");
+        return new UserSetEngine(snapshot, current[0], current[1], hometown[0], hometown[1]);
+    }
+
+    // [Lonely Users Function]
+    // EFFECTS: returns the users that appear in neither column of Friends
+    UserIdBitmap lonelyUsers() {
+        return users.andNot(friended);
+    }
+
+    // [Live Away From Home Function]
+    // EFFECTS: returns the users with a current city and a hometown that differ
+    UserIdBitmap liveAwayFromHome() {
+        return away;
+    }
+
+    // [Scan Function]
+    // EFFECTS: passes the cardinality of <set> and then the UserInfo of each ID in <set>
+    //          to <consumer> by increasing ID, and returns the number passed
+    <E extends Exception> long scan(UserIdBitmap set, FakebookConsumer<? super UserInfo, E> consumer) throws E {
+        consumer.begin(set.cardinality());
+        long count = 0;
+        for (PrimitiveIterator.OfLong ids = set.iterator(); ids.hasNext(); ) {
+            consumer.accept(snapshot.user(graph.denseId(ids.nextLong())));
+            count++;
+        }
+        return count;
+    }
+
+    // [Potential Siblings Function]
+    // EFFECTS: passes the number of pairs of friends with the same last name and hometown
+    //          and less than 10 birth years apart, then each of those pairs, to <consumer>,
+    //          ordered by the first user's ID and then the second's, and returns the number
+    //          of pairs passed; only users in <related> and <friended> are visited, and each
+    //          one's friends are checked against its group. The pairs are few, so they are
+    //          collected before the count is passed on
+    <E extends Exception> long findPotentialSiblings(FakebookConsumer<? super SiblingInfo, E> consumer) throws E {
+        List<SiblingInfo> pairs = new ArrayList<SiblingInfo>();
+        siblings(pairs);
+        consumer.begin(pairs.size());
+        for (SiblingInfo pair : pairs) {
+            consumer.accept(pair);
+        }
+        return pairs.size();
+    }
+
+    // [Count Potential Siblings Function]
+    // EFFECTS: returns the number of pairs findPotentialSiblings() passes, found by the
+    //          same visit without building the pairs
+    long countPotentialSiblings() {
+        return siblings(null);
+    }
+
+    // adds the potential sibling pairs to <pairs> in order, unless it is null, and
+    // returns how many there are
+    private long siblings(List<SiblingInfo> pairs) {
+        long count = 0;
+        for (PrimitiveIterator.OfLong ids = related.and(friended).iterator(); ids.hasNext(); ) {
+            int u = graph.denseId(ids.nextLong());
+            int year = snapshot.birthKey(u) >>> YearShift;
+            if (year == FriendSnapshot.NoYear) {
+                continue;
+            }
+            UserIdBitmap group = groups[groupOf[u]];
+            for (int idx = graph.offsets[u]; idx < graph.offsets[u + 1]; idx++) {
+                int v = graph.neighbors[idx]; // increasing, so the pairs come out in order
+                if (v <= u || !group.contains(graph.userId(v))) {
+                    continue;
+                }
+                int otherYear = snapshot.birthKey(v) >>> YearShift;
+                if (otherYear != FriendSnapshot.NoYear && Math.abs(year - otherYear) < 10) {
+                    if (pairs != null) {
+                        pairs.add(new SiblingInfo(snapshot.user(u), snapshot.user(v)));
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // [Memory Function]
+    // EFFECTS: returns the approximate number of bytes held by the engine's bitmaps, not
+    //          counting the snapshot
+    long bytes() {
+        long total = users.bytes() + friended.bytes() + away.bytes() + related.bytes() + 4L * groupOf.length;
+        for (UserIdBitmap set : groups) {
+            total += set.bytes();
+        }
+        return total;
+    }
+
+    // returns the listed users with a current city that is not their hometown: each
+    // user's hometown is noted by dense ID, then each current city is compared with it;
+    // a user with several hometowns has a current city that differs from one of them
+    private UserIdBitmap awayFromHome(long[] currentUsers, long[] currentCities, long[] hometownUsers,
+            long[] hometownCities) {
+        long[] hometown = new long[graph.size()];
+        byte[] hometowns = new byte[graph.size()]; // 0, 1, or Several distinct hometowns
+        for (int idx = 0; idx < hometownUsers.length; idx++) {
+            int u = graph.denseId(hometownUsers[idx]);
+            if (u < 0) {
+                continue;
+            }
+            if (hometowns[u] == 0) {
+                hometown[u] = hometownCities[idx];
+                hometowns[u] = 1;
+            } else if (hometown[u] != hometownCities[idx]) {
+                hometowns[u] = Several;
+            }
+        }
+
+        UserIdBitmap.Builder moved = new UserIdBitmap.Builder();
+        for (int idx = 0; idx < currentUsers.length; idx++) {
+            int u = graph.denseId(currentUsers[idx]);
+            if (u < 0 || !snapshot.isUser(u)) {
+                continue;
+            }
+            if (hometowns[u] == Several || (hometowns[u] == 1 && hometown[u] != currentCities[idx])) {
+                moved.add(currentUsers[idx]);
+            }
+        }
+        return moved.build();
+    }
+
+    // returns the user IDs and the city IDs of the rows <query> returns
+    private static long[][] readCities(Connection connection, String query) throws SQLException {
+        long[] userIds = new long[1024];
+        long[] cityIds = new long[1024];
+        int count = 0;
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly,
+                FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(LoadFetchSize);
+            try (ResultSet rst = stmt.executeQuery(query)) {
+                while (rst.next()) {
+                    if (count == userIds.length) {
+                        userIds = Arrays.copyOf(userIds, count * 2);
+                        cityIds = Arrays.copyOf(cityIds, count * 2);
+                    }
+                    userIds[count] = rst.getLong(1);
+                    cityIds[count] = rst.getLong(2);
+                    count++;
+                }
+            }
+        }
+        return new long[][] { Arrays.copyOf(userIds, count), Arrays.copyOf(cityIds, count) };
+    }
+
+    private static long[][] readCities(FakebookSnapshotFile.Table table, String cityColumn) {
+        FakebookSnapshotFile.Column userId = table.column("USER_ID");
+        FakebookSnapshotFile.Column cityId = table.column(cityColumn);
+        long[] userIds = new long[table.rows()];
+        long[] cityIds = new long[table.rows()];
+        for (int row = 0; row < table.rows(); row++) {
+            userIds[row] = userId.getLong(row);
+            cityIds[row] = cityId.getLong(row);
+        }
+        return new long[][] { userIds, cityIds };
+    }
+
+    // Member Variables
+    private static final int LoadFetchSize = 10000;
+    private static final int YearShift = 10; // see FriendSnapshot.birthKey()
+    private static final byte Several = 2;
+
+    private final FriendSnapshot snapshot;
+    private final FriendGraph graph;
+    private final UserIdBitmap users;
+    private final UserIdBitmap friended;
+    private final UserIdBitmap away; // see liveAwayFromHome()
+    private final UserIdBitmap[] groups; // users by (last name, hometown)
+    private final int[] groupOf; // dense ID -> index into <groups>, or -1
+    private final UserIdBitmap related;
+}
@@ -0,0 +1,189 @@
+package project2;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    The CachingFakebookOracleTest class checks that concurrent callers asking for the same
+    uncached result share a single call to the wrapped oracle, that results expire after
+    the time to live, and that invalidate() drops exactly the results computed from the
+    given table. The wrapped oracle is a stub that counts its calls, so no database is
+    needed; from the repository root:
+        javac -d /tmp/fbtest *.java test/*.java
+        java -cp /tmp/fbtest project2.CachingFakebookOracleTest
+*/
+final class CachingFakebookOracleTest {
+    public static void main(String[] args) throws Exception {
+        singleFlight();
+        expiry();
+        invalidateTable();
+        System.out.println("CachingFakebookOracleTest: all checks passed");
+    }
+
+    // every thread asking for the same result while it loads gets the one loaded result
+    private static void singleFlight() throws Exception {
+        CountingOracle delegate = new CountingOracle();
+        delegate.gate = new CountDownLatch(1);
+        CachingFakebookOracle cache = new CachingFakebookOracle(delegate, 16, 60000L);
+
+        ExecutorService threads = Executors.newFixedThreadPool(Callers);
+        try {
+            List<Future<FakebookArrayList<UsersPair>>> answers = new ArrayList<>();
+            for (int i = 0; i < Callers; ++i) {
+                answers.add(threads.submit(() -> cache.suggestFriends(5)));
+            }
+            // all but the loading caller count a hit before they wait for the load
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (cache.hits() < Callers - 1) {
+                check(System.nanoTime() < deadline, "the callers did not all reach the cache");
+                Thread.sleep(1);
+            }
+            check(delegate.suggestFriends.get() == 1, "only one caller loads while the others wait");
+            delegate.gate.countDown();
+
+            FakebookArrayList<UsersPair> first = answers.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<FakebookArrayList<UsersPair>> answer : answers) {
+                check(answer.get(10, TimeUnit.SECONDS) == first, "every caller gets the same result");
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        check(delegate.suggestFriends.get() == 1, "the wrapped oracle is called once");
+        check(cache.misses() == 1 && cache.hits() == Callers - 1, "one miss and a hit per waiting caller");
+
+        cache.suggestFriends(6);
+        check(delegate.suggestFriends.get() == 2, "different arguments load their own result");
+    }
+
+    // a result is loaded again once it is older than the time to live
+    private static void expiry() throws Exception {
+        CountingOracle delegate = new CountingOracle();
+        CachingFakebookOracle cache = new CachingFakebookOracle(delegate, 16, TtlMillis);
+
+        FakebookArrayList<UsersPair> first = cache.suggestFriends(5);
+        check(cache.suggestFriends(5) == first, "a fresh result is served from the cache");
+        check(delegate.suggestFriends.get() == 1, "a fresh result is not loaded again");
+
+        Thread.sleep(TtlMillis * 3);
+        check(cache.suggestFriends(5) != first, "an expired result is loaded again");
+        check(delegate.suggestFriends.get() == 2, "the wrapped oracle is called for the expired result");
+        check(cache.expirations() == 1, "the expired result is counted");
+    }
+
+    // invalidate() drops the results read from a table and keeps the others
+    private static void invalidateTable() throws Exception {
+        CountingOracle delegate = new CountingOracle();
+        CachingFakebookOracle cache = new CachingFakebookOracle(delegate, 16, 60000L);
+        loadAll(cache);
+        check(cache.size() == 3, "one result per query");
+
+        cache.invalidate(FakebookOracleConstants.FriendsTable);
+        check(cache.size() == 1, "Queries 6 and 8 read Friends; Query 4 does not");
+        loadAll(cache);
+        check(delegate.photos.get() == 1, "Query 4 is still cached");
+        check(delegate.suggestFriends.get() == 2 && delegate.ageInfo.get() == 2,
+                "Queries 6 and 8 are loaded again");
+
+        cache.invalidate(FakebookOracleConstants.UsersTable);
+        check(cache.size() == 0, "every cached query reads Users");
+        loadAll(cache);
+        check(delegate.photos.get() == 2 && delegate.suggestFriends.get() == 3 && delegate.ageInfo.get() == 3,
+                "every query is loaded again");
+        check(cache.invalidations() == 5, "each dropped result is counted");
+    }
+
+    private static void loadAll(CachingFakebookOracle cache) throws SQLException {
+        cache.findPhotosWithMostTags(5);
+        cache.suggestFriends(5);
+        cache.findAgeInfo(215L);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /*
+        The CountingOracle class answers Queries 4, 6, and 8 with new, empty results,
+        counting its calls; suggestFriends() first waits for <gate> if one is set.
+    */
+    private static final class CountingOracle extends FakebookOracle {
+        @Override
+        public BirthMonthInfo findMonthOfBirthInfo() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FirstNameInfo findNameInfo() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<UserInfo> lonelyUsers() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<UserInfo> liveAwayFromHome() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) {
+            photos.incrementAndGet();
+            return new FakebookArrayList<TaggedPhotoInfo>("\n");
+        }
+
+        @Override
+        public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+            suggestFriends.incrementAndGet();
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new SQLException("Interrupted", e);
+                }
+            }
+            return new FakebookArrayList<UsersPair>("\n");
+        }
+
+        @Override
+        public EventStateInfo findEventStates() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AgeInfo findAgeInfo(long userID) {
+            ageInfo.incrementAndGet();
+            return new AgeInfo(new UserInfo(1, "A", "One"), new UserInfo(2, "B", "Two"));
+        }
+
+        @Override
+        public FakebookArrayList<SiblingInfo> findPotentialSiblings() {
+            throw new UnsupportedOperationException();
+        }
+
+        // Member Variables
+        private final AtomicInteger photos = new AtomicInteger();
+        private final AtomicInteger suggestFriends = new AtomicInteger();
+        private final AtomicInteger ageInfo = new AtomicInteger();
+        private volatile CountDownLatch gate; // null if suggestFriends() does not wait
+    }
+
+    // Member Variables
+    private static final int Callers = 8; // threads asking for the same result at once
+    private static final long TtlMillis = 50L;
+}
@@ -0,0 +1,78 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The FindAgeInfoTest class checks that Query 8 ranks friends born on the same date by
+    the larger user ID, for the oldest and for the youngest friend alike, and that
+    StudentFakebookOracle's single and bulk versions and InMemoryFakebookOracle all agree,
+    including for friends missing from the Users table.
+    It runs against an in-memory H2 database in Oracle compatibility mode, so the H2 jar
+    must be on the class path; from the repository root:
+        javac -d /tmp/fbtest *.java test/*.java
+        java -cp /tmp/fbtest:h2.jar project2.FindAgeInfoTest
+*/
+final class FindAgeInfoTest {
+    public static void main(String[] args) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(Url, "", "")) {
+            FakebookSchema.create(connection);
+            try (Statement stmt = connection.createStatement()) {
+                // 1's friends 2 and 3 share a birth date; 4's oldest friends 5 and 6 do,
+                // and so do its youngest friends 7 and 8; 9 has no friends; 17 and 27 are
+                // friends of 1 and of 10 but missing from Users
+                stmt.executeUpdate("INSERT INTO " + FakebookOracleConstants.UsersTable + " VALUES " +
+                        "(1, 'A', 'One', 1970, 1, 1, 'f'), (2, 'B', 'Two', 1990, 5, 5, 'm'), " +
+                        "(3, 'C', 'Three', 1990, 5, 5, 'f'), (4, 'D', 'Four', 1960, 2, 2, 'm'), " +
+                        "(5, 'E', 'Five', 1950, 3, 3, 'f'), (6, 'F', 'Six', 1950, 3, 3, 'm'), " +
+                        "(7, 'G', 'Seven', 2000, 4, 4, 'f'), (8, 'H', 'Eight', 2000, 4, 4, 'm'), " +
+                        "(9, 'I', 'Nine', 1980, 6, 6, 'f'), (10, 'J', 'Ten', 1975, 7, 7, 'm')");
+                stmt.executeUpdate("INSERT INTO " + FakebookOracleConstants.FriendsTable + " VALUES " +
+                        "(1, 2), (1, 3), (1, 17), (4, 5), (4, 6), (4, 7), (4, 8), (10, 27)");
+            }
+
+            StudentFakebookOracle sql = new StudentFakebookOracle(connection);
+            sql.setPropagateErrors(true);
+            InMemoryFakebookOracle memory = new InMemoryFakebookOracle(connection, sql);
+
+            checkAgeInfo(sql.findAgeInfo(1L), 3L, 3L, "single, tied friends");
+            checkAgeInfo(sql.findAgeInfo(4L), 6L, 8L, "single, ties at both ends");
+            checkAgeInfo(sql.findAgeInfo(9L), 99999999L, 999999999L, "single, no friends");
+            checkAgeInfo(sql.findAgeInfo(10L), 99999999L, 999999999L, "single, no listed friends");
+
+            List<Long> userIds = Arrays.asList(1L, 4L, 9L, 10L, 27L);
+            Map<Long, AgeInfo> bulk = sql.findAgeInfo(userIds);
+            for (FakebookOracle oracle : new FakebookOracle[] { sql, memory }) {
+                String name = oracle.getClass().getSimpleName();
+                Map<Long, AgeInfo> answers = oracle.findAgeInfo(userIds);
+                for (long userId : userIds) {
+                    String single = oracle.findAgeInfo(userId).toString();
+                    check(single.equals(bulk.get(userId).toString()),
+                            name + " single findAgeInfo(" + userId + ") differs from the SQL bulk answer: " + single);
+                    check(answers.get(userId).toString().equals(single),
+                            name + " bulk findAgeInfo(" + userId + ") differs from its single answer");
+                }
+            }
+            System.out.println("FindAgeInfoTest: all checks passed");
+        }
+    }
+
+    private static void checkAgeInfo(AgeInfo info, long oldest, long youngest, String what) {
+        check(info.oldestFriend.toString().endsWith("(" + oldest + ")")
+                && info.youngestFriend.toString().endsWith("(" + youngest + ")"), what + ": " + info);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    // Member Variables
+    private static final String Url = "jdbc:h2:mem:findAgeInfo;MODE=Oracle";
+}
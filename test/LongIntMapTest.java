@@ -0,0 +1,121 @@
+package project2;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/*
+    The LongIntMapTest class checks LongIntMap's backward-shift deletion, in particular
+    when a probe run wraps around the end of the slot array. The repository has no test
+    framework, so the checks are plain Java; from the repository root:
+        javac -d /tmp/fbtest *.java test/*.java
+        java -cp /tmp/fbtest project2.LongIntMapTest
+*/
+final class LongIntMapTest {
+    public static void main(String[] args) {
+        deleteFromWrappedRun();
+        deleteHomeOfWrappedRun();
+        matchesHashMap();
+        System.out.println("LongIntMapTest: all checks passed");
+    }
+
+    // a run that starts in the last slot and wraps to the front closes up when its first
+    // entry is deleted
+    private static void deleteFromWrappedRun() {
+        LongIntMap map = new LongIntMap(0);
+        long[] last = keysWithHome(Slots - 1, 3);
+        long first = keysWithHome(0, 1)[0];
+        map.put(last[0], 1); // slot 15
+        map.put(last[1], 2); // wraps to slot 0
+        map.put(last[2], 3); // slot 1
+        map.put(first, 4); // home 0, pushed to slot 2
+
+        check(map.remove(last[0]) == 1, "removing the head of the run returns its value");
+        check(map.size() == 3, "size after the removal");
+        check(map.get(last[0]) == 0, "the removed key is gone");
+        check(map.get(last[1]) == 2 && map.get(last[2]) == 3, "the wrapped keys are still found");
+        check(map.get(first) == 4, "the key whose home is slot 0 is still found");
+
+        check(map.remove(last[1]) == 2, "removing a key that moved back across the end");
+        check(map.get(last[2]) == 3 && map.get(first) == 4, "the rest of the run is still found");
+        check(map.size() == 2, "size after the second removal");
+    }
+
+    // deleting the entry in slot 0 must not move an entry whose home is slot 15 past its
+    // home, nor strand the entries after it
+    private static void deleteHomeOfWrappedRun() {
+        LongIntMap map = new LongIntMap(0);
+        long[] last = keysWithHome(Slots - 1, 2);
+        long[] first = keysWithHome(0, 2);
+        map.put(last[0], 1); // slot 15
+        map.put(first[0], 2); // slot 0
+        map.put(last[1], 3); // wraps to slot 1
+        map.put(first[1], 4); // slot 2
+
+        check(map.remove(first[0]) == 2, "removing the key in slot 0 returns its value");
+        check(map.get(last[0]) == 1, "the key in the last slot is still found");
+        check(map.get(last[1]) == 3, "the wrapped key is still found after shifting back");
+        check(map.get(first[1]) == 4, "the key after it is still found after shifting back");
+        check(map.size() == 3, "size after the removal");
+
+        // the freed slot is reused without duplicating a key
+        check(map.put(last[1], 5) == 3, "updating a shifted key returns its old value");
+        check(map.size() == 3, "updating does not add a key");
+    }
+
+    // random puts, adds, and removes on a small map agree with a HashMap
+    private static void matchesHashMap() {
+        Random random = new Random(42);
+        LongIntMap map = new LongIntMap(0);
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        for (int step = 0; step < 200000; step++) {
+            long key = random.nextInt(40);
+            switch (random.nextInt(3)) {
+                case 0: {
+                    int value = random.nextInt(5);
+                    Integer previous = value == 0 ? expected.remove(key) : expected.put(key, value);
+                    check(map.put(key, value) == (previous == null ? 0 : previous), "put returns the old value");
+                    break;
+                }
+                case 1: {
+                    int value = expected.getOrDefault(key, 0) + 1;
+                    expected.put(key, value);
+                    check(map.add(key, 1) == value, "add returns the new value");
+                    break;
+                }
+                default: {
+                    Integer previous = expected.remove(key);
+                    check(map.remove(key) == (previous == null ? 0 : previous), "remove returns the old value");
+                    break;
+                }
+            }
+            check(map.size() == expected.size(), "size matches after step " + step);
+        }
+        for (long key = 0; key < 40; key++) {
+            check(map.get(key) == expected.getOrDefault(key, 0), "get matches for key " + key);
+        }
+    }
+
+    // returns <count> keys whose home slot in a map of Slots slots is <home>; this repeats
+    // LongIntMap's hash, so it must change with it
+    private static long[] keysWithHome(int home, int count) {
+        long[] keys = new long[count];
+        int found = 0;
+        for (long key = 1; found < count; key++) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            if (((int) (hash ^ (hash >>> 32)) & (Slots - 1)) == home) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    // Member Variables
+    private static final int Slots = 16; // the size of a new LongIntMap(0)
+}
@@ -0,0 +1,127 @@
+package project2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/*
+    The TopTaggedPhotoIndexTest class checks that TopTaggedPhotoIndex breaks ties by the
+    smaller photo ID, in particular among photos tied at the capacity boundary, and that
+    its ranking matches one recomputed from the counts after any sequence of events. The
+    repository has no test framework, so the checks are plain Java; from the repository
+    root:
+        javac -d /tmp/fbtest *.java test/*.java
+        java -cp /tmp/fbtest project2.TopTaggedPhotoIndexTest
+*/
+final class TopTaggedPhotoIndexTest {
+    public static void main(String[] args) {
+        tiesAtBoundary();
+        demotedPastBoundary();
+        matchesRecomputedRanking();
+        System.out.println("TopTaggedPhotoIndexTest: all checks passed");
+    }
+
+    // photos tied with the last ranked one are ranked by ID, and stay that way as more
+    // tied photos arrive in any order
+    private static void tiesAtBoundary() {
+        TopTaggedPhotoIndex index = new TopTaggedPhotoIndex(2);
+        for (long photoId : new long[] { 9, 4, 7, 2, 5, 8 }) {
+            index.tagInserted(photoId);
+        }
+        checkTop(index, 2, 2, 4);
+        checkTop(index, 1, 2);
+
+        index.tagInserted(7); // 7 leads; 2 is now the only one tied at the boundary
+        checkTop(index, 2, 7, 2);
+        index.tagInserted(9);
+        index.tagInserted(5); // 5, 7, and 9 tied above the rest
+        checkTop(index, 2, 5, 7);
+    }
+
+    // a ranked photo that drops to the level of unranked photos gives way to the ones
+    // with smaller IDs
+    private static void demotedPastBoundary() {
+        TopTaggedPhotoIndex index = new TopTaggedPhotoIndex(1);
+        for (long photoId = 1; photoId <= 4; photoId++) {
+            index.tagInserted(photoId);
+            index.tagInserted(photoId);
+        }
+        index.tagInserted(4);
+        checkTop(index, 1, 4);
+
+        index.tagDeleted(4); // tied with 1, 2, and 3 again
+        checkTop(index, 1, 1);
+        index.tagDeleted(1);
+        index.tagDeleted(2);
+        checkTop(index, 1, 3);
+        index.photoDeleted(3);
+        checkTop(index, 1, 4);
+        index.tagDeleted(4);
+        index.tagDeleted(4);
+        index.tagDeleted(4); // no tags left; does nothing
+        checkTop(index, 1, 1);
+        check(index.tagCount(4) == 0, "a photo without tags has a count of 0");
+    }
+
+    // random events on a few photos with many ties agree with a ranking recomputed from
+    // the counts, for every <num> up to the capacity
+    private static void matchesRecomputedRanking() {
+        Random random = new Random(7);
+        int capacity = 3;
+        TopTaggedPhotoIndex index = new TopTaggedPhotoIndex(capacity);
+        Map<Long, Integer> counts = new HashMap<Long, Integer>();
+        for (int step = 0; step < 100000; step++) {
+            long photoId = random.nextInt(12);
+            int choice = random.nextInt(10);
+            if (choice < 5) {
+                index.tagInserted(photoId);
+                counts.merge(photoId, 1, Integer::sum);
+            } else if (choice < 9) {
+                index.tagDeleted(photoId);
+                if (counts.getOrDefault(photoId, 0) > 1) {
+                    counts.merge(photoId, -1, Integer::sum);
+                } else {
+                    counts.remove(photoId);
+                }
+            } else {
+                index.photoDeleted(photoId);
+                counts.remove(photoId);
+            }
+
+            long[] expected = ranking(counts);
+            for (int num = 0; num <= capacity; num++) {
+                long[] top = index.top(num);
+                check(Arrays.equals(top, Arrays.copyOf(expected, Math.min(num, expected.length))),
+                        "top(" + num + ") after step " + step + " was " + Arrays.toString(top)
+                                + " instead of a prefix of " + Arrays.toString(expected));
+            }
+        }
+    }
+
+    // the photo IDs in <counts> by decreasing count, then increasing ID
+    private static long[] ranking(Map<Long, Integer> counts) {
+        List<Long> photoIds = new ArrayList<Long>(counts.keySet());
+        photoIds.sort((a, b) -> counts.get(a).equals(counts.get(b)) ? Long.compare(a, b)
+                : Integer.compare(counts.get(b), counts.get(a)));
+        long[] ranked = new long[photoIds.size()];
+        for (int idx = 0; idx < ranked.length; idx++) {
+            ranked[idx] = photoIds.get(idx);
+        }
+        return ranked;
+    }
+
+    private static void checkTop(TopTaggedPhotoIndex index, int num, long... expected) {
+        long[] top = index.top(num);
+        check(Arrays.equals(top, expected),
+                "top(" + num + ") was " + Arrays.toString(top) + " instead of " + Arrays.toString(expected));
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}